@@ -28,6 +28,9 @@ import com.teamwork.autocomplete.MultiAutoComplete;
 import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
 import com.teamwork.autocomplete.adapter.OnTokensChangedListener;
 import com.teamwork.autocomplete.filter.HandleTokenFilter;
+import com.teamwork.autocomplete.filter.MatchRanges;
+import com.teamwork.autocomplete.filter.MultiFieldTokenFilter;
+import com.teamwork.autocomplete.filter.TokenFilter;
 import com.teamwork.autocomplete.model.SimpleItem;
 import com.teamwork.autocomplete.tokenizer.PrefixTokenizer;
 import com.teamwork.autocomplete.util.SpannableUtils;
@@ -90,27 +93,23 @@ public class SampleActivity extends AppCompatActivity implements OnTokensChanged
     private void setupCustomAutoComplete() {
         List<Country> countryList = getCountryList();
 
-        // type adapter to match country names prefixed with '#'
-        AutoCompleteTypeAdapter<Country> nameTypeAdapter =
-                AutoCompleteTypeAdapter.Build.from(new CountryViewBinder(), new CountryNameTokenFilter());
+        // type adapter to match country names or codes prefixed with '#': both fields are searched in a single index
+        TokenFilter<Country> countryTokenFilter = new MultiFieldTokenFilter<>(new CountryTokenFilter(),
+                country -> country.countryName,
+                country -> country.countryCode);
+        AutoCompleteTypeAdapter<Country> countryTypeAdapter =
+                AutoCompleteTypeAdapter.Build.from(new CountryViewBinder(), countryTokenFilter);
         // listener for tokens added/removed by the user (see onTokenAdded() and onTokenRemoved() below)
-        nameTypeAdapter.setOnTokensChangedListener(this);
-
-        // type adapter to match country codes prefixed with '@'
-        // note: the data type here could be different (i.e. a Region object)
-        AutoCompleteTypeAdapter<Country> codeTypeAdapter =
-                AutoCompleteTypeAdapter.Build.from(new CountryViewBinder(), new CountryCodeTokenFilter());
+        countryTypeAdapter.setOnTokensChangedListener(this);
 
         // setting items synchronously since we already have the list
         // this could be also done later on in the likely case the data set comes from network or disk
-        nameTypeAdapter.setItems(countryList);
-        codeTypeAdapter.setItems(countryList);
+        countryTypeAdapter.setItems(countryList);
 
         // build the custom MultiAutoComplete by passing the required Tokenizer and type adapters
         customMultiAutoComplete = new MultiAutoComplete.Builder()
-                .tokenizer(new PrefixTokenizer('@', '#'))
-                .addTypeAdapter(nameTypeAdapter)
-                .addTypeAdapter(codeTypeAdapter)
+                .tokenizer(new PrefixTokenizer('#'))
+                .addTypeAdapter(countryTypeAdapter)
                 .delayer(new TestDelayer())
                 .build();
     }
@@ -168,7 +167,7 @@ public class SampleActivity extends AppCompatActivity implements OnTokensChanged
 
     /**
      * This simple {@link AutoCompleteViewBinder} uses the default MultiAutoComplete layout to bind the country flag
-     * and text. The current user-typed constraint is highlighted in bold in both country name and code.
+     * and text. The current user-typed constraint is highlighted in bold in the country name or code, whichever it matched.
      */
     private static class CountryViewBinder implements AutoCompleteViewBinder<Country> {
 
@@ -204,24 +203,41 @@ public class SampleActivity extends AppCompatActivity implements OnTokensChanged
             itemViewHolder.textView.setText(countryLabel);
             itemViewHolder.imageView.setImageResource(item.flagResource);
         }
+
+        @Override
+        public void bindData(@NonNull AutoCompleteViewHolder viewHolder,
+                             @NonNull Country item,
+                             @Nullable CharSequence constraint,
+                             @Nullable MatchRanges matchRanges) {
+            if (matchRanges == null) {
+                bindData(viewHolder, item, constraint);
+                return;
+            }
+            // the ranges refer to the field the country matched in (see MultiFieldTokenFilter): only that one is highlighted
+            boolean codeMatched = matchRanges.getField() == 1;
+            CharSequence countryLabel = new SpannableStringBuilder()
+                    .append(codeMatched ? item.countryName : SpannableUtils.newBoldRanges(item.countryName, matchRanges))
+                    .append(" (")
+                    .append(codeMatched ? SpannableUtils.newBoldRanges(item.countryCode, matchRanges) : item.countryCode)
+                    .append(")");
+            SimpleItemViewHolder itemViewHolder = (SimpleItemViewHolder) viewHolder;
+            itemViewHolder.textView.setText(countryLabel);
+            itemViewHolder.imageView.setImageResource(item.flagResource);
+        }
     }
 
     /**
-     * Token filter to match country names prefixed with a '#' handle (i.e. '@Ireland').
+     * Token filter to match countries prefixed with a '#' handle (i.e. '#Ireland' or '#IE').
+     * Matching is done by the {@link MultiFieldTokenFilter} wrapping it.
      */
-    private static class CountryNameTokenFilter extends HandleTokenFilter<Country> {
+    private static class CountryTokenFilter extends HandleTokenFilter<Country> {
 
         private final Pattern namePattern = Pattern.compile("(^|\\s|>)#(\\w+)");
 
-        CountryNameTokenFilter() {
+        CountryTokenFilter() {
             super('#');
         }
 
-        @Override
-        protected boolean matchesConstraint(@NonNull Country country, @NonNull CharSequence constraint) {
-            return country.countryName.toLowerCase().contains(constraint.toString().toLowerCase());
-        }
-
         @Override
         public @Nullable Pattern getValidTokenPattern() {
             /*
@@ -232,26 +248,6 @@ public class SampleActivity extends AppCompatActivity implements OnTokensChanged
         }
     }
 
-    /**
-     * Token filter to match country codes prefixed with a '@' handle (i.e. '@IR').
-     */
-    private static class CountryCodeTokenFilter extends HandleTokenFilter<Country> {
-
-        CountryCodeTokenFilter() {
-            super('@');
-        }
-
-        @Override
-        protected boolean matchesConstraint(@NonNull Country country, @NonNull CharSequence constraint) {
-            return country.countryCode.toLowerCase().contains(constraint.toString().toLowerCase());
-        }
-
-        @Override
-        public @NonNull CharSequence toTokenString(@NonNull Country item) {
-            return String.format(Locale.US, "%c%s", handleChar, item.countryCode);
-        }
-    }
-
     private static class TestDelayer implements MultiAutoComplete.Delayer {
         @Override public long getPostingDelay(CharSequence constraint) {
             return 10;
@@ -18,6 +18,8 @@ package com.teamwork.autocomplete;
 
 import android.annotation.SuppressLint;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -26,25 +28,34 @@ import android.widget.BaseAdapter;
 import android.widget.Filter;
 import android.widget.Filterable;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
+import androidx.recyclerview.widget.DiffUtil;
 
+import com.teamwork.autocomplete.adapter.FilteredItems;
 import com.teamwork.autocomplete.adapter.NullTypeAdapterDelegate;
+import com.teamwork.autocomplete.adapter.PreparedRows;
 import com.teamwork.autocomplete.adapter.TypeAdapterDelegate;
-import com.teamwork.autocomplete.util.ConstraintComparator;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Implementation of an "adapter of adapters" that is set into the {@link android.widget.MultiAutoCompleteTextView} to manage and filter
  * multiple data sets.
  * <p>
  * The {@link Filter} component delegates returning the autocomplete filtered results to one of the registered adapters.
+ * The filtered rows are held here rather than in the type adapters, so that the type adapters (and their indexed data sets) can be shared
+ * by the adapters of several views.
  *
  * @author Marco Salis
  */
@@ -53,8 +64,10 @@ class AutoCompleteAdapter extends BaseAdapter implements Filterable {
     private final NullTypeAdapterDelegate nullTypeAdapter = new NullTypeAdapterDelegate();
 
     private final LayoutInflater layoutInflater;
+    private final Handler mainThreadHandler;
     private final List<TypeAdapterDelegate<?>> typeAdapters;
     private final @Nullable MultiAutoComplete.Delayer delayer;
+    private final int streamingBatchSize;
 
     @SuppressWarnings("rawtypes")
     private TypeAdapterDelegate currentTypeAdapter = nullTypeAdapter;
@@ -62,27 +75,66 @@ class AutoCompleteAdapter extends BaseAdapter implements Filterable {
 
     private CharSequence currentConstraint;
 
+    /* snapshot of the displayed rows: the filter reads it from the worker thread to merge and diff the results of a pass */
+    // GuardedBy("main thread") for writing
+    private volatile DropDownRows displayedRows;
+    /* set when the rows are displayed in a recycler drop down, which receives the diffed changes */
+    private volatile @Nullable RecyclerDropDown dropDown;
+
     AutoCompleteAdapter(@NonNull Context context,
                         @NonNull List<TypeAdapterDelegate<?>> typeAdapters,
                         @Nullable MultiAutoComplete.Delayer delayer) {
+        this(context, typeAdapters, delayer, 0);
+    }
+
+    /**
+     * @param streamingBatchSize When greater than zero, the number of filtered items to publish as an early batch before a filter pass
+     *                           completes (see {@link MultiAutoComplete.Builder#streamingBatchSize(int)}).
+     */
+    AutoCompleteAdapter(@NonNull Context context,
+                        @NonNull List<TypeAdapterDelegate<?>> typeAdapters,
+                        @Nullable MultiAutoComplete.Delayer delayer,
+                        int streamingBatchSize) {
         this.layoutInflater = LayoutInflater.from(context);
+        this.mainThreadHandler = new Handler(Looper.getMainLooper());
         this.typeAdapters = typeAdapters;
         this.delayer = delayer;
+        this.streamingBatchSize = streamingBatchSize;
+        this.displayedRows = DropDownRows.empty(nullTypeAdapter);
+    }
+
+    /**
+     * Set the recycler drop down that displays the rows, or null if they're displayed by the edit text own drop down. When set, the
+     * results of each filter pass are diffed in background against the displayed rows, and only the changes are dispatched to it.
+     */
+    @MainThread
+    void setDropDown(@Nullable RecyclerDropDown dropDown) {
+        this.dropDown = dropDown;
+        notifyDataSetChanged();
     }
 
     @Override
     public int getCount() {
-        return currentTypeAdapter.getCount();
+        return displayedRows.items.size();
     }
 
     @Override
     public Object getItem(int position) {
-        return currentTypeAdapter.getItem(position);
+        return displayedRows.items.get(position);
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public long getItemId(int position) {
-        return currentTypeAdapter.getItemId(position);
+        return currentTypeAdapter.getStableId(getItem(position));
+    }
+
+    /**
+     * Return the displayed items, as published by the last filter pass.
+     */
+    @VisibleForTesting
+    @NonNull List<?> getDisplayedItems() {
+        return displayedRows.items;
     }
 
     @Override
@@ -104,8 +156,48 @@ class AutoCompleteAdapter extends BaseAdapter implements Filterable {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public @NonNull View getView(int position, View convertView, @NonNull ViewGroup parent) {
-        return currentTypeAdapter.getView(layoutInflater, position, convertView, parent, currentConstraint);
+        return currentTypeAdapter.getView(layoutInflater, getItem(position), convertView, parent, currentConstraint,
+                displayedRows.preparedRows);
+    }
+
+    /**
+     * Called when the data set of the passed type adapter has changed: if its rows are displayed, they're cleared until the next filter
+     * pass (as they might not be in the data set anymore).
+     */
+    @MainThread
+    void onTypeAdapterChanged(@NonNull TypeAdapterDelegate<?> typeAdapter) {
+        if (displayedRows.typeAdapter == typeAdapter) {
+            displayedRows = displayedRows.cleared();
+            notifyRowsChanged(null);
+        } else {
+            notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    @MainThread
+    public void notifyDataSetChanged() {
+        // the rows have changed outside of a filter pass: results diffed against the displayed rows can't be applied anymore
+        DropDownRows displayed = displayedRows;
+        displayedRows = new DropDownRows(displayed.generation, displayed.typeAdapter, displayed.constraint, displayed.items,
+                displayed.preparedRows, displayed.complete);
+        notifyRowsChanged(null);
+    }
+
+    /**
+     * Notify the data set observers that the rows have changed, dispatching the passed changes to the recycler drop down if any.
+     *
+     * @param diff The changes from the previously displayed rows, or null to reload all the rows.
+     */
+    @MainThread
+    private void notifyRowsChanged(@Nullable DiffUtil.DiffResult diff) {
+        RecyclerDropDown dropDown = this.dropDown;
+        if (dropDown != null) {
+            dropDown.onRowsChanged(diff);
+        }
+        super.notifyDataSetChanged();
     }
 
     @Override
@@ -156,54 +248,108 @@ class AutoCompleteAdapter extends BaseAdapter implements Filterable {
         Log.e(MultiAutoComplete.class.getSimpleName(), "Reflection inject attempt of Delayer failed");
     }
 
+    /**
+     * Called when the user commits the passed item from the drop down, so that its type adapter can record the pick. Note that the
+     * filter also converts the items the drop down only displays, so this can't be done in {@link Filter#convertResultToString(Object)}.
+     */
+    @MainThread
+    @SuppressWarnings("unchecked")
+    void onItemCompleted(@NonNull Object item) {
+        currentTypeAdapter.onItemSelected(item);
+    }
+
+    /**
+     * Merge the final results of a filter pass into the items currently displayed, keeping the position of the displayed rows stable:
+     * displayed items that are still in the final results come first in the same order, followed by the other final results.
+     *
+     * @param displayed The items currently displayed (i.e. the early batch of the same filter pass).
+     * @param results   The final results of the filter pass.
+     * @return The merged list.
+     */
+    @VisibleForTesting
+    static @NonNull List<Object> mergeStable(@NonNull List<?> displayed, @NonNull List<?> results) {
+        Set<Object> resultsSet = Collections.newSetFromMap(new IdentityHashMap<>(results.size()));
+        resultsSet.addAll(results);
+
+        List<Object> merged = new ArrayList<>(results.size());
+        Set<Object> mergedSet = Collections.newSetFromMap(new IdentityHashMap<>(displayed.size()));
+        for (Object item : displayed) {
+            if (resultsSet.contains(item)) {
+                merged.add(item);
+                mergedSet.add(item);
+            }
+        }
+        for (Object item : results) {
+            if (!mergedSet.contains(item)) {
+                merged.add(item);
+            }
+        }
+        return merged;
+    }
+
     /**
      * {@link Filter} for the main adapter.
      * It checks which type adapter filter can handle the current token, and delegates the filtering to the chosen
      * adapter. The adapter data set is then set to the filtered items of the type adapter.
+     * <p>
+     * When streaming is enabled, the first batch of filtered items is published as soon as the type adapter finds it. When a pass
+     * exceeds the type adapter time budget, the partial results are published first, and then the complete results when the type
+     * adapter has filtered the rest of its data set. Either way, later results are merged into the displayed ones without moving the
+     * rows already displayed.
      *
      * @see com.teamwork.autocomplete.filter.TokenFilter
      */
     private class AutoCompleteFilter extends Filter {
 
+        /* incremented at every filter pass, to discard early batches and completed results of outdated passes */
+        private final AtomicInteger generation = new AtomicInteger();
+
         @Override
         @WorkerThread
+        @SuppressWarnings({"rawtypes", "unchecked"})
         protected FilterResults performFiltering(CharSequence token) {
             FilterResults filterResults = new FilterResults();
-            FilterResultsWrapper resultsWrapper = new FilterResultsWrapper();
+            int passGeneration = generation.incrementAndGet();
 
             CharSequence constraint = null;
-            List<Object> filteredData = new ArrayList<>();
+            List<?> filteredData = Collections.emptyList();
+            PreparedRows<?> preparedRows = PreparedRows.empty();
+            boolean partial = false;
             TypeAdapterDelegate<?> typeAdapter;
 
             if (token != null) {
                 // retrieve the first type adapter that supports this token
                 typeAdapter = getCurrentTypeAdapter(token);
-                constraint = typeAdapter.getFilter().stripHandle(token);
-
-                // filter data based on the constraint (stripped by any handle)
-                List<?> filteredList = typeAdapter.performFiltering(constraint);
-                filteredData.addAll(filteredList);
-
-                // sort filtered results if there is a custom comparator
-                @SuppressWarnings("rawtypes")
-                ConstraintComparator comparator = typeAdapter.getFilter().getConstraintComparator();
-                if (comparator != null) {
-                    comparator.setConstraint(constraint);
-                    if (comparator.shouldCompare()) {
-                        //noinspection unchecked
-                        Collections.sort(filteredData, comparator);
-                    }
-                }
+                CharSequence typeConstraint = typeAdapter.getFilter().stripHandle(token);
+                constraint = typeConstraint;
+
+                // filter data based on the constraint (stripped by any handle): results are ranked by the type adapter
+                TypeAdapterDelegate passAdapter = typeAdapter;
+                TypeAdapterDelegate.OnEarlyBatchListener batchListener = batch -> {
+                    DropDownRows batchRows = new DropDownRows(passGeneration, passAdapter, typeConstraint, batch,
+                            passAdapter.prepareRows(typeConstraint, batch), false);
+                    FilterResultsWrapper batchWrapper = prepareUpdate(batchRows);
+                    mainThreadHandler.post(() -> publishLaterResults(batchWrapper));
+                };
+                TypeAdapterDelegate.OnFilteringCompletedListener completedListener = results -> {
+                    DropDownRows completedRows = new DropDownRows(passGeneration, passAdapter, typeConstraint, results,
+                            passAdapter.prepareRows(typeConstraint, results), true);
+                    FilterResultsWrapper completedWrapper = prepareUpdate(completedRows);
+                    mainThreadHandler.post(() -> publishLaterResults(completedWrapper));
+                };
+                FilteredItems<?> filteredItems = typeAdapter.performFiltering(constraint, streamingBatchSize,
+                        streamingBatchSize > 0 ? batchListener : null, completedListener, () -> generation.get() != passGeneration);
+                filteredData = filteredItems.getItems(); // never modified once returned: no need to copy them
+                partial = filteredItems.isPartial();
+                preparedRows = passAdapter.prepareRows(constraint, filteredData); // styled rows are ready before being published
             } else {
                 // there is no original data without a type adapter: the adapter will be empty
                 typeAdapter = nullTypeAdapter;
             }
 
-            // we pass adapter and results in a wrapper to avoid accessing the class state from the worker thread
-            resultsWrapper.constraint = constraint;
-            resultsWrapper.typeAdapter = typeAdapter;
-            resultsWrapper.results = filteredData;
-            filterResults.values = resultsWrapper;
+            // we pass the rows in a wrapper to avoid changing the class state from the worker thread
+            filterResults.values = prepareUpdate(new DropDownRows(passGeneration, typeAdapter, constraint, filteredData, preparedRows,
+                    !partial));
             filterResults.count = filteredData.size();
             return filterResults;
         }
@@ -217,15 +363,69 @@ class AutoCompleteAdapter extends BaseAdapter implements Filterable {
             return nullTypeAdapter;
         }
 
+        /**
+         * Prepare the update of the displayed rows with the results of a filter pass: results following other results of the same pass
+         * are merged into the displayed rows, and the new rows are diffed against the displayed ones when the recycler drop down is set.
+         */
+        @WorkerThread
+        private @NonNull FilterResultsWrapper prepareUpdate(@NonNull DropDownRows results) {
+            FilterResultsWrapper resultsWrapper = new FilterResultsWrapper();
+            DropDownRows base = displayedRows;
+            resultsWrapper.base = base;
+            if (base.generation == results.generation) {
+                if (base.complete) {
+                    resultsWrapper.rows = base; // nothing to merge, display() will discard this
+                    return resultsWrapper;
+                }
+                // keep the rows displayed for this pass where they are, with their prepared data
+                resultsWrapper.rows = base.mergeWith(results);
+            } else {
+                resultsWrapper.rows = results;
+            }
+            if (dropDown != null) {
+                resultsWrapper.diff = DropDownRows.diff(base, resultsWrapper.rows);
+            }
+            return resultsWrapper;
+        }
+
+        /**
+         * Publish the early batch or the complete results of a pass, which are delivered outside of the {@link Filter} flow.
+         */
+        @MainThread
+        private void publishLaterResults(@NonNull FilterResultsWrapper resultsWrapper) {
+            if (resultsWrapper.rows.generation != generation.get()) {
+                return; // a newer filter pass has started in the meantime
+            }
+            display(resultsWrapper);
+        }
+
         @Override
-        @SuppressWarnings("unchecked")
         protected void publishResults(CharSequence token, FilterResults results) {
-            FilterResultsWrapper resultsWrapper = (FilterResultsWrapper) results.values;
-            currentConstraint = resultsWrapper.constraint;
-            currentTypeAdapter = resultsWrapper.typeAdapter;
+            display((FilterResultsWrapper) results.values);
+        }
 
-            currentTypeAdapter.setFilteredItems(resultsWrapper.results);
-            notifyDataSetChanged();
+        @MainThread
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        private void display(@NonNull FilterResultsWrapper resultsWrapper) {
+            DropDownRows displayed = displayedRows;
+            DropDownRows rows = resultsWrapper.rows;
+            DiffUtil.DiffResult diff = resultsWrapper.diff;
+            if (resultsWrapper.base != displayed) { // the displayed rows have changed since the results were prepared
+                if (displayed.generation == rows.generation) {
+                    if (displayed.complete) {
+                        return; // the complete results of this pass are already displayed
+                    }
+                    rows = displayed.mergeWith(rows);
+                }
+                diff = null;
+            } else if (displayed.generation == rows.generation && displayed.complete) {
+                return;
+            }
+            displayedRows = rows;
+
+            currentConstraint = rows.constraint;
+            currentTypeAdapter = rows.typeAdapter;
+            notifyRowsChanged(diff);
         }
 
         @Override
@@ -236,13 +436,14 @@ class AutoCompleteAdapter extends BaseAdapter implements Filterable {
     }
 
     /**
-     * Simple wrapper for a <code>android.widget.Filter.FilterResults.values</code> to post the {@link TypeAdapterDelegate} to the main
-     * thread from <code>Filter#performFiltering(CharSequence)</code>.
+     * Simple wrapper for a <code>android.widget.Filter.FilterResults.values</code> to post the rows prepared by
+     * <code>Filter#performFiltering(CharSequence)</code> (or by a later result of the pass) to the main thread, together with the
+     * displayed rows they were prepared from.
      */
     private static class FilterResultsWrapper {
-        CharSequence constraint;
-        TypeAdapterDelegate<?> typeAdapter;
-        List<?> results;
+        DropDownRows base;
+        DropDownRows rows;
+        @Nullable DiffUtil.DiffResult diff;
     }
 
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import androidx.recyclerview.widget.DiffUtil;
+
+import com.teamwork.autocomplete.adapter.PreparedRows;
+import com.teamwork.autocomplete.adapter.TypeAdapterDelegate;
+import com.teamwork.autocomplete.filter.MatchRanges;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of the rows displayed by the {@link AutoCompleteAdapter}: the filtered items of a filter pass with the type adapter
+ * and constraint they were filtered with. The filter reads the displayed snapshot from the worker thread to diff the results of a new
+ * pass against it, so that the {@link RecyclerDropDown} only rebinds the rows that have changed.
+ */
+// @Immutable
+final class DropDownRows {
+
+    /* diffing is quadratic in the worst case: larger result sets are just reloaded */
+    @VisibleForTesting static final int MAX_DIFF_ROWS = 1000;
+
+    final int generation;
+    final @NonNull TypeAdapterDelegate<?> typeAdapter;
+    final @Nullable CharSequence constraint;
+    final @NonNull List<?> items;
+    final @NonNull PreparedRows<?> preparedRows;
+    final boolean complete;
+
+    DropDownRows(int generation,
+                 @NonNull TypeAdapterDelegate<?> typeAdapter,
+                 @Nullable CharSequence constraint,
+                 @NonNull List<?> items,
+                 @NonNull PreparedRows<?> preparedRows,
+                 boolean complete) {
+        this.generation = generation;
+        this.typeAdapter = typeAdapter;
+        this.constraint = constraint;
+        this.items = items;
+        this.preparedRows = preparedRows;
+        this.complete = complete;
+    }
+
+    /**
+     * Return the rows displayed before any filter pass, bound by the passed (null) type adapter.
+     */
+    static @NonNull DropDownRows empty(@NonNull TypeAdapterDelegate<?> typeAdapter) {
+        return new DropDownRows(0, typeAdapter, null, Collections.emptyList(), PreparedRows.empty(), true);
+    }
+
+    /**
+     * Return a copy of these rows without items, for when the data set of their type adapter has changed.
+     */
+    @NonNull DropDownRows cleared() {
+        return new DropDownRows(generation, typeAdapter, constraint, Collections.emptyList(), PreparedRows.empty(), complete);
+    }
+
+    /**
+     * Return the rows of the same filter pass resulting from merging the passed later results (an early batch or the complete results)
+     * into these ones, keeping the position of these rows stable (see {@link AutoCompleteAdapter#mergeStable(List, List)}).
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @NonNull DropDownRows mergeWith(@NonNull DropDownRows later) {
+        return new DropDownRows(generation, later.typeAdapter, later.constraint, AutoCompleteAdapter.mergeStable(items, later.items),
+                ((PreparedRows) preparedRows).mergeWith(later.preparedRows), later.complete);
+    }
+
+    /**
+     * Compute the changes to turn the old rows into the new ones.
+     *
+     * @return The diff result, or null if the rows can't be diffed (i.e. they are bound by different type adapters) and must be reloaded.
+     */
+    @WorkerThread
+    static @Nullable DiffUtil.DiffResult diff(@NonNull DropDownRows oldRows, @NonNull DropDownRows newRows) {
+        if (oldRows.typeAdapter != newRows.typeAdapter || oldRows.items.size() > MAX_DIFF_ROWS || newRows.items.size() > MAX_DIFF_ROWS) {
+            return null;
+        }
+        return DiffUtil.calculateDiff(new Callback(oldRows, newRows), true);
+    }
+
+
+    /**
+     * Rows are the same when their items have the same stable identifier, and their contents are the same when the items are equal and
+     * would be highlighted in the same way.
+     */
+    @VisibleForTesting
+    static class Callback extends DiffUtil.Callback {
+
+        private final DropDownRows oldRows;
+        private final DropDownRows newRows;
+
+        Callback(@NonNull DropDownRows oldRows, @NonNull DropDownRows newRows) {
+            this.oldRows = oldRows;
+            this.newRows = newRows;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return oldRows.items.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return newRows.items.size();
+        }
+
+        @Override
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            TypeAdapterDelegate typeAdapter = newRows.typeAdapter;
+            return typeAdapter.getStableId(oldRows.items.get(oldItemPosition))
+                    == typeAdapter.getStableId(newRows.items.get(newItemPosition));
+        }
+
+        @Override
+        @SuppressWarnings({"rawtypes", "unchecked"})
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            Object oldItem = oldRows.items.get(oldItemPosition);
+            Object newItem = newRows.items.get(newItemPosition);
+            if (!oldItem.equals(newItem)) {
+                return false;
+            }
+            MatchRanges oldRanges = ((PreparedRows) oldRows.preparedRows).getMatchRanges(oldItem);
+            MatchRanges newRanges = ((PreparedRows) newRows.preparedRows).getMatchRanges(newItem);
+            if (oldRanges != null && newRanges != null) { // the highlighted text is the same even if the constraint has changed
+                return oldRanges.equals(newRanges);
+            }
+            return TextUtils.equals(oldRows.constraint, newRows.constraint);
+        }
+    }
+
+}
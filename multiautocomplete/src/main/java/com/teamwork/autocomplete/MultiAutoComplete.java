@@ -59,14 +59,26 @@ public interface MultiAutoComplete {
     /**
      * Call this when the view gets attached to the component using {@link MultiAutoComplete}. This is usually done in
      * <code>Activity.onCreate(Bundle)</code> or <code>Fragment.onViewCreated(View, Bundle)</code>.
+     * <p>
+     * Several views can be attached at the same time (i.e. the comment boxes of the items of a list): each view has its own filtered
+     * items, while the type adapters, their indexed data sets and the row views of recycler drop downs are shared.
      *
      * @param view The {@link MultiAutoCompleteEditText} view that this {@link MultiAutoComplete} will be managing.
      */
     void onViewAttached(@NonNull MultiAutoCompleteEditText view);
 
     /**
-     * Call this when the view gets detached to the component using {@link MultiAutoComplete}, to avoid memory leaks or usage of a view that
-     * is no longer on screen. This is usually done in <code>Activity.onDestroy()</code> or <code>Fragment.onDestroyView()</code>.
+     * Call this when the passed view gets detached from the component using {@link MultiAutoComplete}, while other views stay attached
+     * (i.e. when a list item view is recycled).
+     *
+     * @param view The attached view.
+     */
+    void onViewDetached(@NonNull MultiAutoCompleteEditText view);
+
+    /**
+     * Call this when the views get detached to the component using {@link MultiAutoComplete}, to avoid memory leaks or usage of a view
+     * that is no longer on screen. This is usually done in <code>Activity.onDestroy()</code> or <code>Fragment.onDestroyView()</code>.
+     * All the attached views are detached.
      */
     void onViewDetached();
 
@@ -81,6 +93,9 @@ public interface MultiAutoComplete {
         private MultiAutoCompleteTextView.Tokenizer tokenizer;
         private @Nullable
         Delayer delayer;
+        private int streamingBatchSize;
+        private boolean recyclerDropDown;
+        private int prewarmRows;
 
         /**
          * Set the {@link MultiAutoCompleteTextView.Tokenizer} for the {@link MultiAutoComplete} being built.
@@ -107,6 +122,56 @@ public interface MultiAutoComplete {
             return this;
         }
 
+        /**
+         * Enable streaming of the filtered results: as soon as a filter pass finds the passed number of matching items (usually enough
+         * to fill the visible rows of the dropdown), they are displayed while the rest of the data set is still being filtered.
+         * The final results are then merged in without moving the rows already displayed.
+         * <p>
+         * Streaming is disabled by default, and it's only worth enabling for type adapters with large data sets.
+         *
+         * @param batchSize The number of items of the early batch, or 0 to disable streaming.
+         * @return The builder for chaining calls.
+         */
+        public Builder streamingBatchSize(int batchSize) {
+            if (batchSize < 0) {
+                throw new IllegalArgumentException("Batch size must not be negative");
+            }
+            this.streamingBatchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Show the filtered items in a drop down backed by a <code>RecyclerView</code> instead of the built-in drop down list.
+         * <p>
+         * The built-in list rebinds all the visible rows at every filter pass. With this drop down, the results of each pass are diffed in
+         * background against the displayed rows using the items identifiers returned by {@link AutoCompleteViewBinder#getItemId(Object)},
+         * and only the inserted, moved and changed rows are rebound. Keyboard navigation of the drop down is not supported.
+         *
+         * @return The builder for chaining calls.
+         */
+        public Builder recyclerDropDown() {
+            this.recyclerDropDown = true;
+            return this;
+        }
+
+        /**
+         * Inflate the passed number of row views for each type adapter in background when the view is attached, so that the drop down
+         * doesn't inflate its first rows on the main thread when it's first shown. Usually the number of visible rows is enough.
+         * <p>
+         * Prewarming is disabled by default. The rows layouts must be inflatable from a worker thread (i.e. their views must not require
+         * a looper when they're created).
+         *
+         * @param rowCount The number of row views to inflate per type adapter, or 0 to disable prewarming.
+         * @return The builder for chaining calls.
+         */
+        public Builder prewarmRows(int rowCount) {
+            if (rowCount < 0) {
+                throw new IllegalArgumentException("Row count must not be negative");
+            }
+            this.prewarmRows = rowCount;
+            return this;
+        }
+
         /**
          * Add a {@link AutoCompleteTypeAdapter} to the {@link MultiAutoComplete} being built.
          * The type adapter must be built with one of the {@link AutoCompleteTypeAdapter.Build} factory methods.
@@ -129,7 +194,7 @@ public interface MultiAutoComplete {
          * Build the configured instance of this {@link MultiAutoComplete}.
          */
         public @NonNull MultiAutoComplete build() {
-            return new MultiAutoCompleteImpl(tokenizer, typeAdapters, delayer);
+            return new MultiAutoCompleteImpl(tokenizer, typeAdapters, delayer, streamingBatchSize, recyclerDropDown, prewarmRows);
         }
     }
 
@@ -19,23 +19,30 @@ package com.teamwork.autocomplete;
 import android.database.DataSetObserver;
 import android.text.Editable;
 import android.text.TextWatcher;
+import android.view.LayoutInflater;
+import android.widget.FrameLayout;
 import android.widget.MultiAutoCompleteTextView.Tokenizer;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.teamwork.autocomplete.adapter.TypeAdapterDelegate;
 import com.teamwork.autocomplete.view.MultiAutoCompleteEditText;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * {@link MultiAutoComplete} concrete implementation for a {@link MultiAutoCompleteEditText} auto complete feature with drop down.
- * It manages a list of {@link TypeAdapterDelegate}s through a single "adapter of adapters".
+ * It manages a list of {@link TypeAdapterDelegate}s through a single "adapter of adapters" per attached view.
+ * <p>
+ * Several views can be attached at the same time: each one gets its own lightweight adapter holding its filtered items, while the type
+ * adapters (with their indexed data sets, executors and prewarmed row views) and the recycler drop downs row view pool are shared.
  *
  * @author Marco Salis
  */
@@ -44,61 +51,146 @@ class MultiAutoCompleteImpl
 
     private final Tokenizer tokenizer;
     private final List<TypeAdapterDelegate<?>> typeAdapters;
+    private final List<DataSetObserver> delegateDataSetObservers;
     private final @Nullable Delayer delayer;
+    private final int streamingBatchSize;
+    private final boolean recyclerDropDown;
+    private final int prewarmRows;
 
-    private @Nullable MultiAutoCompleteEditText editText;
-    private @Nullable AutoCompleteAdapter adapter;
+    /* in attach order */
+    // GuardedBy("main thread")
+    private final List<AttachedView> attachedViews = new ArrayList<>();
+    /* row views shared by the recycler drop downs of the attached views */
+    // GuardedBy("main thread")
+    private @Nullable RecyclerView.RecycledViewPool rowViewPool;
 
     MultiAutoCompleteImpl(@NonNull Tokenizer tokenizer,
                           @NonNull List<TypeAdapterDelegate<?>> typeAdapters,
                           @Nullable Delayer delayer) {
+        this(tokenizer, typeAdapters, delayer, 0, false, 0);
+    }
+
+    MultiAutoCompleteImpl(@NonNull Tokenizer tokenizer,
+                          @NonNull List<TypeAdapterDelegate<?>> typeAdapters,
+                          @Nullable Delayer delayer,
+                          int streamingBatchSize,
+                          boolean recyclerDropDown,
+                          int prewarmRows) {
         this.tokenizer = tokenizer;
         this.typeAdapters = Collections.unmodifiableList(new CopyOnWriteArrayList<>(typeAdapters));
         this.delayer = delayer;
+        this.streamingBatchSize = streamingBatchSize;
+        this.recyclerDropDown = recyclerDropDown;
+        this.prewarmRows = prewarmRows;
+
+        List<DataSetObserver> delegateDataSetObservers = new ArrayList<>(typeAdapters.size());
+        for (TypeAdapterDelegate<?> typeAdapter : this.typeAdapters) {
+            delegateDataSetObservers.add(new DelegateDataSetObserver(typeAdapter));
+        }
+        this.delegateDataSetObservers = Collections.unmodifiableList(delegateDataSetObservers);
     }
 
     @Override
     public void onViewAttached(@NonNull MultiAutoCompleteEditText view) {
-        editText = view;
+        if (getAttachedView(view) != null) {
+            return; // already attached
+        }
+        AutoCompleteAdapter adapter = new AutoCompleteAdapter(view.getContext(), typeAdapters, delayer, streamingBatchSize);
+        AttachedView attachedView = new AttachedView(view, adapter);
 
-        adapter = new AutoCompleteAdapter(view.getContext(), typeAdapters, delayer);
-        editText.setAdapter(adapter);
-        editText.setTokenizer(tokenizer);
-        editText.addTextChangedListener(this);
-        editText.setOnSelectionChangedListener(this);
+        view.setAdapter(adapter);
+        view.setTokenizer(tokenizer);
+        view.addTextChangedListener(this);
+        view.setOnSelectionChangedListener(this);
+        view.setOnItemCompletedListener(adapter::onItemCompleted);
+        if (recyclerDropDown) {
+            if (rowViewPool == null) {
+                rowViewPool = RecyclerDropDown.newRowViewPool(adapter.getViewTypeCount());
+            }
+            RecyclerDropDown dropDown = new RecyclerDropDown(view, adapter, rowViewPool);
+            adapter.setDropDown(dropDown);
+            view.setDropDown(dropDown);
+        }
 
-        adapter.registerDataSetObserver(dataSetObserver);
+        adapter.registerDataSetObserver(attachedView);
+
+        if (attachedViews.isEmpty()) { // the type adapters are shared by all the attached views
+            for (int i = 0; i < typeAdapters.size(); i++) {
+                typeAdapters.get(i).registerDataSetObserver(delegateDataSetObservers.get(i));
+            }
 
-        for (TypeAdapterDelegate<?> adapter : typeAdapters) {
-            adapter.registerDataSetObserver(delegateDataSetObserver);
+            if (prewarmRows > 0) { // inflate the first rows in background before the drop down is shown
+                LayoutInflater inflater = LayoutInflater.from(view.getContext());
+                FrameLayout parent = new FrameLayout(view.getContext());
+                for (TypeAdapterDelegate<?> typeAdapter : typeAdapters) {
+                    typeAdapter.prewarmViews(inflater, parent, prewarmRows);
+                }
+            }
         }
+        attachedViews.add(attachedView);
     }
 
     @Override
-    public void onViewDetached() {
-        for (TypeAdapterDelegate<?> adapter : typeAdapters) {
-            adapter.unregisterDataSetObserver(delegateDataSetObserver);
+    public void onViewDetached(@NonNull MultiAutoCompleteEditText view) {
+        AttachedView attachedView = getAttachedView(view);
+        if (attachedView == null) {
+            return;
         }
+        attachedViews.remove(attachedView);
+
+        AutoCompleteAdapter adapter = attachedView.adapter;
+        adapter.unregisterDataSetObserver(attachedView);
+        adapter.setDropDown(null);
+        adapter.notifyDataSetInvalidated();
 
-        if (adapter != null) {
-            adapter.unregisterDataSetObserver(dataSetObserver);
-            adapter.notifyDataSetInvalidated();
-            adapter = null;
+        view.removeTextChangedListener(this);
+        view.setOnSelectionChangedListener(null);
+        view.setOnItemCompletedListener(null);
+        view.setDropDown(null);
+        view.setAdapter(null);
+
+        for (TypeAdapterDelegate<?> typeAdapter : typeAdapters) {
+            typeAdapter.onViewDetached(view);
         }
-        if (editText != null) {
-            editText.setAdapter(null);
-            editText = null;
+        if (attachedViews.isEmpty()) {
+            for (int i = 0; i < typeAdapters.size(); i++) {
+                typeAdapters.get(i).unregisterDataSetObserver(delegateDataSetObservers.get(i));
+                typeAdapters.get(i).clearPrewarmedViews(); // they hold the view context
+            }
+            rowViewPool = null;
+        }
+    }
+
+    @Override
+    public void onViewDetached() {
+        for (int i = attachedViews.size() - 1; i >= 0; i--) {
+            onViewDetached(attachedViews.get(i).editText);
         }
     }
 
+    private @Nullable AttachedView getAttachedView(@NonNull MultiAutoCompleteEditText view) {
+        for (AttachedView attachedView : attachedViews) {
+            if (attachedView.editText == view) {
+                return attachedView;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return the most recently attached view, if any.
+     */
     @VisibleForTesting
     protected @Nullable MultiAutoCompleteEditText getEditText() {
-        return editText;
+        return attachedViews.isEmpty() ? null : attachedViews.get(attachedViews.size() - 1).editText;
     }
 
+    /**
+     * Return the adapter of the most recently attached view, if any.
+     */
     @VisibleForTesting
     protected @Nullable AutoCompleteAdapter getAdapter() {
-        return adapter;
+        return attachedViews.isEmpty() ? null : attachedViews.get(attachedViews.size() - 1).adapter;
     }
 
     @Override
@@ -112,34 +204,70 @@ class MultiAutoCompleteImpl
     @Override
     @CallSuper
     public void afterTextChanged(Editable s) {
+        // the type adapters track the tokens of each view: only the text of the edited one is matched again
+        MultiAutoCompleteEditText view = getEditedView(s);
+        if (view == null) {
+            return;
+        }
+        String text = s.toString();
         for (TypeAdapterDelegate<?> typeAdapter : typeAdapters) {
-            typeAdapter.onTextChanged(s.toString());
+            typeAdapter.onTextChanged(view, text);
         }
     }
 
+    private @Nullable MultiAutoCompleteEditText getEditedView(@NonNull Editable text) {
+        for (AttachedView attachedView : attachedViews) {
+            if (attachedView.editText.getText() == text) {
+                return attachedView.editText;
+            }
+        }
+        return null;
+    }
+
     @Override
     public boolean onSelectionChanged(int selStart, int selEnd) {
         return true; // filter on selection changed by default
     }
 
-    private final DataSetObserver dataSetObserver = new DataSetObserver() {
+
+    /**
+     * An attached view with its adapter, observing it to reset the drop down selection.
+     */
+    private static class AttachedView extends DataSetObserver {
+
+        final MultiAutoCompleteEditText editText;
+        final AutoCompleteAdapter adapter;
+
+        AttachedView(@NonNull MultiAutoCompleteEditText editText, @NonNull AutoCompleteAdapter adapter) {
+            this.editText = editText;
+            this.adapter = adapter;
+        }
+
         @Override
         public void onChanged() {
-            if (editText != null && adapter != null && !adapter.isEmpty()) {
+            if (!adapter.isEmpty()) {
                 // reset selection on first filtered item
                 editText.setListSelection(0);
             }
         }
-    };
+    }
+
+
+    private class DelegateDataSetObserver extends DataSetObserver {
+
+        private final TypeAdapterDelegate<?> typeAdapter;
+
+        DelegateDataSetObserver(@NonNull TypeAdapterDelegate<?> typeAdapter) {
+            this.typeAdapter = typeAdapter;
+        }
 
-    private final DataSetObserver delegateDataSetObserver = new DataSetObserver() {
         @Override
         public void onChanged() {
-            if (adapter != null) {
-                // notify main adapter that one of the type adapters data has changed
-                adapter.notifyDataSetChanged();
+            // notify the main adapters that one of the type adapters data has changed
+            for (AttachedView attachedView : attachedViews) {
+                attachedView.adapter.onTypeAdapterChanged(typeAdapter);
             }
         }
-    };
+    }
 
 }
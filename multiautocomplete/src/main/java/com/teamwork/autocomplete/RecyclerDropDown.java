@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete;
+
+import android.content.Context;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.PopupWindow;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.teamwork.autocomplete.view.MultiAutoCompleteEditText;
+
+/**
+ * Drop down backed by a {@link RecyclerView}, shown in place of the {@link MultiAutoCompleteEditText} built-in drop down list.
+ * <p>
+ * The built-in list rebinds every visible row whenever the adapter data set changes, which is at every filter pass. Here the rows use
+ * the stable identifiers of the {@link AutoCompleteAdapter}, and the {@link AutoCompleteAdapter} dispatches the changes diffed in
+ * background against the displayed rows (see {@link DropDownRows}), so that only the inserted, moved and changed rows are rebound.
+ * <p>
+ * The rows are bound by the {@link AutoCompleteAdapter} itself into a container view, so the type adapters layouts and view binders are
+ * used unchanged. The drop downs of the views attached to the same {@link MultiAutoComplete} share a pool of row views: the rows of a
+ * drop down are returned to the pool when it's dismissed, and reused by the next drop down shown.
+ */
+@MainThread
+class RecyclerDropDown implements MultiAutoCompleteEditText.DropDown {
+
+    /* row views kept per view type in a shared pool: about one drop down worth of rows */
+    private static final int POOLED_ROWS_PER_TYPE = 12;
+
+    private final MultiAutoCompleteEditText editText;
+    private final AutoCompleteAdapter adapter;
+    private final RowsAdapter rowsAdapter;
+    private final RecyclerView recyclerView;
+    private final PopupWindow popupWindow;
+    /* set on the rows at bind time: a row from the shared pool can have been created by the drop down of another view */
+    private final View.OnClickListener rowClickListener;
+
+    /**
+     * @param editText    The edit text to show the drop down for.
+     * @param adapter     The adapter of the edit text.
+     * @param rowViewPool The pool of row views to share with the drop downs of other views (see {@link #newRowViewPool(int)}).
+     */
+    RecyclerDropDown(@NonNull MultiAutoCompleteEditText editText,
+                     @NonNull AutoCompleteAdapter adapter,
+                     @NonNull RecyclerView.RecycledViewPool rowViewPool) {
+        this.editText = editText;
+        this.adapter = adapter;
+
+        Context context = editText.getContext();
+        rowsAdapter = new RowsAdapter();
+        rowsAdapter.setHasStableIds(true);
+        recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setRecycledViewPool(rowViewPool);
+        recyclerView.setAdapter(rowsAdapter);
+        rowClickListener = view -> {
+            int position = recyclerView.getChildAdapterPosition(view);
+            if (position != RecyclerView.NO_POSITION) {
+                editText.performCompletion(adapter.getItem(position));
+            }
+        };
+
+        popupWindow = new PopupWindow(context);
+        popupWindow.setContentView(recyclerView);
+        popupWindow.setBackgroundDrawable(editText.getDropDownBackground());
+        popupWindow.setInputMethodMode(PopupWindow.INPUT_METHOD_NEEDED); // the keyboard stays up while the drop down is shown
+        popupWindow.setOutsideTouchable(true);
+    }
+
+    /**
+     * Create a pool of row views to share between the drop downs of several views.
+     *
+     * @param viewTypeCount The number of view types of the {@link AutoCompleteAdapter}.
+     */
+    static @NonNull RecyclerView.RecycledViewPool newRowViewPool(int viewTypeCount) {
+        RecyclerView.RecycledViewPool rowViewPool = new RecyclerView.RecycledViewPool();
+        for (int viewType = 0; viewType < viewTypeCount; viewType++) {
+            rowViewPool.setMaxRecycledViews(viewType, POOLED_ROWS_PER_TYPE);
+        }
+        return rowViewPool;
+    }
+
+    /**
+     * Called by the {@link AutoCompleteAdapter} when the rows change.
+     *
+     * @param diff The changes from the previously displayed rows, or null if all the rows must be reloaded.
+     */
+    void onRowsChanged(@Nullable DiffUtil.DiffResult diff) {
+        if (diff != null) {
+            diff.dispatchUpdatesTo(rowsAdapter);
+        } else {
+            rowsAdapter.notifyDataSetChanged();
+        }
+    }
+
+    @Override
+    public void show() {
+        int width = editText.getDropDownWidth() > 0 ? editText.getDropDownWidth() : editText.getWidth();
+        int verticalOffset = editText.getDropDownVerticalOffset();
+        int maxHeight = popupWindow.getMaxAvailableHeight(editText, verticalOffset);
+        if (editText.getDropDownHeight() > 0) {
+            maxHeight = Math.min(maxHeight, editText.getDropDownHeight());
+        }
+        if (recyclerView.getAdapter() == null) { // rebind the rows from the shared pool, before measuring them
+            recyclerView.swapAdapter(rowsAdapter, false);
+        }
+        // the popup wraps the rows, up to the available space
+        recyclerView.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(maxHeight, View.MeasureSpec.AT_MOST));
+        int height = recyclerView.getMeasuredHeight();
+        if (popupWindow.isShowing()) {
+            popupWindow.update(editText, editText.getDropDownHorizontalOffset(), verticalOffset, width, height);
+        } else {
+            popupWindow.setWidth(width);
+            popupWindow.setHeight(height);
+            popupWindow.showAsDropDown(editText, editText.getDropDownHorizontalOffset(), verticalOffset);
+            recyclerView.scrollToPosition(0);
+        }
+    }
+
+    @Override
+    public void dismiss() {
+        popupWindow.dismiss();
+        // return the rows to the shared pool (swapping keeps the pool content when no other drop down uses it)
+        recyclerView.swapAdapter(null, true);
+    }
+
+    @Override
+    public boolean isShowing() {
+        return popupWindow.isShowing();
+    }
+
+    @VisibleForTesting
+    @NonNull RecyclerView getRecyclerView() {
+        return recyclerView;
+    }
+
+
+    /**
+     * {@link RecyclerView.Adapter} of the {@link AutoCompleteAdapter} rows.
+     */
+    private class RowsAdapter extends RecyclerView.Adapter<RowViewHolder> {
+
+        @Override
+        public int getItemCount() {
+            return adapter.getCount();
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return adapter.getItemId(position);
+        }
+
+        @Override
+        public int getItemViewType(int position) {
+            return adapter.getItemViewType(position);
+        }
+
+        @Override
+        public @NonNull RowViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new RowViewHolder(new FrameLayout(parent.getContext()));
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RowViewHolder holder, int position) {
+            holder.itemView.setOnClickListener(rowClickListener);
+            View rowView = holder.container.getChildCount() > 0 ? holder.container.getChildAt(0) : null;
+            View boundView = adapter.getView(position, rowView, holder.container);
+            if (boundView != rowView) { // the row view is inflated at the first bind
+                holder.container.removeAllViews();
+                holder.container.addView(boundView);
+            }
+        }
+    }
+
+
+    private static class RowViewHolder extends RecyclerView.ViewHolder {
+
+        final FrameLayout container;
+
+        RowViewHolder(@NonNull FrameLayout container) {
+            super(container);
+            this.container = container;
+            container.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+    }
+
+}
@@ -21,9 +21,13 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.teamwork.autocomplete.MultiAutoComplete;
+import com.teamwork.autocomplete.filter.IndexedTokenFilter;
 import com.teamwork.autocomplete.filter.TokenFilter;
+import com.teamwork.autocomplete.util.UsageComparator;
+import com.teamwork.autocomplete.util.UsageTracker;
 import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
 
+import java.io.File;
 import java.util.List;
 
 /**
@@ -50,6 +54,79 @@ public interface AutoCompleteTypeAdapter<Model> {
     @MainThread
     void setItems(@NonNull List<Model> items);
 
+    /**
+     * Set a list of items for this type adapter, tagged with a caller-supplied version of the data set.
+     * <p>
+     * Setting a data set with the same version of the one currently indexed is a no-op. When an index snapshot file is set with {@link
+     * #setIndexSnapshotFile(File)} and it was written for the same data set version, the token strings of the items are restored from disk
+     * rather than computed again, and they're only persisted again in the background when the version changes.
+     *
+     * @param items       The List of items to set into the type adapter.
+     * @param dataVersion A version number identifying the contents of the passed list. It must change whenever the data changes.
+     * @see #setItems(List)
+     */
+    @MainThread
+    void setItems(@NonNull List<Model> items, long dataVersion);
+
+    /**
+     * Set an optional file to persist the token strings computed by this type adapter, to speed up indexing on the next process start.
+     * <p>
+     * Only the output of {@link TokenFilter#toTokenString(Object)} is persisted: it pays off when computing the token strings is
+     * expensive. The token lookup and the index of an {@link IndexedTokenFilter} are still built from the restored strings, so a warm
+     * start still pays for building them. A snapshot is discarded when the filter formats the token string of the first item differently
+     * from when it was written (i.e. after an app update changing the handle), even if the data set version is the same.
+     * <p>
+     * The snapshot is only used for data sets passed to {@link #setItems(List, long)}, and it must be set before the items.
+     *
+     * @param snapshotFile A file in the app private storage, or null to disable the index snapshot.
+     */
+    @MainThread
+    void setIndexSnapshotFile(@Nullable File snapshotFile);
+
+    /**
+     * Set a time budget for each filter pass of this type adapter, to put an upper bound on the time it takes to display the results
+     * for the typed text, regardless of the data set size and the cost of {@link TokenFilter#matchesConstraint(Object, CharSequence)}.
+     * <p>
+     * When a pass exceeds the budget, the items matched so far are displayed straight away, and the rest of the data set is filtered
+     * in background: the complete results are then merged in without moving the rows already displayed. The items are matched in chunks
+     * sized on the measured cost of matching an item, so a pass overruns its budget by the time it takes to match one item at most.
+     *
+     * @param budgetMillis The time budget in milliseconds, or 0 (the default) for no budget.
+     */
+    @MainThread
+    void setFilteringTimeBudget(long budgetMillis);
+
+    /**
+     * Set the limits of the cache of ranked results kept by this type adapter, so that retyping a constraint doesn't filter and sort the
+     * whole data set again. The cache is invalidated whenever a new data set is indexed.
+     * <p>
+     * By default, the cache holds up to 32 results lists in 256KB.
+     *
+     * @param maxEntries The maximum number of constraints whose results are cached, or 0 to disable the cache.
+     * @param maxBytes   The maximum memory (estimated) retained by the cached results lists, excluding the items themselves.
+     */
+    void setResultCacheSize(int maxEntries, long maxBytes);
+
+    /**
+     * Return a snapshot of the statistics of the results cache of this type adapter, i.e. its hit rate.
+     *
+     * @see #setResultCacheSize(int, long)
+     */
+    @NonNull CacheStats getResultCacheStats();
+
+    /**
+     * Set a {@link UsageTracker} to record the items the user picks from the suggestions of this type adapter, and to rank the items
+     * picked more often and more recently first (see {@link UsageComparator}).
+     * <p>
+     * Cached results are ranked again whenever a new pick is recorded. When the user has typed nothing to filter yet (i.e. just the
+     * handle), only the most picked items are returned, from a list kept in memory rather than filtering the whole data set.
+     * Use a separate tracker for each type adapter.
+     *
+     * @param usageTracker The tracker, or null to disable usage ranking.
+     */
+    @MainThread
+    void setUsageTracker(@Nullable UsageTracker usageTracker);
+
     /**
      * Set a {@link OnTokensChangedListener} to listen for changes in the matched tokens in the user-typed text.
      * <p>
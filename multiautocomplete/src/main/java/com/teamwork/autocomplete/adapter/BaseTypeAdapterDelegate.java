@@ -16,13 +16,16 @@
 
 package com.teamwork.autocomplete.adapter;
 
+import android.database.DataSetObservable;
+import android.database.DataSetObserver;
 import android.os.Handler;
 import android.os.Looper;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.BaseAdapter;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.CallSuper;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
@@ -30,23 +33,37 @@ import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.annotation.WorkerThread;
 
+import com.teamwork.autocomplete.MultiAutoComplete;
+import com.teamwork.autocomplete.filter.IndexedTokenFilter;
+import com.teamwork.autocomplete.filter.MatchRanges;
+import com.teamwork.autocomplete.filter.RankedList;
 import com.teamwork.autocomplete.filter.TokenFilter;
+import com.teamwork.autocomplete.util.BackgroundExecutors;
+import com.teamwork.autocomplete.util.ConstraintComparator;
+import com.teamwork.autocomplete.util.SortKeyComparator;
+import com.teamwork.autocomplete.util.UsageComparator;
+import com.teamwork.autocomplete.util.UsageTracker;
 import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
 import com.teamwork.autocomplete.view.AutoCompleteViewHolder;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -57,59 +74,105 @@ import java.util.regex.Pattern;
  * @author Marco Salis
  */
 // @ThreadSafe
-class BaseTypeAdapterDelegate<M>
-        extends BaseAdapter
-        implements TypeAdapterDelegate<M>, AutoCompleteTypeAdapter<M> {
+class BaseTypeAdapterDelegate<M> implements TypeAdapterDelegate<M>, AutoCompleteTypeAdapter<M> {
 
-    private final Executor computationExecutor;
-    private final Handler mainThreadHandler;
+    private static final String TAG = MultiAutoComplete.class.getSimpleName();
 
-    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /* version of data sets set without a caller-supplied version: they are always indexed from scratch */
+    private static final long NO_VERSION = Long.MIN_VALUE;
 
-    /* LinkedHashMap preserves the insertion order so values can be iterated consistently */
-    // GuardedBy("lock")
-    private final LinkedHashMap<CharSequence, M> itemsMap;
+    /* number of items indexed before publishing a partial index, so that filtering on large data sets can start straight away */
+    @VisibleForTesting static final int INDEXING_CHUNK_SIZE = 1000;
+    /* max number of items passed to the token filter at a time when a filter pass is streaming or time budgeted: time budgeted passes
+     * start with a single item and size the next chunks on the time left, so that a slow matcher can't run past the deadline */
+    @VisibleForTesting static final int FILTERING_CHUNK_SIZE = 64;
 
-    /* this is used to retain deleted items until we need them to call onTokenRemoved(CharSequence, M) */
-    // Concurrent map
-    private final ConcurrentMap<CharSequence, M> itemsScrapMap;
+    /* default limits of the filtering results cache: enough for the handles and prefixes a user retypes often */
+    private static final int DEFAULT_CACHE_ENTRIES = 32;
+    private static final long DEFAULT_CACHE_BYTES = 256 * 1024;
 
-    /* this is a "snapshot" of the real data set, which might get off-sync for milliseconds after the items are set.
-     * That is perfectly fine, since there is a very low chance of the user performing a search in that interval. */
-    // GuardedBy("main thread")
-    private final List<M> filteredItems;
+    /* number of most picked items returned for an empty constraint, when a usage tracker is set */
+    @VisibleForTesting static final int TOP_PICKS_SIZE = 8;
 
-    // Concurrent set
-    private final Set<CharSequence> activeTokens;
+    /* number of results of each filter pass whose match ranges are computed in background, the others are computed when bound */
+    @VisibleForTesting static final int MATCH_RANGES_COUNT = 64;
+    /* number of results of each filter pass (roughly the visible rows) whose text is prepared in background by the view binder */
+    @VisibleForTesting static final int PREPARED_TEXTS_COUNT = 10;
 
-    // GuardedBy("main thread")
+    private final Executor computationExecutor;
+    /* writes the index snapshots, so that they never delay filtering */
+    private final Executor ioExecutor;
+    /* inflates the prewarmed views, so that they never delay filtering */
+    private final Executor prewarmExecutor;
+    private final Handler mainThreadHandler;
+
+    /* latest published index: while a data set is being indexed, this is a partial snapshot with the items indexed so far */
+    private volatile ItemIndex<M> index;
+    /* last complete index, used to match tokens to items */
+    private volatile ItemIndex<M> tokenIndex;
+    /* this is used to retain deleted items until we need them to call onTokenRemoved(CharSequence, M) */
+    private volatile ItemIndex<M> scrapIndex;
+
+    // GuardedBy("main thread"), except for prepareText() and getViewHolder() of prewarmed views
     private final AutoCompleteViewBinder<M> viewBinder;
+    /* notifies the adapters of the attached views when the data set changes */
+    private final DataSetObservable dataSetObservable = new DataSetObservable();
+
+    /* row views inflated in background before the drop down is shown, used by getView() before inflating new ones */
+    private final Queue<View> prewarmedViews = new ConcurrentLinkedQueue<>();
+    /* incremented when prewarming starts or the prewarmed views are cleared, to stop outdated prewarming */
+    private final AtomicInteger prewarmGeneration = new AtomicInteger();
     // thread safe where needed
     private final TokenFilter<M> tokenFilter;
 
+    private volatile long filteringBudgetNanos;
+    /* ranked results of the latest filter passes on the current data set */
+    private final ResultCache<M> resultCache = new ResultCache<>(DEFAULT_CACHE_ENTRIES, DEFAULT_CACHE_BYTES);
+
+    private volatile @Nullable UsageTracker usageTracker;
+    private volatile @Nullable UsageComparator<M> usageComparator;
+    /* results for an empty constraint: the most picked items of the current data set */
+    private volatile @Nullable TopPicks<M> topPicks;
+
+    // GuardedBy("computation thread")
+    private long indexedVersion = NO_VERSION;
+    // GuardedBy("main thread")
+    private @Nullable File indexSnapshotFile;
+
     // GuardedBy("main thread")
     private @Nullable OnTokensChangedListener<M> listener;
+    /* the tokens of each attached view, so that only the text of the edited view is matched */
     // GuardedBy("main thread")
-    private @Nullable CharSequence lastText;
+    private final Map<View, ViewTokens> viewTokens = new WeakHashMap<>();
 
     BaseTypeAdapterDelegate(@NonNull AutoCompleteViewBinder<M> viewBinder, @NonNull TokenFilter<M> tokenFilter) {
-        this(Executors.newSingleThreadExecutor(), new Handler(Looper.getMainLooper()), viewBinder, tokenFilter);
+        this(Executors.newSingleThreadExecutor(), BackgroundExecutors.io(), BackgroundExecutors.lowPriority(),
+                new Handler(Looper.getMainLooper()), viewBinder, tokenFilter);
+    }
+
+    @VisibleForTesting BaseTypeAdapterDelegate(@NonNull Executor executor,
+                                               @NonNull Handler mainThreadHandler,
+                                               @NonNull AutoCompleteViewBinder<M> viewBinder,
+                                               @NonNull TokenFilter<M> tokenFilter) {
+        this(executor, executor, executor, mainThreadHandler, viewBinder, tokenFilter);
     }
 
     @VisibleForTesting BaseTypeAdapterDelegate(@NonNull Executor computationExecutor,
+                                               @NonNull Executor ioExecutor,
+                                               @NonNull Executor prewarmExecutor,
                                                @NonNull Handler mainThreadHandler,
                                                @NonNull AutoCompleteViewBinder<M> viewBinder,
                                                @NonNull TokenFilter<M> tokenFilter) {
         this.computationExecutor = computationExecutor;
+        this.ioExecutor = ioExecutor;
+        this.prewarmExecutor = prewarmExecutor;
         this.mainThreadHandler = mainThreadHandler;
         this.viewBinder = viewBinder;
         this.tokenFilter = tokenFilter;
 
-        this.itemsMap = new LinkedHashMap<>();
-        this.itemsScrapMap = new ConcurrentHashMap<>();
-        this.filteredItems = new ArrayList<>();
-
-        this.activeTokens = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        this.index = ItemIndex.empty();
+        this.tokenIndex = ItemIndex.empty();
+        this.scrapIndex = ItemIndex.empty();
     }
 
     @Override
@@ -120,85 +183,433 @@ class BaseTypeAdapterDelegate<M>
     @Override
     @CallSuper
     public void setItems(@NonNull List<M> items) {
+        setItems(items, NO_VERSION);
+    }
+
+    @Override
+    @CallSuper
+    public void setItems(@NonNull List<M> items, long dataVersion) {
+        File snapshotFile = dataVersion != NO_VERSION ? indexSnapshotFile : null;
         //noinspection WrongThread
-        computationExecutor.execute(() -> setItemsSync(items));
+        computationExecutor.execute(() -> setItemsSync(items, dataVersion, snapshotFile));
+    }
+
+    @Override
+    public final void setIndexSnapshotFile(@Nullable File snapshotFile) {
+        this.indexSnapshotFile = snapshotFile;
     }
 
     @WorkerThread
-    private void setItemsSync(@NonNull List<M> items) {
-        runLocked(lock.writeLock(), () -> mapItems(items));
+    private void setItemsSync(@NonNull List<M> items, long dataVersion, @Nullable File snapshotFile) {
+        if (dataVersion != NO_VERSION && dataVersion == indexedVersion) {
+            return; // the data set hasn't changed since it was last indexed
+        }
+
+        int fingerprint = snapshotFile != null ? getFilterFingerprint(items) : 0;
+        CharSequence[] tokens = snapshotFile != null ? IndexSnapshot.read(snapshotFile, fingerprint, dataVersion, items.size()) : null;
+        boolean restored = tokens != null;
+        if (!restored) {
+            tokens = new CharSequence[items.size()];
+        }
+        mapItems(items, tokens, restored);
+        indexedVersion = dataVersion;
+
         mainThreadHandler.post(() -> {
-            filteredItems.clear();
-            notifyDataSetChanged();
+            dataSetObservable.notifyChanged();
 
             // the data set has changed, we need to compute token changes even if the text is unchanged
-            if (lastText != null) {
-                computeTokenChangesAsync(lastText);
+            for (ViewTokens state : viewTokens.values()) {
+                computeTokenChangesAsync(state, state.text);
             }
         });
+
+        if (snapshotFile != null && !restored) { // persist the token strings for the next start
+            CharSequence[] snapshotTokens = tokens; // never modified after indexing
+            //noinspection WrongThread
+            ioExecutor.execute(() -> IndexSnapshot.write(snapshotFile, fingerprint, dataVersion, snapshotTokens));
+        }
     }
 
+    /**
+     * Return the fingerprint of the filter computing the token strings: the hash of the token string of the first item, which changes if
+     * the filter formats the tokens differently (i.e. with another handle) even when the data set version doesn't. The filter class is
+     * not part of it, as its name can change between builds of the same app.
+     */
     @WorkerThread
-    private void mapItems(@NonNull List<M> items) {
-        itemsScrapMap.clear();
-        itemsScrapMap.putAll(itemsMap);
-        itemsMap.clear();
+    private int getFilterFingerprint(@NonNull List<M> items) {
+        return items.isEmpty() ? 0 : getFilter().toTokenString(items.get(0)).toString().hashCode();
+    }
 
+    /**
+     * Index the passed items in chunks, publishing a partial index after each chunk so that filtering can search the items indexed so far.
+     *
+     * @param items    The items to index.
+     * @param tokens   The token strings of the items, in the same order: filled in here when they're not restored from a snapshot.
+     * @param restored Whether the token strings were restored from a snapshot.
+     */
+    @WorkerThread
+    private void mapItems(@NonNull List<M> items, @NonNull CharSequence[] tokens, boolean restored) {
         TokenFilter<M> filter = getFilter();
+        ItemIndex.Builder<M> builder = new ItemIndex.Builder<>(items.size());
+
+        int i = 0;
         for (M item : items) {
-            itemsMap.put(filter.toTokenString(item), item);
+            if (!restored) {
+                tokens[i] = filter.toTokenString(item);
+            }
+            builder.add(tokens[i], item);
+            if (++i % INDEXING_CHUNK_SIZE == 0) {
+                index = builder.snapshot();
+            }
+        }
+
+        ItemIndex<M> completeIndex = builder.build();
+        if (filter instanceof IndexedTokenFilter) { // until this is published, filtering scans the partial index
+            completeIndex = completeIndex.withFilterIndex(((IndexedTokenFilter<M, ?>) filter).buildIndex(completeIndex.getItems()));
         }
+        scrapIndex = tokenIndex;
+        tokenIndex = completeIndex;
+        index = completeIndex;
+        resultCache.clear(); // results of the previous data set can't be returned anymore
+        warmUpTopPicks();
     }
 
     @Override
-    public final void setFilteredItems(@NonNull List<M> filteredItems) {
-        this.filteredItems.clear();
-        this.filteredItems.addAll(filteredItems);
+    public void registerDataSetObserver(@NonNull DataSetObserver observer) {
+        dataSetObservable.registerObserver(observer);
     }
 
     @Override
-    public final int getCount() {
-        return filteredItems.size();
+    public void unregisterDataSetObserver(@NonNull DataSetObserver observer) {
+        dataSetObservable.unregisterObserver(observer);
     }
 
     @Override
-    public final @NonNull M getItem(int position) {
-        return filteredItems.get(position);
+    @WorkerThread
+    public @NonNull PreparedRows<M> prepareRows(@NonNull CharSequence constraint, @NonNull List<M> results) {
+        int count = Math.min(results.size(), MATCH_RANGES_COUNT);
+        Map<M, MatchRanges> matchRanges = new IdentityHashMap<>(count);
+        Map<M, CharSequence> texts = new IdentityHashMap<>(Math.min(count, PREPARED_TEXTS_COUNT));
+        for (int i = 0; i < count; i++) {
+            M item = results.get(i);
+            MatchRanges itemMatchRanges = getMatchRanges(constraint, item);
+            if (itemMatchRanges != null) {
+                matchRanges.put(item, itemMatchRanges);
+            }
+            if (i < PREPARED_TEXTS_COUNT) { // only the rows that are likely to be displayed right away
+                CharSequence text = viewBinder.prepareText(item, constraint, itemMatchRanges);
+                if (text != null) {
+                    texts.put(item, text);
+                }
+            }
+        }
+        return new PreparedRows<>(matchRanges, texts);
     }
 
     @Override
-    public long getItemId(int position) {
-        return viewBinder.getItemId(getItem(position));
+    @AnyThread
+    public long getStableId(@NonNull M item) {
+        return viewBinder.getItemId(item);
     }
 
     @Override
+    @MainThread
     public @NonNull View getView(@NonNull LayoutInflater inflater,
-                                 int position,
+                                 @NonNull M item,
                                  @Nullable View convertView,
                                  @NonNull ViewGroup parent,
-                                 @Nullable CharSequence constraint) {
+                                 @Nullable CharSequence constraint,
+                                 @NonNull PreparedRows<M> preparedRows) {
+        if (convertView == null) {
+            convertView = prewarmedViews.poll();
+        }
         if (convertView == null) { // inflate view and create view holder
             convertView = inflater.inflate(viewBinder.getItemLayoutId(), parent, false);
             convertView.setTag(viewBinder.getViewHolder(convertView));
         }
         AutoCompleteViewHolder tag = (AutoCompleteViewHolder) convertView.getTag();
-        viewBinder.bindData(tag, getItem(position), constraint);
+        MatchRanges itemMatchRanges = preparedRows.getMatchRanges(item);
+        if (itemMatchRanges == null && constraint != null) { // only the first results have their ranges computed in background
+            itemMatchRanges = getMatchRanges(constraint, item);
+        }
+        viewBinder.bindData(tag, item, constraint, itemMatchRanges, preparedRows.getText(item));
         return convertView;
     }
 
     @Override
-    public View getView(int position, View convertView, ViewGroup parent) {
-        throw new UnsupportedOperationException();
+    @MainThread
+    public void prewarmViews(@NonNull LayoutInflater inflater, @NonNull ViewGroup parent, int count) {
+        int generation = prewarmGeneration.incrementAndGet();
+        prewarmedViews.clear();
+        LayoutInflater workerInflater = inflater.cloneInContext(inflater.getContext()); // inflaters are not thread safe
+        int layoutId = viewBinder.getItemLayoutId();
+        prewarmExecutor.execute(() -> {
+            try {
+                for (int i = 0; i < count && generation == prewarmGeneration.get(); i++) {
+                    View view = workerInflater.inflate(layoutId, parent, false);
+                    view.setTag(viewBinder.getViewHolder(view));
+                    prewarmedViews.add(view);
+                }
+            } catch (RuntimeException e) { // i.e. a view of the layout requires a looper: rows are inflated by getView()
+                Log.w(TAG, "Unable to prewarm row views", e);
+            }
+            if (generation != prewarmGeneration.get()) {
+                prewarmedViews.clear(); // cleared while inflating
+            }
+        });
+    }
+
+    @Override
+    @MainThread
+    public void clearPrewarmedViews() {
+        prewarmGeneration.incrementAndGet();
+        prewarmedViews.clear();
     }
 
     @Override
     @WorkerThread
-    public final @NonNull List<M> performFiltering(@NonNull CharSequence constraint) {
-        List<M> items = new ArrayList<>();
-        // defensive copy of the items to avoid locking for the whole filtering process
-        runLocked(lock.readLock(), () -> items.addAll(this.itemsMap.values()));
+    public final @NonNull FilteredItems<M> performFiltering(@NonNull CharSequence constraint,
+                                                            int batchSize,
+                                                            @Nullable OnEarlyBatchListener<M> batchListener,
+                                                            @NonNull OnFilteringCompletedListener<M> completedListener,
+                                                            @NonNull CancellationToken cancellationToken) {
+        List<M> topPicks = constraint.length() == 0 ? getTopPicks() : null;
+        if (topPicks != null) { // the user has only typed the handle: no need to go through the whole data set
+            return new FilteredItems<>(topPicks, false);
+        }
+        ItemIndex<M> index = this.index;
+        List<M> items = index.getItems();
+
+        // only results computed from a complete index can be cached, tagged with the usage version read before ranking them
+        String cacheKey = constraint.toString();
+        UsageTracker usageTracker = this.usageTracker;
+        long usageVersion = usageTracker != null ? usageTracker.getVersion() : 0;
+        if (index.isComplete()) {
+            List<M> cachedItems = resultCache.get(cacheKey, index, usageTracker, usageVersion);
+            if (cachedItems != null) {
+                return new FilteredItems<>(cachedItems, false);
+            }
+        }
+
+        // an indexed filter doesn't need to stream or to check the deadline
+        Object filterIndex = index.getFilterIndex();
+        long budgetNanos = filteringBudgetNanos;
+        boolean streaming = batchSize > 0 && batchListener != null;
+        if (filterIndex != null || (budgetNanos <= 0 && !streaming)) {
+            List<M> results = filterIndex != null ?
+                    performIndexedFiltering(constraint, filterIndex) : getFilter().performFiltering(constraint, items);
+            // the results are ranked in place: they're copied (with their tiers) unless the filter returns a new list for each pass
+            List<M> filteredItems = getFilter().returnsOwnedResults() ? results : copyResults(results);
+            rankResults(constraint, filteredItems);
+            return new FilteredItems<>(publishResults(cacheKey, index, usageTracker, usageVersion, filteredItems), false);
+        }
+
+        // filter in chunks so that the early batch can be published as soon as it's complete, and the deadline checked
+        long deadline = System.nanoTime() + budgetNanos;
+        List<M> filteredItems = new ArrayList<>();
+        boolean notified = !streaming;
+        int chunkSize = budgetNanos > 0 ? 1 : FILTERING_CHUNK_SIZE;
+        for (int from = 0, to; from < items.size(); from = to) {
+            to = Math.min(from + chunkSize, items.size());
+            long chunkStart = System.nanoTime();
+            filteredItems.addAll(getFilter().performFiltering(constraint, items.subList(from, to)));
+            long now = System.nanoTime();
+
+            if (!notified && filteredItems.size() >= batchSize && to < items.size()) {
+                // rank all the items matched so far, so that the best ranked ones are displayed (and kept) at the top
+                List<M> ranked = new ArrayList<>(filteredItems);
+                rankResults(constraint, ranked);
+                List<M> batch = new ArrayList<>(ranked.subList(0, batchSize));
+                //noinspection ConstantConditions
+                batchListener.onEarlyBatch(batch);
+                notified = true;
+            }
+            if (budgetNanos > 0 && to < items.size()) {
+                if (now - deadline > 0) { // out of time: return what we have and complete the pass in background
+                    List<M> partialItems = new ArrayList<>(filteredItems);
+                    rankResults(constraint, partialItems);
+                    int completeFrom = to;
+                    //noinspection WrongThread
+                    computationExecutor.execute(() ->
+                            completeFiltering(constraint, index, usageTracker, usageVersion, completeFrom, filteredItems,
+                                    completedListener, cancellationToken));
+                    return new FilteredItems<>(partialItems, true);
+                }
+                chunkSize = getTimedChunkSize(to - from, now - chunkStart, deadline - now);
+            }
+        }
+        rankResults(constraint, filteredItems);
+        return new FilteredItems<>(publishResults(cacheKey, index, usageTracker, usageVersion, filteredItems), false);
+    }
+
+    /**
+     * Return the number of items that can be matched in the time left before the deadline, estimated on the time the last chunk took.
+     */
+    @VisibleForTesting
+    static int getTimedChunkSize(int lastChunkSize, long lastChunkNanos, long remainingNanos) {
+        long nanosPerItem = Math.max(1, lastChunkNanos / lastChunkSize);
+        return (int) Math.max(1, Math.min(FILTERING_CHUNK_SIZE, remainingNanos / nanosPerItem));
+    }
+
+    @WorkerThread
+    private void completeFiltering(@NonNull CharSequence constraint,
+                                   @NonNull ItemIndex<M> index,
+                                   @Nullable UsageTracker usageTracker,
+                                   long usageVersion,
+                                   int from,
+                                   @NonNull List<M> filteredItems,
+                                   @NonNull OnFilteringCompletedListener<M> completedListener,
+                                   @NonNull CancellationToken cancellationToken) {
+        List<M> items = index.getItems();
+        for (; from < items.size(); from += FILTERING_CHUNK_SIZE) {
+            if (cancellationToken.isCancelled()) {
+                return; // a newer filter pass of the same view has started, the results would be discarded anyway
+            }
+            int to = Math.min(from + FILTERING_CHUNK_SIZE, items.size());
+            filteredItems.addAll(getFilter().performFiltering(constraint, items.subList(from, to)));
+        }
+        rankResults(constraint, filteredItems);
+        completedListener.onFilteringCompleted(publishResults(constraint.toString(), index, usageTracker, usageVersion, filteredItems));
+    }
+
+    /**
+     * Return the items of the current data set the user picked the most, or null if there is no usage tracker or no picks yet.
+     * They're computed again only after a new pick or data set.
+     */
+    @WorkerThread
+    private @Nullable List<M> getTopPicks() {
+        UsageTracker usageTracker = this.usageTracker;
+        if (usageTracker == null) {
+            return null;
+        }
+        long usageVersion = usageTracker.getVersion();
+        ItemIndex<M> tokenIndex = this.tokenIndex;
+        TopPicks<M> topPicks = this.topPicks;
+        if (topPicks == null || topPicks.usageVersion != usageVersion || topPicks.tokenIndex != tokenIndex) {
+            List<M> items = new ArrayList<>(TOP_PICKS_SIZE);
+            for (String key : usageTracker.getTopKeys(TOP_PICKS_SIZE)) {
+                M item = tokenIndex.getItem(key);
+                if (item != null) { // picked items can be removed from the data set
+                    items.add(item);
+                }
+            }
+            topPicks = new TopPicks<>(usageVersion, tokenIndex, Collections.unmodifiableList(items));
+            this.topPicks = topPicks;
+        }
+        return topPicks.items.isEmpty() ? null : topPicks.items; // unmodifiable
+    }
+
+    /**
+     * Compute the top picks in background, so that they're ready when the user types a handle.
+     */
+    private void warmUpTopPicks() {
+        if (usageTracker != null) {
+            //noinspection WrongThread
+            computationExecutor.execute(this::getTopPicks);
+        }
+    }
+
+    /* an indexed filter reads the ranges from the index of the current data set */
+    @AnyThread
+    @SuppressWarnings("unchecked")
+    private @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item) {
+        Object filterIndex = index.getFilterIndex();
+        if (filterIndex != null) {
+            return ((IndexedTokenFilter<M, Object>) getFilter()).getMatchRanges(constraint, item, filterIndex);
+        }
+        return getFilter().getMatchRanges(constraint, item);
+    }
+
+    @WorkerThread
+    @SuppressWarnings("unchecked")
+    private @NonNull List<M> performIndexedFiltering(@NonNull CharSequence constraint, @NonNull Object filterIndex) {
+        return ((IndexedTokenFilter<M, Object>) getFilter()).performFiltering(constraint, filterIndex);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static @NonNull <M> List<M> copyResults(@NonNull List<M> results) {
+        return results instanceof RankedList ? new RankedList<>((RankedList<M>) results) : new ArrayList<>(results);
+    }
+
+    /**
+     * Sort the filtered results with the usage comparator when a usage tracker is set, or the token filter comparator, if any.
+     * The comparator is locked for the whole sort, since its constraint is shared with any other thread sorting with it.
+     */
+    @WorkerThread
+    private void rankResults(@NonNull CharSequence constraint, @NonNull List<M> results) {
+        ConstraintComparator<M> comparator = usageComparator;
+        if (comparator == null) {
+            comparator = getFilter().getConstraintComparator();
+        }
+        if (comparator == null) {
+            return;
+        }
+        //noinspection SynchronizationOnLocalVariableOrMethodParameter
+        synchronized (comparator) {
+            comparator.setConstraint(constraint);
+            if (comparator.shouldCompare()) {
+                if (comparator instanceof SortKeyComparator) { // computes the sort key of each item once
+                    ((SortKeyComparator<M>) comparator).sort(results);
+                } else {
+                    Collections.sort(results, comparator);
+                }
+            }
+        }
+    }
+
+    /**
+     * Seal the complete (and ranked) results of a pass and cache them: the same unmodifiable list is returned to the caller and by later
+     * cache hits, so that the results are published by reference rather than copied.
+     */
+    @WorkerThread
+    private @NonNull List<M> publishResults(@NonNull String constraint,
+                                            @NonNull ItemIndex<M> index,
+                                            @Nullable UsageTracker usageTracker,
+                                            long usageVersion,
+                                            @NonNull List<M> results) {
+        List<M> published = Collections.unmodifiableList(results);
+        if (index.isComplete()) {
+            resultCache.put(constraint, index, usageTracker, usageVersion, published);
+        }
+        return published;
+    }
 
-        return getFilter().performFiltering(constraint, items);
+    @Override
+    public final void setResultCacheSize(int maxEntries, long maxBytes) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative");
+        }
+        resultCache.resize(maxEntries, maxBytes);
+    }
+
+    @Override
+    public final @NonNull CacheStats getResultCacheStats() {
+        return resultCache.getStats();
+    }
+
+    @Override
+    public final void setFilteringTimeBudget(long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("Time budget must not be negative");
+        }
+        filteringBudgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    @Override
+    public final void setUsageTracker(@Nullable UsageTracker usageTracker) {
+        this.usageComparator = usageTracker != null ? new UsageComparator<>(usageTracker, getFilter()) : null;
+        this.usageTracker = usageTracker;
+        resultCache.clear();
+        warmUpTopPicks();
+    }
+
+    @Override
+    public void onItemSelected(@NonNull M item) {
+        UsageTracker usageTracker = this.usageTracker;
+        if (usageTracker != null) {
+            usageTracker.recordSelection(getFilter().toTokenString(item));
+            warmUpTopPicks();
+        }
     }
 
     @Override
@@ -210,39 +621,57 @@ class BaseTypeAdapterDelegate<M>
     }
 
     @Override
-    public final void onTextChanged(@NonNull CharSequence text) {
-        lastText = text;
-        computeTokenChangesAsync(text);
+    public final void onTextChanged(@NonNull View view, @NonNull CharSequence text) {
+        ViewTokens tokens = viewTokens.get(view);
+        if (tokens == null) {
+            tokens = new ViewTokens();
+            viewTokens.put(view, tokens);
+        }
+        tokens.text = text;
+        computeTokenChangesAsync(tokens, text);
+    }
+
+    @Override
+    public final void onViewDetached(@NonNull View view) {
+        ViewTokens tokens = viewTokens.remove(view);
+        if (tokens == null || listener == null) {
+            return;
+        }
+        // after any pending token changes of the view, as they run on the same thread
+        computationExecutor.execute(() -> {
+            Collection<CharSequence> removedTokens = new ArrayList<>(tokens.activeTokens);
+            tokens.activeTokens.clear();
+            postNotifyTokenChanges(Collections.emptyList(), removedTokens);
+        });
     }
 
     @MainThread
-    private void computeTokenChangesAsync(@NonNull CharSequence text) {
+    private void computeTokenChangesAsync(@NonNull ViewTokens tokens, @NonNull CharSequence text) {
         Pattern pattern = getFilter().getValidTokenPattern();
         if (pattern == null || listener == null) {
             return;
         }
-        computationExecutor.execute(() -> computeTokenChanges(text, pattern));
+        computationExecutor.execute(() -> computeTokenChanges(tokens, text, pattern));
     }
 
     @WorkerThread
-    private void computeTokenChanges(CharSequence text, Pattern pattern) {
+    private void computeTokenChanges(@NonNull ViewTokens tokens, @NonNull CharSequence text, @NonNull Pattern pattern) {
         Set<CharSequence> activeTokens = new HashSet<>();
         Matcher matcher = pattern.matcher(text);
 
-        runLocked(lock.readLock(), () -> {
-            while (matcher.find()) {
-                String token = text.subSequence(matcher.start(), matcher.end()).toString().trim();
-                if (itemsMap.containsKey(token)) { // the token matches an item identifier
-                    activeTokens.add(token);
-                }
+        ItemIndex<M> tokenIndex = this.tokenIndex;
+        while (matcher.find()) {
+            String token = text.subSequence(matcher.start(), matcher.end()).toString().trim();
+            if (tokenIndex.getItem(token) != null) { // the token matches an item identifier
+                activeTokens.add(token);
             }
-        });
+        }
 
         // compute difference and update active tokens
-        Collection<CharSequence> addedTokens = getAddedTokens(this.activeTokens, activeTokens);
-        Collection<CharSequence> removedTokens = getRemovedTokens(this.activeTokens, activeTokens);
-        this.activeTokens.addAll(addedTokens);
-        this.activeTokens.removeAll(removedTokens);
+        Collection<CharSequence> addedTokens = getAddedTokens(tokens.activeTokens, activeTokens);
+        Collection<CharSequence> removedTokens = getRemovedTokens(tokens.activeTokens, activeTokens);
+        tokens.activeTokens.addAll(addedTokens);
+        tokens.activeTokens.removeAll(removedTokens);
 
         // notify listeners for added/removed tokens on the main thread
         postNotifyTokenChanges(addedTokens, removedTokens);
@@ -257,21 +686,19 @@ class BaseTypeAdapterDelegate<M>
         if (listener == null) {
             return;
         }
-        runLocked(lock.readLock(), () -> {
-            notifyRemovedTokens(listener, removedTokens);
-            notifyAddedTokens(listener, addedTokens);
-        });
+        notifyRemovedTokens(listener, removedTokens);
+        notifyAddedTokens(listener, addedTokens);
     }
 
     @MainThread
     private void notifyRemovedTokens(@NonNull OnTokensChangedListener<M> listener, @NonNull Collection<CharSequence> removedTokens) {
         for (CharSequence token : removedTokens) {
-            M removedTokenItem = itemsMap.get(token);
+            M removedTokenItem = tokenIndex.getItem(token);
             if (removedTokenItem != null) {
                 listener.onTokenRemoved(token, removedTokenItem);
             } else {
-                // retry from the scrap map: the item could have just been removed
-                removedTokenItem = itemsScrapMap.get(token);
+                // retry from the scrap index: the item could have just been removed
+                removedTokenItem = scrapIndex.getItem(token);
                 if (removedTokenItem != null) {
                     listener.onTokenRemoved(token, removedTokenItem);
                 }
@@ -282,15 +709,24 @@ class BaseTypeAdapterDelegate<M>
     @MainThread
     private void notifyAddedTokens(@NonNull OnTokensChangedListener<M> listener, @NonNull Collection<CharSequence> addedTokens) {
         for (CharSequence token : addedTokens) {
-            M addedTokenItem = itemsMap.get(token);
+            M addedTokenItem = tokenIndex.getItem(token);
             if (addedTokenItem != null) listener.onTokenAdded(token, addedTokenItem);
         }
     }
 
     @VisibleForTesting LinkedHashMap<CharSequence, M> getItemsMap() {
+        ItemIndex<M> tokenIndex = this.tokenIndex;
+        LinkedHashMap<CharSequence, M> itemsMap = new LinkedHashMap<>();
+        for (int i = 0; i < tokenIndex.size(); i++) {
+            itemsMap.put(tokenIndex.getToken(i), tokenIndex.getItem(i));
+        }
         return itemsMap;
     }
 
+    @VisibleForTesting ItemIndex<M> getIndex() {
+        return index;
+    }
+
     @VisibleForTesting
     static Collection<CharSequence> getAddedTokens(Set<CharSequence> existingSet, Set<CharSequence> newSet) {
         Set<CharSequence> added = new HashSet<>(newSet);
@@ -305,13 +741,33 @@ class BaseTypeAdapterDelegate<M>
         return removed;
     }
 
-    private static void runLocked(@NonNull Lock lock, @NonNull Runnable action) {
-        lock.lock();
-        try {
-            action.run();
-        } finally {
-            lock.unlock();
+
+    /**
+     * The most picked items of a data set, for a version of the usage scores.
+     */
+    // @Immutable
+    private static final class TopPicks<M> {
+        final long usageVersion;
+        final ItemIndex<M> tokenIndex;
+        final List<M> items;
+
+        TopPicks(long usageVersion, @NonNull ItemIndex<M> tokenIndex, @NonNull List<M> items) {
+            this.usageVersion = usageVersion;
+            this.tokenIndex = tokenIndex;
+            this.items = items;
         }
     }
 
+
+    /**
+     * The text of an attached view, with the tokens matching an item in it.
+     */
+    private static final class ViewTokens {
+
+        // GuardedBy("main thread")
+        @NonNull CharSequence text = "";
+        // Concurrent set
+        final Set<CharSequence> activeTokens = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    }
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.adapter;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Snapshot of the statistics of the filtering results cache of a type adapter.
+ *
+ * @see AutoCompleteTypeAdapter#getResultCacheStats()
+ */
+// @Immutable
+public final class CacheStats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final int size;
+    private final long estimatedBytes;
+
+    CacheStats(long hitCount, long missCount, long evictionCount, int size, long estimatedBytes) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.size = size;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    /**
+     * Return the number of filter passes served from the cache.
+     */
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Return the number of cacheable filter passes that had to be computed.
+     */
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Return the number of entries evicted to stay within the cache limits.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Return the ratio of cache hits over all the lookups, or 0 if there were no lookups yet.
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Return the number of entries currently cached.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Return an estimate of the memory retained by the cached entries, in bytes.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    @Override
+    public @NonNull String toString() {
+        return "CacheStats{hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + ", size=" + size
+                + ", bytes=" + estimatedBytes + "}";
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.adapter;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * The items returned by a filter pass of a {@link TypeAdapterDelegate}.
+ * <p>
+ * A pass that exceeds the filtering time budget of its type adapter returns the items matched so far flagged as partial, while the rest
+ * of the data set is filtered in background.
+ *
+ * @see AutoCompleteTypeAdapter#setFilteringTimeBudget(long)
+ */
+// @Immutable
+public final class FilteredItems<M> {
+
+    private final List<M> items;
+    private final boolean partial;
+
+    FilteredItems(@NonNull List<M> items, boolean partial) {
+        this.items = items;
+        this.partial = partial;
+    }
+
+    /**
+     * Return the filtered items, ranked by the type adapter (with its usage tracker or the token filter comparator, if any) or in the
+     * order they appear in its data set otherwise. The items of a partial pass are ranked among themselves only.
+     * <p>
+     * The list is handed over by reference (and can be shared with the type adapter results cache): it must not be modified.
+     */
+    public @NonNull List<M> getItems() {
+        return items;
+    }
+
+    /**
+     * Return whether the filter pass ran out of time before processing the whole data set.
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+}
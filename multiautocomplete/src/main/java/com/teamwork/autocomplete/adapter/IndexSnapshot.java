@@ -0,0 +1,187 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.adapter;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.MultiAutoComplete;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * On-disk snapshot of the token strings computed by a {@link BaseTypeAdapterDelegate} when indexing its items.
+ * <p>
+ * Only the token strings are persisted, since the filter indexes are opaque to the type adapter: the item index and any filter index
+ * are built again from the restored strings, which saves the {@link com.teamwork.autocomplete.filter.TokenFilter#toTokenString(Object)}
+ * calls of a warm start.
+ * <p>
+ * The snapshot is tagged with the caller-supplied data set version and with a fingerprint of the filter that computed the token strings,
+ * and it's only restored when both match: an app update changing how the filter formats the tokens (i.e. its handle) discards it even
+ * if the data set is unchanged. The file is read with a single sequential NIO read into a buffer and written to a temporary file first,
+ * which is then renamed, so that a process death never leaves a truncated snapshot behind.
+ * <p>
+ * File format (big endian): magic (int), format version (int), filter fingerprint (int), data set version (long), token count (int),
+ * then for each token its UTF-8 length (int) and bytes.
+ */
+final class IndexSnapshot {
+
+    private static final String TAG = MultiAutoComplete.class.getSimpleName();
+
+    private static final int MAGIC = 0x4D414353;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 4;
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private IndexSnapshot() { // no instantiation needed
+    }
+
+    /**
+     * Read the token strings from the passed snapshot file.
+     *
+     * @param file        The snapshot file.
+     * @param fingerprint The fingerprint of the filter computing the token strings.
+     * @param dataVersion The version of the data set being indexed.
+     * @param itemCount   The number of items in the data set being indexed.
+     * @return The token strings in the items order, or null if the snapshot is missing, unreadable or doesn't match the data set.
+     */
+    @WorkerThread
+    static @Nullable String[] read(@NonNull File file, int fingerprint, long dataVersion, int itemCount) {
+        if (!file.isFile() || file.length() < HEADER_SIZE || file.length() > Integer.MAX_VALUE) {
+            return null;
+        }
+        FileInputStream inputStream = null;
+        try {
+            inputStream = new FileInputStream(file);
+            FileChannel channel = inputStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    return null;
+                }
+            }
+            buffer.flip();
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getInt() != fingerprint
+                    || buffer.getLong() != dataVersion) {
+                return null;
+            }
+            int count = buffer.getInt();
+            if (count != itemCount) {
+                return null;
+            }
+
+            byte[] bytes = buffer.array();
+            String[] tokens = new String[count];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                int position = buffer.position();
+                tokens[i] = new String(bytes, position, length, UTF_8);
+                buffer.position(position + length);
+            }
+            return tokens;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            Log.w(TAG, "Unable to read index snapshot " + file, e);
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Write the passed token strings into the snapshot file, replacing any existing snapshot.
+     *
+     * @param file        The snapshot file.
+     * @param fingerprint The fingerprint of the filter that computed the token strings.
+     * @param dataVersion The version of the indexed data set.
+     * @param tokens      The token strings in the items order.
+     */
+    @WorkerThread
+    static void write(@NonNull File file, int fingerprint, long dataVersion, @NonNull CharSequence[] tokens) {
+        File tempFile = new File(file.getPath() + ".tmp");
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            FileChannel channel = outputStream.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(fingerprint).putLong(dataVersion).putInt(tokens.length);
+
+            for (CharSequence token : tokens) {
+                byte[] bytes = token.toString().getBytes(UTF_8);
+                if (buffer.remaining() < 4) {
+                    flush(channel, buffer);
+                }
+                buffer.putInt(bytes.length);
+                int offset = 0;
+                while (offset < bytes.length) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    int length = Math.min(buffer.remaining(), bytes.length - offset);
+                    buffer.put(bytes, offset, length);
+                    offset += length;
+                }
+            }
+            flush(channel, buffer);
+            outputStream.getFD().sync();
+            outputStream.close();
+            outputStream = null;
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Unable to rename " + tempFile + " to " + file);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write index snapshot " + file, e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        } finally {
+            closeQuietly(outputStream);
+        }
+    }
+
+    private static void flush(@NonNull FileChannel channel, @NonNull ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
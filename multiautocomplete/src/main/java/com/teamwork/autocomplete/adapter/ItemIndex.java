@@ -0,0 +1,253 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.filter.Dawg;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Immutable snapshot of the items indexed by a {@link BaseTypeAdapterDelegate}, in insertion order and without duplicate tokens.
+ * <p>
+ * While a large data set is being indexed, the {@link Builder} publishes partial snapshots: they share the same arrays of the complete
+ * index, but only expose the items indexed so far, so that filtering can start on the first items before the whole data set is processed.
+ * The builder never writes the shared part of the arrays: an item replaced after a snapshot is written into a copy of them.
+ * Only a complete index can look up items by their token: small indexes use a hash map, while indexes of at least
+ * {@link #COMPACT_LOOKUP_MIN_SIZE} items use a {@link Dawg} of the tokens plus a flat array of ordinals, which take a fraction of the
+ * memory of a map entry (and boxed ordinal) per item.
+ */
+// @Immutable
+final class ItemIndex<M> {
+
+    @VisibleForTesting
+    static final int COMPACT_LOOKUP_MIN_SIZE = 10000;
+
+    private static final ItemIndex<?> EMPTY = new ItemIndex<>(new Object[0], new CharSequence[0], 0, true, Collections.emptyMap(), null,
+            null, null);
+
+    private final Object[] items;
+    private final CharSequence[] tokens;
+    private final int size;
+    private final boolean complete;
+    private final @Nullable Map<CharSequence, Integer> ordinals;
+    /* compact token lookup: the ordinal of the token at position i of tokenDawg is tokenOrdinals[i] */
+    private final @Nullable Dawg tokenDawg;
+    private final @Nullable int[] tokenOrdinals;
+    private final @Nullable Object filterIndex;
+
+    private final List<M> itemsList;
+
+    private ItemIndex(@NonNull Object[] items,
+                      @NonNull CharSequence[] tokens,
+                      int size,
+                      boolean complete,
+                      @Nullable Map<CharSequence, Integer> ordinals,
+                      @Nullable Dawg tokenDawg,
+                      @Nullable int[] tokenOrdinals,
+                      @Nullable Object filterIndex) {
+        this.items = items;
+        this.tokens = tokens;
+        this.size = size;
+        this.complete = complete;
+        this.ordinals = ordinals;
+        this.tokenDawg = tokenDawg;
+        this.tokenOrdinals = tokenOrdinals;
+        this.filterIndex = filterIndex;
+        this.itemsList = new ItemsList();
+    }
+
+    @SuppressWarnings("unchecked")
+    static <M> ItemIndex<M> empty() {
+        return (ItemIndex<M>) EMPTY;
+    }
+
+    /**
+     * Return whether the whole data set has been indexed, or this is a partial snapshot taken while indexing.
+     */
+    boolean isComplete() {
+        return complete;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    @NonNull M getItem(int ordinal) {
+        return (M) items[ordinal];
+    }
+
+    @NonNull CharSequence getToken(int ordinal) {
+        return tokens[ordinal];
+    }
+
+    /**
+     * Return the item whose token string matches the passed token, or null if not found (or the index is not complete).
+     */
+    @Nullable M getItem(@NonNull CharSequence token) {
+        if (tokenDawg != null && tokenOrdinals != null) {
+            int rank = tokenDawg.indexOf(token);
+            return rank >= 0 ? getItem(tokenOrdinals[rank]) : null;
+        }
+        Integer ordinal = ordinals != null ? ordinals.get(token) : null;
+        return ordinal != null ? getItem(ordinal) : null;
+    }
+
+    /**
+     * Return whether token lookups use the compact {@link Dawg} representation.
+     */
+    boolean hasCompactLookup() {
+        return tokenDawg != null;
+    }
+
+    /**
+     * Return the index built by an {@link com.teamwork.autocomplete.filter.IndexedTokenFilter} for the items of this (complete) index,
+     * or null if there is none.
+     */
+    @Nullable Object getFilterIndex() {
+        return filterIndex;
+    }
+
+    /**
+     * Return a copy of this complete index holding the passed filter index.
+     */
+    @NonNull ItemIndex<M> withFilterIndex(@NonNull Object filterIndex) {
+        return new ItemIndex<>(items, tokens, size, complete, ordinals, tokenDawg, tokenOrdinals, filterIndex);
+    }
+
+    /**
+     * Return an unmodifiable view of the indexed items.
+     */
+    @NonNull List<M> getItems() {
+        return itemsList;
+    }
+
+
+    private class ItemsList extends AbstractList<M> implements RandomAccess {
+
+        @Override
+        public M get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            return getItem(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+
+    /**
+     * Builds an {@link ItemIndex} from a worker thread, one item at a time.
+     */
+    static class Builder<M> {
+
+        private Object[] items;
+        private final CharSequence[] tokens;
+        private final Map<CharSequence, Integer> ordinals;
+        private int size;
+        /* number of items shared with the last snapshot: they can be read by filtering threads, so they're copied before a replacement */
+        private int sharedSize;
+
+        Builder(int capacity) {
+            items = new Object[capacity];
+            tokens = new CharSequence[capacity];
+            ordinals = new HashMap<>(capacity * 4 / 3 + 1);
+        }
+
+        /**
+         * Add an item to the index. If an item with the same token was already added, it's replaced keeping its original position.
+         */
+        @WorkerThread
+        void add(@NonNull CharSequence token, @NonNull M item) {
+            Integer ordinal = ordinals.get(token);
+            if (ordinal != null) {
+                if (ordinal < sharedSize) { // copy on write: published snapshots keep the previous array
+                    items = items.clone();
+                    sharedSize = 0;
+                }
+                items[ordinal] = item;
+                return;
+            }
+            ordinals.put(token, size);
+            items[size] = item;
+            tokens[size] = token;
+            size++;
+        }
+
+        /**
+         * Return a partial snapshot of the items added so far. Subsequent calls to {@link #add(CharSequence, Object)} won't affect it.
+         */
+        @WorkerThread
+        @NonNull ItemIndex<M> snapshot() {
+            sharedSize = size;
+            return new ItemIndex<>(items, tokens, size, false, null, null, null, null);
+        }
+
+        /**
+         * Return the complete index. The builder must not be used afterwards.
+         */
+        @WorkerThread
+        @NonNull ItemIndex<M> build() {
+            return build(COMPACT_LOOKUP_MIN_SIZE);
+        }
+
+        /**
+         * Return the complete index, using a compact token lookup if it holds at least the passed number of items.
+         */
+        @VisibleForTesting
+        @WorkerThread
+        @NonNull ItemIndex<M> build(int compactLookupMinSize) {
+            if (size < compactLookupMinSize) {
+                return new ItemIndex<>(items, tokens, size, true, ordinals, null, null, null);
+            }
+            String[] sortedTokens = new String[size];
+            for (int i = 0; i < size; i++) {
+                sortedTokens[i] = tokens[i].toString();
+            }
+            Arrays.sort(sortedTokens);
+            int unique = 0; // styled tokens which are not equal can still have the same string
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || !sortedTokens[i].equals(sortedTokens[unique - 1])) {
+                    sortedTokens[unique++] = sortedTokens[i];
+                }
+            }
+            Dawg tokenDawg = Dawg.build(Arrays.asList(sortedTokens).subList(0, unique));
+            int[] tokenOrdinals = new int[unique];
+            for (int i = size - 1; i >= 0; i--) { // the first item with a token string wins, as in the map
+                tokenOrdinals[tokenDawg.indexOf(tokens[i])] = i;
+            }
+            ordinals.clear();
+            return new ItemIndex<>(items, tokens, size, true, null, tokenDawg, tokenOrdinals, null);
+        }
+    }
+
+}
@@ -41,11 +41,6 @@ public class NullTypeAdapterDelegate extends BaseTypeAdapterDelegate<Object> {
         super(new NullViewBinder(), new NullTokenFilter());
     }
 
-    @Override
-    public long getItemId(int position) {
-        return 0;
-    }
-
     @Override
     public @NonNull TokenFilter<Object> getFilter() {
         return filter;
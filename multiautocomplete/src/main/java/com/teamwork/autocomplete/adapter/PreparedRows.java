@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.teamwork.autocomplete.filter.MatchRanges;
+import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Data prepared from the worker thread at the end of a filter pass for the rows of the first filtered items, by item identity: the
+ * ranges matching the constraint and the styled texts prepared by the {@link AutoCompleteViewBinder}, so that binding those rows on
+ * the main thread is cheap.
+ */
+// @Immutable
+public final class PreparedRows<M> {
+
+    private static final PreparedRows<?> EMPTY = new PreparedRows<>(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<M, MatchRanges> matchRanges;
+    private final Map<M, CharSequence> texts;
+
+    PreparedRows(@NonNull Map<M, MatchRanges> matchRanges, @NonNull Map<M, CharSequence> texts) {
+        this.matchRanges = matchRanges;
+        this.texts = texts;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static @NonNull <M> PreparedRows<M> empty() {
+        return (PreparedRows<M>) EMPTY;
+    }
+
+    /**
+     * Return the match ranges of the passed item, or null if they weren't computed.
+     */
+    public @Nullable MatchRanges getMatchRanges(@NonNull M item) {
+        return matchRanges.get(item);
+    }
+
+    /**
+     * Return the text prepared for the row of the passed item, or null if there is none.
+     */
+    public @Nullable CharSequence getText(@NonNull M item) {
+        return texts.get(item);
+    }
+
+    /**
+     * Return the rows prepared in this instance and in the passed one, which takes precedence for the items in both.
+     */
+    public @NonNull PreparedRows<M> mergeWith(@NonNull PreparedRows<M> newer) {
+        if (this == EMPTY) {
+            return newer;
+        }
+        Map<M, MatchRanges> mergedRanges = new IdentityHashMap<>(matchRanges);
+        mergedRanges.putAll(newer.matchRanges);
+        Map<M, CharSequence> mergedTexts = new IdentityHashMap<>(texts);
+        mergedTexts.putAll(newer.texts);
+        return new PreparedRows<>(mergedRanges, mergedTexts);
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.adapter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.teamwork.autocomplete.util.UsageTracker;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the ranked results of the filter passes of a {@link BaseTypeAdapterDelegate}, keyed by text constraint.
+ * <p>
+ * Each entry is tagged with the {@link ItemIndex} it was computed from and the {@link UsageTracker} version it was ranked with, so
+ * results of a previous data set or ranked with outdated usage scores are never returned. The tags are checked under the cache lock
+ * along with the lookup, so concurrent passes don't need to invalidate the cache when a pick is recorded.
+ * <p>
+ * The cache is bounded both by number of entries and by an estimate of the memory they retain (the result lists, not the items
+ * themselves).
+ */
+// @ThreadSafe
+final class ResultCache<M> {
+
+    /* rough estimate of the memory retained by an entry besides its result list: map entry, key string and list objects */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+    /* rough estimate of the memory taken by a reference in the result list array */
+    private static final int REFERENCE_BYTES = 4;
+
+    // GuardedBy("this")
+    private final LinkedHashMap<String, Entry<M>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // GuardedBy("this")
+    private int maxEntries;
+    // GuardedBy("this")
+    private long maxBytes;
+    // GuardedBy("this")
+    private long bytes;
+
+    // GuardedBy("this")
+    private long hits;
+    // GuardedBy("this")
+    private long misses;
+    // GuardedBy("this")
+    private long evictions;
+
+    ResultCache(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Return the cached results for the passed constraint, or null if they are missing, were computed from another index or ranked with
+     * other usage scores.
+     *
+     * @param usageTracker The usage tracker the results must have been ranked with, if any.
+     * @param usageVersion The {@link UsageTracker#getVersion() version} of the tracker the results must have been ranked with.
+     */
+    synchronized @Nullable List<M> get(@NonNull String constraint,
+                                       @NonNull ItemIndex<M> index,
+                                       @Nullable UsageTracker usageTracker,
+                                       long usageVersion) {
+        Entry<M> entry = entries.get(constraint);
+        if (entry == null || entry.index != index || entry.usageTracker != usageTracker || entry.usageVersion != usageVersion) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.results;
+    }
+
+    /**
+     * Cache the complete results for the passed constraint, evicting the least recently used entries if the cache is full.
+     *
+     * @param usageTracker The usage tracker the results were ranked with, if any.
+     * @param usageVersion The version of the tracker read before ranking the results: a pick recorded meanwhile makes them stale.
+     * @param results      The ranked results, unmodifiable: they're stored and returned by reference.
+     */
+    synchronized void put(@NonNull String constraint,
+                          @NonNull ItemIndex<M> index,
+                          @Nullable UsageTracker usageTracker,
+                          long usageVersion,
+                          @NonNull List<M> results) {
+        long entryBytes = estimateBytes(constraint, results);
+        if (maxEntries == 0 || entryBytes > maxBytes) {
+            return;
+        }
+        Entry<M> previous = entries.put(constraint, new Entry<>(index, usageTracker, usageVersion, results, entryBytes));
+        if (previous != null) {
+            bytes -= previous.bytes;
+        }
+        bytes += entryBytes;
+        trim();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    synchronized void resize(int maxEntries, long maxBytes) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        trim();
+    }
+
+    synchronized @NonNull CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    // GuardedBy("this")
+    private void trim() {
+        Iterator<Entry<M>> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+            bytes -= iterator.next().bytes;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static long estimateBytes(@NonNull String constraint, @NonNull List<?> results) {
+        return ENTRY_OVERHEAD_BYTES + 2L * constraint.length() + (long) REFERENCE_BYTES * results.size();
+    }
+
+
+    private static class Entry<M> {
+        final ItemIndex<M> index;
+        final UsageTracker usageTracker;
+        final long usageVersion;
+        final List<M> results;
+        final long bytes;
+
+        Entry(@NonNull ItemIndex<M> index, @Nullable UsageTracker usageTracker, long usageVersion, @NonNull List<M> results, long bytes) {
+            this.index = index;
+            this.usageTracker = usageTracker;
+            this.usageVersion = usageVersion;
+            this.results = results;
+            this.bytes = bytes;
+        }
+    }
+
+}
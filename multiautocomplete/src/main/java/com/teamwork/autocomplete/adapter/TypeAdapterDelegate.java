@@ -21,12 +21,15 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
+import com.teamwork.autocomplete.filter.MatchRanges;
 import com.teamwork.autocomplete.filter.TokenFilter;
+import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
 
 import java.util.List;
 
@@ -52,37 +55,26 @@ public interface TypeAdapterDelegate<M> {
     void unregisterDataSetObserver(@NonNull DataSetObserver observer);
 
     /**
-     * Set the list of currently filtered items into the type adapter.
-     * This will be called by the <code>Filter.performFiltering(CharSequence)</code> method.
+     * Called from the worker thread at the end of a filter pass to prepare the rows of the first filtered items: the ranges of their text
+     * matching the constraint (see {@link TokenFilter#getMatchRanges(CharSequence, Object)}) and the styled texts of the first visible
+     * rows (see {@link AutoCompleteViewBinder#prepareText(Object, CharSequence, MatchRanges)}).
      *
-     * @param items A list of items to set in the adapter.
+     * @param constraint The constraint of the filter pass.
+     * @param results    The filtered items.
+     * @return The prepared rows.
      */
-    @MainThread
-    void setFilteredItems(@NonNull List<M> items);
-
-    /**
-     * Get the current count of filtered items in the type adapter.
-     */
-    @MainThread
-    int getCount();
-
-    /**
-     * Return the item at the passed position in the type adapter.
-     *
-     * @param position The position in the adapter.
-     * @return The item.
-     */
-    @MainThread
-    @NonNull M getItem(int position);
+    @WorkerThread
+    @NonNull PreparedRows<M> prepareRows(@NonNull CharSequence constraint, @NonNull List<M> results);
 
     /**
-     * Return the item identifier as specified by {@link android.widget.BaseAdapter#getItemId(int)}.
+     * Return the identifier of the passed item, as specified by {@link android.widget.BaseAdapter#getItemId(int)} for its position. This
+     * is also called from the worker thread to diff the results of a filter pass against the displayed ones.
      *
-     * @param position The position of the item.
-     * @return The numeric identifier of the item at the passed position.
+     * @param item The item.
+     * @return The numeric identifier of the item.
      */
-    @MainThread
-    long getItemId(int position);
+    @AnyThread
+    long getStableId(@NonNull M item);
 
     //endregion
 
@@ -90,22 +82,46 @@ public interface TypeAdapterDelegate<M> {
     //region layout and view binding
 
     /**
-     * Retrieve the view for the given position using the inflater or the view holder associated to the view itself, and binds the data to
-     * it.
+     * Retrieve the view for the passed item using the inflater or the view holder associated to the view itself, and binds the data to
+     * it. The filtered items are held by the calling adapter rather than by the type adapter, so that it can be shared by several of
+     * them.
      *
-     * @param inflater    The {@link LayoutInflater} for inflating the view.
-     * @param position    The adapter position of the view to retrieve.
-     * @param convertView The convert view passed by the adapter.
-     * @param parent      The view parent for view inflation.
-     * @param constraint  The current text constraint to pass the view binder.
-     * @return The view for the element at the passed position.
+     * @param inflater     The {@link LayoutInflater} for inflating the view.
+     * @param item         The item to bind.
+     * @param convertView  The convert view passed by the adapter.
+     * @param parent       The view parent for view inflation.
+     * @param constraint   The current text constraint to pass the view binder.
+     * @param preparedRows The rows prepared in background for the adapter filtered items.
+     * @return The view for the passed item.
      * @see android.widget.BaseAdapter#getView(int, View, ViewGroup)
      */
+    @MainThread
     @NonNull View getView(@NonNull LayoutInflater inflater,
-                          int position,
+                          @NonNull M item,
                           @Nullable View convertView,
                           @NonNull ViewGroup parent,
-                          @Nullable CharSequence constraint);
+                          @Nullable CharSequence constraint,
+                          @NonNull PreparedRows<M> preparedRows);
+
+    /**
+     * Inflate the passed number of row views with their {@link com.teamwork.autocomplete.view.AutoCompleteViewHolder}s in background,
+     * so that {@link #getView(LayoutInflater, Object, View, ViewGroup, CharSequence, PreparedRows)} can use them rather than inflating
+     * the first rows on the main thread when the drop down is first shown. Any views prewarmed before are discarded. The views are
+     * inflated on a low priority thread rather than on the filtering one, so that prewarming never delays the first filter passes.
+     *
+     * @param inflater The {@link LayoutInflater} of the drop down: a copy of it is used in background.
+     * @param parent   The view parent for generating the rows layout params.
+     * @param count    The number of row views to inflate.
+     */
+    @MainThread
+    void prewarmViews(@NonNull LayoutInflater inflater, @NonNull ViewGroup parent, int count);
+
+    /**
+     * Discard the row views inflated with {@link #prewarmViews(LayoutInflater, ViewGroup, int)} that haven't been used, or stop
+     * inflating them.
+     */
+    @MainThread
+    void clearPrewarmedViews();
 
     //endregion
 
@@ -119,22 +135,107 @@ public interface TypeAdapterDelegate<M> {
 
     /**
      * Called by <code>Filter#performFiltering(CharSequence)</code> off the main thread to filter the list in this type adapter based on the
-     * passed constraint.
+     * passed constraint, within the time budget set with {@link AutoCompleteTypeAdapter#setFilteringTimeBudget(long)} and optionally
+     * streaming the results. The results are ranked and cached.
+     * <p>
+     * If the pass exceeds the time budget, it returns the items matched so far flagged as partial, and the rest of the data set is
+     * filtered in background: the complete results are then passed to the completion listener, unless the pass is cancelled first.
+     * The cancellation token is owned by the caller, so that a type adapter shared by several views only stops the passes which are
+     * outdated for their own view.
+     * When streaming, the early batch listener is notified as soon as enough matches are found, with the best ranked of the matches found
+     * so far.
      *
-     * @param constraint A text constraint to filter the adapter elements.
-     * @return A List of filtered items from this adapter.
+     * @param constraint        A text constraint to filter the adapter elements.
+     * @param batchSize         The number of matches in the early batch (usually, one screen of rows), or 0 to disable streaming.
+     * @param batchListener     The listener to notify with the early batch, if the pass finds at least that number of matches in time.
+     * @param completedListener The listener to notify with the complete results of a partial pass.
+     * @param cancellationToken The token telling whether the pass is outdated, i.e. a newer pass for the same view has started.
+     * @return The filtered items from this adapter, ranked on all the matches: they can rank better items above those of the early batch.
+     * The items list is never modified once returned, and it must not be modified by the caller: it can be published as it is, without
+     * copying it.
      */
     @WorkerThread
-    @NonNull List<M> performFiltering(@NonNull CharSequence constraint);
+    @NonNull FilteredItems<M> performFiltering(@NonNull CharSequence constraint,
+                                               int batchSize,
+                                               @Nullable OnEarlyBatchListener<M> batchListener,
+                                               @NonNull OnFilteringCompletedListener<M> completedListener,
+                                               @NonNull CancellationToken cancellationToken);
+
+    /**
+     * Called when the user commits the passed item from the suggestions (not when it's only displayed), to record the pick.
+     *
+     * @param item The selected item.
+     */
+    @MainThread
+    void onItemSelected(@NonNull M item);
 
     /**
      * Called by the {@link android.widget.MultiAutoCompleteTextView} when the text typed by the user has changed.
+     * <p>
+     * The tokens are tracked separately for each view, so that only the text of the edited view is matched: a token typed in two views
+     * is notified as added for each of them.
      *
+     * @param view The attached view whose text has changed.
      * @param text The text currently present in the editable text view.
      */
     @MainThread
-    void onTextChanged(@NonNull CharSequence text);
+    void onTextChanged(@NonNull View view, @NonNull CharSequence text);
+
+    /**
+     * Called when a view is detached, to discard the tokens tracked for it: its active tokens are notified as removed.
+     *
+     * @param view The detached view.
+     */
+    @MainThread
+    void onViewDetached(@NonNull View view);
 
     //endregion
 
+
+    /**
+     * Listener for the early batch of filtered items of a streaming filter pass.
+     *
+     * @see #performFiltering(CharSequence, int, OnEarlyBatchListener, OnFilteringCompletedListener, CancellationToken)
+     */
+    interface OnEarlyBatchListener<M> {
+
+        /**
+         * Called from the filtering worker thread with the first batch of items matching the constraint.
+         *
+         * @param batch A new List containing the best ranked of the matches found so far, owned by the listener.
+         */
+        @WorkerThread
+        void onEarlyBatch(@NonNull List<M> batch);
+    }
+
+    /**
+     * Listener for the complete results of a filter pass which exceeded its time budget.
+     *
+     * @see #performFiltering(CharSequence, int, OnEarlyBatchListener, OnFilteringCompletedListener, CancellationToken)
+     */
+    interface OnFilteringCompletedListener<M> {
+
+        /**
+         * Called from a background thread with all the items matching the constraint of the partial pass.
+         *
+         * @param results A List containing all the matches, which is never modified once passed and must not be modified by the listener.
+         */
+        @WorkerThread
+        void onFilteringCompleted(@NonNull List<M> results);
+    }
+
+    /**
+     * Cancellation state of a filter pass, checked by the type adapter while filtering in background.
+     *
+     * @see #performFiltering(CharSequence, int, OnEarlyBatchListener, OnFilteringCompletedListener, CancellationToken)
+     */
+    interface CancellationToken {
+
+        /**
+         * Return whether the filter pass has been cancelled, and its results would be discarded.
+         */
+        @AnyThread
+        boolean isCancelled();
+    }
+
 }
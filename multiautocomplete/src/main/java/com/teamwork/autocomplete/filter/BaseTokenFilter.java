@@ -16,6 +16,7 @@
 
 package com.teamwork.autocomplete.filter;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
@@ -31,6 +32,7 @@ import java.util.regex.Pattern;
  * <ul>
  * <li>Matches items by calling their {@link #toString()} method and checking if they contain the constraint</li>
  * <li>Does not provide a {@link ConstraintComparator}</li>
+ * <li>Provides the {@link #getMatchRanges(CharSequence, Object) match range} of the constraint within {@link #toString()}</li>
  * <li>Does not support pattern matching with {@link #getValidTokenPattern()}</li>
  * </ul>
  * <p>
@@ -60,11 +62,38 @@ public abstract class BaseTokenFilter<M> implements TokenFilter<M> {
         return filteredItems;
     }
 
+    @Override
+    public boolean returnsOwnedResults() {
+        return true; // performFiltering() is final
+    }
+
     @WorkerThread
     protected boolean matchesConstraint(@NonNull M item, @NonNull CharSequence constraint) {
         return item.toString().toLowerCase().contains(constraint.toString().toLowerCase());
     }
 
+    /**
+     * Return the first range of the item {@link #toString()} matching the constraint ignoring case, which is the same text the default
+     * {@link #matchesConstraint(Object, CharSequence)} and the view binders search for, so that the binders don't search it again on
+     * the main thread. Subclasses matching items differently should override this method too, or return null.
+     */
+    @Override
+    @AnyThread
+    public @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item) {
+        String text = item.toString();
+        String subText = constraint.toString();
+        if (subText.isEmpty()) {
+            return MatchRanges.empty();
+        }
+        // compares char by char rather than lower casing the texts, which can change their length and the offsets
+        for (int start = 0; start + subText.length() <= text.length(); start++) {
+            if (text.regionMatches(true, start, subText, 0, subText.length())) {
+                return MatchRanges.of(start, start + subText.length());
+            }
+        }
+        return null;
+    }
+
     @Override
     public @Nullable ConstraintComparator<M> getConstraintComparator() {
         return null;
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable dictionary of strings stored as a minimal acyclic automaton (DAWG), for very large vocabularies like a million names.
+ * <p>
+ * The automaton is built once from sorted keys, merging both common prefixes and common suffixes, and it's stored in a few flat
+ * primitive arrays rather than a node object per character. Each state also stores the number of keys accepted from it, so that it
+ * works as a perfect hash: {@link #indexOf(CharSequence)} returns the position of a key in sorted order, and all the keys starting with
+ * a prefix are a contiguous range of positions (see {@link #prefixStart(CharSequence)} and {@link #prefixCount(CharSequence)}).
+ */
+// @Immutable
+public final class Dawg {
+
+    /* arcs of state s are arcLabels/arcTargets[firstArcs[s]] to [firstArcs[s + 1] - 1], sorted by label */
+    private final int[] firstArcs;
+    private final char[] arcLabels;
+    private final int[] arcTargets;
+    /* number of keys accepted from each state, including the empty key if the state is final */
+    private final int[] counts;
+    private final boolean[] finals;
+
+    private Dawg(@NonNull int[] firstArcs, @NonNull char[] arcLabels, @NonNull int[] arcTargets, @NonNull int[] counts,
+                 @NonNull boolean[] finals) {
+        this.firstArcs = firstArcs;
+        this.arcLabels = arcLabels;
+        this.arcTargets = arcTargets;
+        this.counts = counts;
+        this.finals = finals;
+    }
+
+    /**
+     * Build a dictionary from the passed keys.
+     *
+     * @param sortedKeys The keys, sorted by {@link String#compareTo(String)} and without duplicates.
+     * @return The dictionary.
+     * @throws IllegalArgumentException if the keys are not sorted or unique.
+     */
+    @WorkerThread
+    public static @NonNull Dawg build(@NonNull List<String> sortedKeys) {
+        Map<BuildState, BuildState> register = new HashMap<>();
+        BuildState root = new BuildState();
+        String previous = null;
+        for (String key : sortedKeys) {
+            if (previous != null && previous.compareTo(key) >= 0) {
+                throw new IllegalArgumentException("Keys must be sorted and unique: '" + previous + "' before '" + key + "'");
+            }
+            int common = previous != null ? commonPrefixLength(previous, key) : 0;
+
+            // walk the common prefix, minimize the rest of the previous key and append the new suffix
+            BuildState state = root;
+            for (int i = 0; i < common; i++) {
+                state = state.lastTarget();
+            }
+            if (state.arcCount > 0) {
+                replaceOrRegister(state, register);
+            }
+            for (int i = common; i < key.length(); i++) {
+                BuildState next = new BuildState();
+                state.addArc(key.charAt(i), next);
+                state = next;
+            }
+            state.isFinal = true;
+            previous = key;
+        }
+        if (root.arcCount > 0) {
+            replaceOrRegister(root, register);
+        }
+        return flatten(root, register.size() + 1);
+    }
+
+    /**
+     * Return the number of keys in the dictionary.
+     */
+    public int size() {
+        return counts[0];
+    }
+
+    /**
+     * Return the position of the passed key in the sorted keys, or -1 if it's not in the dictionary.
+     */
+    public int indexOf(@NonNull CharSequence key) {
+        int state = 0;
+        int rank = 0;
+        for (int i = 0; i < key.length(); i++) {
+            if (finals[state]) {
+                rank++;
+            }
+            int arc = findArc(state, key.charAt(i));
+            if (arc < 0) {
+                return -1;
+            }
+            for (int smaller = firstArcs[state]; smaller < arc; smaller++) {
+                rank += counts[arcTargets[smaller]];
+            }
+            state = arcTargets[arc];
+        }
+        return finals[state] ? rank : -1;
+    }
+
+    /**
+     * Return the position of the first key starting with the passed prefix, or -1 if there is none.
+     */
+    public int prefixStart(@NonNull CharSequence prefix) {
+        int state = 0;
+        int rank = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (finals[state]) {
+                rank++;
+            }
+            int arc = findArc(state, prefix.charAt(i));
+            if (arc < 0) {
+                return -1;
+            }
+            for (int smaller = firstArcs[state]; smaller < arc; smaller++) {
+                rank += counts[arcTargets[smaller]];
+            }
+            state = arcTargets[arc];
+        }
+        return rank;
+    }
+
+    /**
+     * Return the number of keys starting with the passed prefix.
+     */
+    public int prefixCount(@NonNull CharSequence prefix) {
+        int state = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+            int arc = findArc(state, prefix.charAt(i));
+            if (arc < 0) {
+                return 0;
+            }
+            state = arcTargets[arc];
+        }
+        return counts[state];
+    }
+
+    /**
+     * Return the key at the passed position in sorted order.
+     */
+    public @NonNull String getKey(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        StringBuilder key = new StringBuilder();
+        int state = 0;
+        while (true) {
+            if (finals[state]) {
+                if (index == 0) {
+                    return key.toString();
+                }
+                index--;
+            }
+            for (int arc = firstArcs[state]; arc < firstArcs[state + 1]; arc++) {
+                int count = counts[arcTargets[arc]];
+                if (index < count) {
+                    key.append(arcLabels[arc]);
+                    state = arcTargets[arc];
+                    break;
+                }
+                index -= count;
+            }
+        }
+    }
+
+    /**
+     * Return the number of states of the automaton.
+     */
+    public int getStateCount() {
+        return finals.length;
+    }
+
+    private int findArc(int state, char label) {
+        int arc = Arrays.binarySearch(arcLabels, firstArcs[state], firstArcs[state + 1], label);
+        return arc >= 0 ? arc : -1;
+    }
+
+    private static int commonPrefixLength(@NonNull String key1, @NonNull String key2) {
+        int length = Math.min(key1.length(), key2.length());
+        int i = 0;
+        while (i < length && key1.charAt(i) == key2.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /* replace the last child of the passed state with an equivalent registered state, minimizing its own last child first */
+    private static void replaceOrRegister(@NonNull BuildState state, @NonNull Map<BuildState, BuildState> register) {
+        BuildState child = state.lastTarget();
+        if (child.arcCount > 0) {
+            replaceOrRegister(child, register);
+        }
+        BuildState registered = register.get(child);
+        if (registered != null) {
+            state.targets[state.arcCount - 1] = registered;
+        } else {
+            register.put(child, child);
+        }
+    }
+
+    private static @NonNull Dawg flatten(@NonNull BuildState root, int stateCount) {
+        // number the states breadth-first, the root is state 0
+        Map<BuildState, Integer> numbers = new IdentityHashMap<>(stateCount);
+        List<BuildState> states = new ArrayList<>(stateCount);
+        numbers.put(root, 0);
+        states.add(root);
+        int arcCount = 0;
+        for (int s = 0; s < states.size(); s++) {
+            BuildState state = states.get(s);
+            arcCount += state.arcCount;
+            for (int a = 0; a < state.arcCount; a++) {
+                if (!numbers.containsKey(state.targets[a])) {
+                    numbers.put(state.targets[a], states.size());
+                    states.add(state.targets[a]);
+                }
+            }
+        }
+
+        int size = states.size();
+        int[] firstArcs = new int[size + 1];
+        char[] arcLabels = new char[arcCount];
+        int[] arcTargets = new int[arcCount];
+        boolean[] finals = new boolean[size];
+        int arc = 0;
+        for (int s = 0; s < size; s++) {
+            BuildState state = states.get(s);
+            firstArcs[s] = arc;
+            finals[s] = state.isFinal;
+            for (int a = 0; a < state.arcCount; a++) {
+                arcLabels[arc] = state.labels[a];
+                //noinspection ConstantConditions
+                arcTargets[arc++] = numbers.get(state.targets[a]);
+            }
+        }
+        firstArcs[size] = arc;
+
+        // count the keys accepted from each state in post order, with an explicit stack to support long keys
+        int[] counts = new int[size];
+        Arrays.fill(counts, -1);
+        int[] stack = new int[size + 1];
+        int[] nextArcs = new int[size + 1];
+        for (int start = 0; start < size; start++) {
+            if (counts[start] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            stack[0] = start;
+            nextArcs[0] = firstArcs[start];
+            while (depth >= 0) {
+                int s = stack[depth];
+                if (nextArcs[depth] < firstArcs[s + 1]) {
+                    int target = arcTargets[nextArcs[depth]++];
+                    if (counts[target] < 0) {
+                        stack[++depth] = target;
+                        nextArcs[depth] = firstArcs[target];
+                    }
+                } else {
+                    int count = finals[s] ? 1 : 0;
+                    for (int a = firstArcs[s]; a < firstArcs[s + 1]; a++) {
+                        count += counts[arcTargets[a]];
+                    }
+                    counts[s] = count;
+                    depth--;
+                }
+            }
+        }
+        return new Dawg(firstArcs, arcLabels, arcTargets, counts, finals);
+    }
+
+
+    /**
+     * Mutable state used while building the automaton. Registered states are compared by their right language, which for a
+     * minimized suffix means: same finality and same arcs to the same (registered) targets.
+     */
+    private static class BuildState {
+        char[] labels = new char[2];
+        BuildState[] targets = new BuildState[2];
+        int arcCount;
+        boolean isFinal;
+
+        void addArc(char label, @NonNull BuildState target) {
+            if (arcCount == labels.length) {
+                labels = Arrays.copyOf(labels, arcCount * 2);
+                targets = Arrays.copyOf(targets, arcCount * 2);
+            }
+            labels[arcCount] = label;
+            targets[arcCount++] = target;
+        }
+
+        @NonNull BuildState lastTarget() {
+            return targets[arcCount - 1];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof BuildState)) return false;
+
+            BuildState that = (BuildState) o;
+            if (isFinal != that.isFinal || arcCount != that.arcCount) {
+                return false;
+            }
+            for (int a = 0; a < arcCount; a++) {
+                if (labels[a] != that.labels[a] || targets[a] != that.targets[a]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = isFinal ? 1 : 0;
+            for (int a = 0; a < arcCount; a++) {
+                result = 31 * result + labels[a];
+                result = 31 * result + System.identityHashCode(targets[a]);
+            }
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link IndexedTokenFilter} for very large vocabularies, which matches items whose text starts with the constraint, ignoring accents
+ * and case like {@link NormalizedTokenFilter}.
+ * <p>
+ * The folded texts are stored in a {@link Dawg}, where the texts starting with a prefix are a contiguous range of positions: filtering
+ * walks the constraint once and then only visits the matching items, which are returned in alphabetical order of their folded text
+ * (items with the same text keep the data set order). The index holds no object per item besides the items themselves, so it fits a
+ * dictionary of a million names in a fraction of the memory of a trie of nodes or a list of strings.
+ */
+public class DictionaryTokenFilter<M> extends IndexedTokenFilter<M, DictionaryTokenFilter.Index<M>> {
+
+    /**
+     * @param tokenFilter The filter to delegate handles and tokens to.
+     */
+    public DictionaryTokenFilter(@NonNull TokenFilter<M> tokenFilter) {
+        super(tokenFilter);
+    }
+
+    /**
+     * Return the text used to match the passed item. The default implementation returns {@link #toString()}, like {@link
+     * BaseTokenFilter}.
+     */
+    @WorkerThread
+    protected @NonNull CharSequence getSearchableText(@NonNull M item) {
+        return item.toString();
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull Index<M> buildIndex(@NonNull List<M> items) {
+        int size = items.size();
+        String[] foldedTexts = new String[size];
+        for (int i = 0; i < size; i++) {
+            foldedTexts[i] = TextNormalizer.fold(getSearchableText(items.get(i)));
+        }
+        String[] keys = foldedTexts.clone();
+        Arrays.sort(keys);
+        int keyCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (keyCount == 0 || !keys[i].equals(keys[keyCount - 1])) {
+                keys[keyCount++] = keys[i];
+            }
+        }
+        Dawg dawg = Dawg.build(Arrays.asList(keys).subList(0, keyCount));
+
+        // group the item ordinals by key position, keeping the data set order within each group
+        int[] itemKeys = new int[size];
+        int[] keyStarts = new int[keyCount + 1];
+        for (int i = 0; i < size; i++) {
+            itemKeys[i] = dawg.indexOf(foldedTexts[i]);
+            keyStarts[itemKeys[i] + 1]++;
+        }
+        for (int k = 0; k < keyCount; k++) {
+            keyStarts[k + 1] += keyStarts[k];
+        }
+        int[] keyItems = new int[size];
+        int[] next = Arrays.copyOf(keyStarts, keyCount);
+        for (int i = 0; i < size; i++) {
+            keyItems[next[itemKeys[i]]++] = i;
+        }
+        return new Index<>(new ArrayList<>(items), dawg, keyStarts, keyItems);
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull Index<M> index) {
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        int firstKey = index.dawg.prefixStart(foldedConstraint);
+        if (firstKey < 0) {
+            return new ArrayList<>(0);
+        }
+        int start = index.keyStarts[firstKey];
+        int end = index.keyStarts[firstKey + index.dawg.prefixCount(foldedConstraint)];
+        RankedList<M> filteredItems = new RankedList<>(end - start); // prefix matches only: a single tier
+        for (int i = start; i < end; i++) {
+            filteredItems.add(index.items.get(index.keyItems[i]));
+        }
+        return filteredItems;
+    }
+
+    /**
+     * Scan the passed items folding their text one by one: only used while a data set is being indexed.
+     */
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull List<M> items) {
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        List<M> filteredItems = new ArrayList<>();
+        for (M item : items) {
+            if (TextNormalizer.fold(getSearchableText(item)).startsWith(foldedConstraint)) {
+                filteredItems.add(item);
+            }
+        }
+        return filteredItems;
+    }
+
+    @Override
+    public boolean returnsOwnedResults() {
+        return true; // both the indexed and the list filtering return a new list
+    }
+
+
+    /**
+     * Return the range at the start of the item searchable text matching the constraint, or null when folding changes the length of the
+     * text and the range can't be mapped back to it.
+     */
+    @Override
+    @AnyThread
+    public @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item) {
+        CharSequence text = getSearchableText(item);
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        if (TextNormalizer.fold(text).length() != text.length()) {
+            return null;
+        }
+        int end = Math.min(foldedConstraint.length(), text.length());
+        return end > 0 ? MatchRanges.of(0, end) : MatchRanges.empty();
+    }
+
+    /**
+     * The folded texts of a data set, and for each of them in sorted order the ordinals of the items it belongs to.
+     */
+    // @Immutable
+    public static final class Index<M> {
+        final List<M> items;
+        final Dawg dawg;
+        /* the items of the text at position k are items[keyItems[keyStarts[k]]] to items[keyItems[keyStarts[k + 1] - 1]] */
+        final int[] keyStarts;
+        final int[] keyItems;
+
+        Index(@NonNull List<M> items, @NonNull Dawg dawg, @NonNull int[] keyStarts, @NonNull int[] keyItems) {
+            this.items = items;
+            this.dawg = dawg;
+            this.keyStarts = keyStarts;
+            this.keyItems = keyItems;
+        }
+    }
+
+}
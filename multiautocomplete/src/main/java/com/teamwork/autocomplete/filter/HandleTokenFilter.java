@@ -20,34 +20,49 @@ import androidx.annotation.NonNull;
 
 import com.teamwork.autocomplete.util.AutoCompleteUtils;
 
-import java.util.Locale;
-
 /**
- * {@link BaseTokenFilter} that supports tokens starting with an initial handle (like @token or #token).
+ * {@link BaseTokenFilter} that supports tokens starting with an initial handle (like @token or #token). The handle can be longer than
+ * a single character (like +:token), as those supported by a {@link com.teamwork.autocomplete.tokenizer.HandleTokenizer}.
  *
  * @author Marco Salis
  */
 public class HandleTokenFilter<M> extends BaseTokenFilter<M> {
 
+    /**
+     * The first character of the {@link #handle}.
+     */
     protected final char handleChar;
+    protected final String handle;
 
     public HandleTokenFilter(char handleChar) {
         this.handleChar = handleChar;
+        this.handle = String.valueOf(handleChar);
+    }
+
+    /**
+     * @param handle The non empty handle tokens start with.
+     */
+    public HandleTokenFilter(@NonNull String handle) {
+        if (handle.isEmpty()) {
+            throw new IllegalArgumentException("The handle must not be empty");
+        }
+        this.handleChar = handle.charAt(0);
+        this.handle = handle;
     }
 
     @Override
     public @NonNull CharSequence toTokenString(@NonNull M item) {
-        return String.format(Locale.US, "%c%s", handleChar, item.toString());
+        return handle + item.toString();
     }
 
     @Override
     public @NonNull CharSequence stripHandle(@NonNull CharSequence token) {
-        return AutoCompleteUtils.stripPrefixHandle(handleChar, token);
+        return AutoCompleteUtils.stripPrefixHandle(handle, token);
     }
 
     @Override
     public boolean supportsToken(@NonNull CharSequence token) {
-        return AutoCompleteUtils.hasPrefixHandle(handleChar, token);
+        return AutoCompleteUtils.hasPrefixHandle(handle, token);
     }
 
 }
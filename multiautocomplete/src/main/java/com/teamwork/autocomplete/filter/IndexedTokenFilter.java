@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
+import com.teamwork.autocomplete.util.ConstraintComparator;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decorator of a {@link TokenFilter} which filters items through an index, built once for each data set rather than processing every
+ * item at every keystroke.
+ * <p>
+ * The type adapter calls {@link #buildIndex(List)} from its worker thread whenever a data set is indexed, and then filters with {@link
+ * #performFiltering(CharSequence, Object)}. While a new data set is still being indexed, it falls back to {@link
+ * #performFiltering(CharSequence, List)} on the items indexed so far, which subclasses should override to match items consistently.
+ * <p>
+ * Handle support, token strings and token patterns are delegated to the wrapped filter.
+ *
+ * @param <M> The items model type.
+ * @param <I> The index type.
+ */
+public abstract class IndexedTokenFilter<M, I> implements TokenFilter<M> {
+
+    protected final TokenFilter<M> tokenFilter;
+
+    protected IndexedTokenFilter(@NonNull TokenFilter<M> tokenFilter) {
+        this.tokenFilter = tokenFilter;
+    }
+
+    /**
+     * Build the index for the passed data set. The index must not be modified after being returned.
+     *
+     * @param items The items of the data set, in the order they were passed to {@link AutoCompleteTypeAdapter#setItems(List)} (without
+     *              duplicate tokens).
+     * @return The index.
+     */
+    @WorkerThread
+    public abstract @NonNull I buildIndex(@NonNull List<M> items);
+
+    /**
+     * Filter the items of an index built with {@link #buildIndex(List)}.
+     *
+     * @param constraint The current text constraint to be used for matching.
+     * @param index      The index of the current data set.
+     * @return A new List containing the items that have matched the constraint, ranked.
+     * @see #returnsOwnedResults()
+     */
+    @WorkerThread
+    public abstract @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull I index);
+
+    /**
+     * Same as {@link #getMatchRanges(CharSequence, Object)} for an item filtered through an index, so that the filter can read what it
+     * precomputed for the item rather than processing its text again. The item may not belong to the index, i.e. when the results of a
+     * previous data set are still displayed. The default implementation ignores the index.
+     *
+     * @param constraint The constraint the item has matched.
+     * @param item       The matched item.
+     * @param index      The index of the current data set.
+     * @return The ranges of the item text matching the constraint, or null if unknown.
+     */
+    @AnyThread
+    public @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item, @NonNull I index) {
+        return getMatchRanges(constraint, item);
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull List<M> items) {
+        return tokenFilter.performFiltering(constraint, items);
+    }
+
+    @Override
+    public boolean supportsToken(@NonNull CharSequence token) {
+        return tokenFilter.supportsToken(token);
+    }
+
+    @Override
+    public @NonNull CharSequence stripHandle(@NonNull CharSequence token) {
+        return tokenFilter.stripHandle(token);
+    }
+
+    @Override
+    public @NonNull CharSequence toTokenString(@NonNull M item) {
+        return tokenFilter.toTokenString(item);
+    }
+
+    @Override
+    public @Nullable Pattern getValidTokenPattern() {
+        return tokenFilter.getValidTokenPattern();
+    }
+
+    /**
+     * Return null by default, since indexed filters rank their results themselves.
+     */
+    @Override
+    @WorkerThread
+    public @Nullable ConstraintComparator<M> getConstraintComparator() {
+        return null;
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable list of the character ranges of an item text that matched a text constraint, as computed by {@link
+ * TokenFilter#getMatchRanges(CharSequence, Object)}: a match can span several ranges, i.e. one per term of a multi-term constraint or
+ * one per initial of an acronym.
+ * <p>
+ * Ranges are passed to the {@link com.teamwork.autocomplete.view.AutoCompleteViewBinder} along with each item, so that it can highlight
+ * them without searching the constraint in the item text again.
+ */
+// @Immutable
+public final class MatchRanges {
+
+    private static final MatchRanges EMPTY = new MatchRanges(new int[0], 0);
+
+    /* start (inclusive) and end (exclusive) of each range */
+    private final int[] bounds;
+    /* index of the field the ranges refer to, for filters matching several fields of the items */
+    private final int field;
+
+    private MatchRanges(@NonNull int[] bounds, int field) {
+        this.bounds = bounds;
+        this.field = field;
+    }
+
+    public static @NonNull MatchRanges empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a single range.
+     *
+     * @param start The start of the range, inclusive.
+     * @param end   The end of the range, exclusive.
+     */
+    public static @NonNull MatchRanges of(int start, int end) {
+        return of(new int[]{start, end});
+    }
+
+    /**
+     * Create a list of ranges.
+     *
+     * @param bounds The start (inclusive) and end (exclusive) of each range, in sequence.
+     * @throws IllegalArgumentException if the bounds are not pairs, or a range ends before it starts.
+     */
+    public static @NonNull MatchRanges of(@NonNull int[] bounds) {
+        if (bounds.length % 2 != 0) {
+            throw new IllegalArgumentException("Bounds must be start and end pairs");
+        }
+        for (int i = 0; i < bounds.length; i += 2) {
+            if (bounds[i] < 0 || bounds[i + 1] < bounds[i]) {
+                throw new IllegalArgumentException("Invalid range: [" + bounds[i] + ", " + bounds[i + 1] + ")");
+            }
+        }
+        return bounds.length == 0 ? EMPTY : new MatchRanges(bounds.clone(), 0);
+    }
+
+    /**
+     * Return a copy of these ranges referring to the passed field of the item, i.e. for a {@link MultiFieldTokenFilter}.
+     *
+     * @param field The index of the field the ranges refer to.
+     */
+    public @NonNull MatchRanges inField(int field) {
+        if (field < 0) {
+            throw new IllegalArgumentException("Invalid field: " + field);
+        }
+        return field == this.field ? this : new MatchRanges(bounds, field);
+    }
+
+    /**
+     * Return the index of the field of the item the ranges refer to: it's 0 unless the filter matches several fields of the items, in
+     * which case it's the field that matched the constraint.
+     */
+    public int getField() {
+        return field;
+    }
+
+    /**
+     * Return the number of ranges.
+     */
+    public int size() {
+        return bounds.length / 2;
+    }
+
+    public boolean isEmpty() {
+        return bounds.length == 0;
+    }
+
+    /**
+     * Return the start of the range at the passed index, inclusive.
+     */
+    public int getStart(int index) {
+        return bounds[index * 2];
+    }
+
+    /**
+     * Return the end of the range at the passed index, exclusive.
+     */
+    public int getEnd(int index) {
+        return bounds[index * 2 + 1];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MatchRanges)) return false;
+
+        MatchRanges that = (MatchRanges) o;
+        return field == that.field && Arrays.equals(bounds, that.bounds);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(bounds) + field;
+    }
+
+    @Override
+    public @NonNull String toString() {
+        StringBuilder builder = new StringBuilder("MatchRanges[");
+        if (field > 0) {
+            builder.append("field ").append(field).append(": ");
+        }
+        for (int i = 0; i < size(); i++) {
+            builder.append(i > 0 ? ", " : "").append(getStart(i)).append('-').append(getEnd(i));
+        }
+        return builder.append(']').toString();
+    }
+
+}
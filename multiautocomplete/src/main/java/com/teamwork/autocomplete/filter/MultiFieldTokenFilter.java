@@ -0,0 +1,234 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link IndexedTokenFilter} which matches items by several searchable fields, i.e. name, username and email of a person.
+ * <p>
+ * The fields of all the items are projected and folded (see {@link TextNormalizer}) once when the data set is indexed, into a single
+ * flat store, so that each keystroke is a single pass over the store. Items are ranked by the first field they match in, in the order
+ * the fields were declared, with prefix matches first within the same field. The {@link MatchRanges} of an item refer to the field it
+ * matched in (see {@link MatchRanges#getField()}), so that view binders only highlight that field. Use {@link #search(CharSequence,
+ * Index)} to also know which field each item matched.
+ */
+public class MultiFieldTokenFilter<M> extends IndexedTokenFilter<M, MultiFieldTokenFilter.Index<M>> {
+
+    private final List<Field<M>> fields;
+
+    /**
+     * @param tokenFilter The filter to delegate handles and tokens to.
+     * @param fields      The searchable fields of the items, in order of relevance.
+     */
+    @SafeVarargs
+    public MultiFieldTokenFilter(@NonNull TokenFilter<M> tokenFilter, @NonNull Field<M>... fields) {
+        super(tokenFilter);
+        if (fields.length == 0) {
+            throw new IllegalArgumentException("At least one field is required");
+        }
+        this.fields = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(fields)));
+    }
+
+    /**
+     * Return the number of searchable fields of this filter.
+     */
+    public int getFieldCount() {
+        return fields.size();
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull Index<M> buildIndex(@NonNull List<M> items) {
+        int fieldCount = fields.size();
+        String[] keys = new String[items.size() * fieldCount];
+        int key = 0;
+        for (M item : items) { // keys of the same item are contiguous, in field order
+            for (Field<M> field : fields) {
+                CharSequence text = field.getText(item);
+                keys[key++] = text != null ? TextNormalizer.fold(text) : "";
+            }
+        }
+        return new Index<>(new ArrayList<>(items), fieldCount, keys);
+    }
+
+    /**
+     * Filter the items of the index, returning which field each item matched in.
+     *
+     * @param constraint The current text constraint to be used for matching.
+     * @param index      The index of the current data set.
+     * @return A new List of the matches, ranked by field and then by prefix match.
+     */
+    @WorkerThread
+    public @NonNull List<FieldMatch<M>> search(@NonNull CharSequence constraint, @NonNull Index<M> index) {
+        List<FieldMatch<M>> matches = new ArrayList<>();
+        for (List<FieldMatch<M>> bucket : searchBuckets(constraint, index)) {
+            matches.addAll(bucket);
+        }
+        return matches;
+    }
+
+    /* one bucket per field and match type (prefix or not), in rank order */
+    private @NonNull List<List<FieldMatch<M>>> searchBuckets(@NonNull CharSequence constraint, @NonNull Index<M> index) {
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        String[] keys = index.keys;
+        int fieldCount = index.fieldCount;
+
+        List<List<FieldMatch<M>>> buckets = new ArrayList<>(fieldCount * 2);
+        for (int i = 0; i < fieldCount * 2; i++) {
+            buckets.add(new ArrayList<>());
+        }
+        for (int key = 0; key < keys.length; key++) {
+            int position = keys[key].indexOf(foldedConstraint);
+            if (position < 0) {
+                continue;
+            }
+            int field = key % fieldCount;
+            buckets.get(field * 2 + (position == 0 ? 0 : 1)).add(new FieldMatch<>(index.items.get(key / fieldCount), field));
+            key += fieldCount - field - 1; // the first matching field wins, skip to the next item
+        }
+        return buckets;
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull Index<M> index) {
+        RankedList<M> filteredItems = new RankedList<>();
+        for (List<FieldMatch<M>> bucket : searchBuckets(constraint, index)) {
+            for (FieldMatch<M> match : bucket) {
+                filteredItems.add(match.getItem());
+            }
+            filteredItems.endTier();
+        }
+        return filteredItems;
+    }
+
+    /**
+     * Return the ranges of the first field of the item matching the constraint, as the filter does, with {@link MatchRanges#getField()}
+     * set to that field. The ranges are empty when folding changes the length of the field text, since they can't be mapped back to it.
+     */
+    @Override
+    @AnyThread
+    public @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item) {
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        for (int field = 0; field < fields.size(); field++) {
+            CharSequence text = fields.get(field).getText(item);
+            if (text == null) {
+                continue;
+            }
+            String foldedText = TextNormalizer.fold(text);
+            int start = foldedText.indexOf(foldedConstraint);
+            if (start >= 0) {
+                MatchRanges ranges = foldedConstraint.isEmpty() || foldedText.length() != text.length() ?
+                        MatchRanges.empty() : MatchRanges.of(start, start + foldedConstraint.length());
+                return ranges.inField(field);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Scan the passed items folding their fields one by one: only used while a data set is being indexed.
+     */
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull List<M> items) {
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        List<M> filteredItems = new ArrayList<>();
+        for (M item : items) {
+            for (Field<M> field : fields) {
+                CharSequence text = field.getText(item);
+                if (text != null && TextNormalizer.fold(text).contains(foldedConstraint)) {
+                    filteredItems.add(item);
+                    break;
+                }
+            }
+        }
+        return filteredItems;
+    }
+
+    @Override
+    public boolean returnsOwnedResults() {
+        return true; // both the indexed and the list filtering return a new list
+    }
+
+
+    /**
+     * Projection of a searchable field of an item.
+     */
+    public interface Field<M> {
+
+        /**
+         * Return the text of this field for the passed item, or null if the item doesn't have one. This is also called from the main
+         * thread to compute the match ranges of the rows being bound, so it should be a plain projection.
+         */
+        @AnyThread
+        @Nullable CharSequence getText(@NonNull M item);
+    }
+
+    /**
+     * An item matching the constraint, with the index of the (first) field it matched in.
+     */
+    // @Immutable
+    public static final class FieldMatch<M> {
+        private final M item;
+        private final int field;
+
+        FieldMatch(@NonNull M item, int field) {
+            this.item = item;
+            this.field = field;
+        }
+
+        public @NonNull M getItem() {
+            return item;
+        }
+
+        /**
+         * Return the index of the matched field, in the order passed to the filter constructor.
+         */
+        public int getField() {
+            return field;
+        }
+    }
+
+    /**
+     * The folded fields of a data set, stored item by item in a single array.
+     */
+    // @Immutable
+    public static final class Index<M> {
+        final List<M> items;
+        final int fieldCount;
+        final String[] keys;
+
+        Index(@NonNull List<M> items, int fieldCount, @NonNull String[] keys) {
+            this.items = items;
+            this.fieldCount = fieldCount;
+            this.keys = keys;
+        }
+    }
+
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.util.SortKeyComparator;
+import com.teamwork.autocomplete.util.TextNormalizer;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link IndexedTokenFilter} which matches items ignoring accents and case, regardless of the default locale: "zurich" matches
+ * "Z&uuml;rich" and "jose" matches "Jos&eacute;".
+ * <p>
+ * The searchable text of each item is folded with {@link TextNormalizer} and its alphabetical rank computed once, when the data set is
+ * indexed, so that filtering only compares the precomputed ranks. Results whose text starts with the constraint come first, and each
+ * group (a tier of the returned {@link RankedList}) is sorted alphabetically with the rules of the filter locale.
+ */
+public class NormalizedTokenFilter<M> extends IndexedTokenFilter<M, NormalizedTokenFilter.Index<M>> {
+
+    private final Locale locale;
+
+    /**
+     * Create a filter sorting results with the rules of the default locale.
+     *
+     * @param tokenFilter The filter to delegate handles and tokens to.
+     */
+    public NormalizedTokenFilter(@NonNull TokenFilter<M> tokenFilter) {
+        this(tokenFilter, Locale.getDefault());
+    }
+
+    /**
+     * @param tokenFilter The filter to delegate handles and tokens to.
+     * @param locale      The locale whose collation rules are used to sort results.
+     */
+    public NormalizedTokenFilter(@NonNull TokenFilter<M> tokenFilter, @NonNull Locale locale) {
+        super(tokenFilter);
+        this.locale = locale;
+    }
+
+    /**
+     * Return the text used to match the passed item. The default implementation returns {@link #toString()}, like {@link
+     * BaseTokenFilter}.
+     */
+    @WorkerThread
+    protected @NonNull CharSequence getSearchableText(@NonNull M item) {
+        return item.toString();
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull Index<M> buildIndex(@NonNull List<M> items) {
+        Collator collator = Collator.getInstance(locale); // a new instance, collators are not thread safe
+        collator.setStrength(Collator.PRIMARY);
+
+        int size = items.size();
+        String[] foldedTexts = new String[size];
+        byte[][] collationKeys = new byte[size][];
+        Map<M, Integer> ordinals = new IdentityHashMap<>(size);
+        Integer[] sortedOrdinals = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            M item = items.get(i);
+            CharSequence text = getSearchableText(item);
+            foldedTexts[i] = TextNormalizer.fold(text);
+            collationKeys[i] = collator.getCollationKey(text.toString()).toByteArray();
+            ordinals.put(item, i);
+            sortedOrdinals[i] = i;
+        }
+
+        // the collation keys are compared once per data set: filtering sorts the results by their alphabetical rank
+        Arrays.sort(sortedOrdinals, (o1, o2) -> {
+            int result = compareKeys(collationKeys[o1], collationKeys[o2]);
+            return result != 0 ? result : o1 - o2;
+        });
+        int[] collationRanks = new int[size];
+        for (int rank = 0; rank < size; rank++) {
+            collationRanks[sortedOrdinals[rank]] = rank;
+        }
+        return new Index<>(new ArrayList<>(items), ordinals, foldedTexts, collationRanks);
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull Index<M> index) {
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        String[] foldedTexts = index.foldedTexts;
+
+        int[] ordinals = new int[foldedTexts.length];
+        int count = 0;
+        for (int ordinal = 0; ordinal < foldedTexts.length; ordinal++) {
+            if (foldedTexts[ordinal].contains(foldedConstraint)) {
+                ordinals[count++] = ordinal;
+            }
+        }
+        RankedList<M> filteredItems = new RankedList<>(count);
+        if (foldedConstraint.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                filteredItems.add(index.items.get(ordinals[i]));
+            }
+            return filteredItems;
+        }
+
+        // prefix matches first, then the alphabetical rank: the prefix check runs once per match rather than once per comparison
+        int[] keys = new int[count];
+        for (int i = 0; i < count; i++) {
+            int ordinal = ordinals[i];
+            keys[i] = (foldedTexts[ordinal].startsWith(foldedConstraint) ? 0 : foldedTexts.length) + index.collationRanks[ordinal];
+        }
+        for (int position : SortKeyComparator.sortedOrder(keys)) {
+            if (keys[position] >= foldedTexts.length) { // the end of the prefix matches
+                filteredItems.endTier();
+            }
+            filteredItems.add(index.items.get(ordinals[position]));
+        }
+        return filteredItems;
+    }
+
+    /**
+     * Scan the passed items folding their text one by one: only used while a data set is being indexed.
+     */
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull List<M> items) {
+        String foldedConstraint = TextNormalizer.fold(constraint);
+        List<M> filteredItems = new ArrayList<>();
+        for (M item : items) {
+            if (TextNormalizer.fold(getSearchableText(item)).contains(foldedConstraint)) {
+                filteredItems.add(item);
+            }
+        }
+        return filteredItems;
+    }
+
+    @Override
+    public boolean returnsOwnedResults() {
+        return true; // both the indexed and the list filtering return a new list
+    }
+
+    /**
+     * Return the first range of the item searchable text matching the constraint ignoring accents and case, or null when folding
+     * changes the length of the text (i.e. "&szlig;" to "ss") and the ranges can't be mapped back to it.
+     */
+    @Override
+    @AnyThread
+    public @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item) {
+        CharSequence text = getSearchableText(item);
+        return findRanges(TextNormalizer.fold(constraint), text, TextNormalizer.fold(text));
+    }
+
+    /**
+     * Same as {@link #getMatchRanges(CharSequence, Object)}, reading the folded text of the item from the index rather than folding it
+     * again.
+     */
+    @Override
+    @AnyThread
+    public @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item, @NonNull Index<M> index) {
+        Integer ordinal = index.ordinals.get(item);
+        if (ordinal == null) { // an item of another data set
+            return getMatchRanges(constraint, item);
+        }
+        return findRanges(TextNormalizer.fold(constraint), getSearchableText(item), index.foldedTexts[ordinal]);
+    }
+
+    private static @Nullable MatchRanges findRanges(@NonNull String foldedConstraint,
+                                                    @NonNull CharSequence text,
+                                                    @NonNull String foldedText) {
+        int start = foldedText.indexOf(foldedConstraint);
+        if (start < 0 || foldedText.length() != text.length()) {
+            return null;
+        }
+        return foldedConstraint.isEmpty() ? MatchRanges.empty() : MatchRanges.of(start, start + foldedConstraint.length());
+    }
+
+    /* compares collation keys as unsigned bytes, like CollationKey.compareTo() */
+    private static int compareKeys(@NonNull byte[] key1, @NonNull byte[] key2) {
+        int length = Math.min(key1.length, key2.length);
+        for (int i = 0; i < length; i++) {
+            int result = (key1[i] & 0xFF) - (key2[i] & 0xFF);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return key1.length - key2.length;
+    }
+
+
+    /**
+     * The folded texts and alphabetical ranks of a data set, in the data set order.
+     */
+    // @Immutable
+    public static final class Index<M> {
+        final List<M> items;
+        final Map<M, Integer> ordinals;
+        final String[] foldedTexts;
+        /* the position of each item when the data set is sorted with the collation rules of the filter locale */
+        final int[] collationRanks;
+
+        Index(@NonNull List<M> items, @NonNull Map<M, Integer> ordinals, @NonNull String[] foldedTexts, @NonNull int[] collationRanks) {
+            this.items = items;
+            this.ordinals = ordinals;
+            this.foldedTexts = foldedTexts;
+            this.collationRanks = collationRanks;
+        }
+    }
+
+}
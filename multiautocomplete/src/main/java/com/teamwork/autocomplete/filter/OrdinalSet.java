@@ -0,0 +1,471 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable compressed set of item ordinals (non negative ints), for index posting lists and filter candidate sets.
+ * <p>
+ * It follows the design of Roaring bitmaps: ordinals are partitioned by their 16 most significant bits, and each partition is stored in
+ * the most compact container for its density, a sorted array of 16 bit values for sparse partitions (up to {@value #ARRAY_MAX_SIZE}
+ * values) or a 65536 bit bitmap for dense ones. Set operations work container by container, so {@link #and(OrdinalSet)}, {@link
+ * #or(OrdinalSet)}, {@link #andNot(OrdinalSet)} and {@link #cardinality()} are cheap on both sparse and dense sets, and containers
+ * are shared between the operands and the results.
+ */
+// @Immutable
+public final class OrdinalSet {
+
+    /* maximum size of an array container: beyond this, a bitmap container (8KB) is smaller */
+    static final int ARRAY_MAX_SIZE = 4096;
+
+    private static final int BITMAP_WORDS = 1 << 16 >>> 6;
+
+    private static final OrdinalSet EMPTY = new OrdinalSet(new char[0], new Container[0], 0);
+
+    private final char[] keys;
+    private final Container[] containers;
+    private final int size;
+
+    private OrdinalSet(@NonNull char[] keys, @NonNull Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    public static @NonNull OrdinalSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a set with the passed ordinals, in any order and with any duplicates.
+     */
+    public static @NonNull OrdinalSet of(@NonNull int... ordinals) {
+        return of(ordinals, ordinals.length);
+    }
+
+    /**
+     * Create a set with the first count ordinals of the passed array, in any order and with any duplicates.
+     * Note that the array might be sorted in place.
+     */
+    public static @NonNull OrdinalSet of(@NonNull int[] ordinals, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        if (!isSorted(ordinals, count)) {
+            Arrays.sort(ordinals, 0, count);
+        }
+        if (ordinals[0] < 0) {
+            throw new IllegalArgumentException("Ordinals must not be negative");
+        }
+
+        int partitions = (ordinals[count - 1] >>> 16) - (ordinals[0] >>> 16) + 1;
+        Appender appender = new Appender(Math.min(partitions, count));
+        int start = 0;
+        while (start < count) {
+            int high = ordinals[start] >>> 16;
+            int end = start;
+            while (end < count && ordinals[end] >>> 16 == high) {
+                end++;
+            }
+            char[] values = new char[end - start];
+            int size = 0;
+            for (int i = start; i < end; i++) {
+                char value = (char) ordinals[i];
+                if (size == 0 || values[size - 1] != value) {
+                    values[size++] = value;
+                }
+            }
+            appender.append((char) high, ArrayContainer.create(values, size));
+            start = end;
+        }
+        return appender.build();
+    }
+
+    /**
+     * Return the number of ordinals in the set.
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int ordinal) {
+        if (ordinal < 0) {
+            return false;
+        }
+        int position = Arrays.binarySearch(keys, 0, size, (char) (ordinal >>> 16));
+        return position >= 0 && containers[position].contains((char) ordinal);
+    }
+
+    /**
+     * Return the intersection of this set and the passed one.
+     */
+    public @NonNull OrdinalSet and(@NonNull OrdinalSet other) {
+        Appender appender = new Appender(Math.min(size, other.size));
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                appender.append(keys[i], containers[i].and(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return appender.build();
+    }
+
+    /**
+     * Return the union of this set and the passed one.
+     */
+    public @NonNull OrdinalSet or(@NonNull OrdinalSet other) {
+        Appender appender = new Appender(size + other.size);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                appender.append(keys[i], containers[i++]);
+            } else if (i == size || keys[i] > other.keys[j]) {
+                appender.append(other.keys[j], other.containers[j++]);
+            } else {
+                appender.append(keys[i], containers[i++].or(other.containers[j++]));
+            }
+        }
+        return appender.build();
+    }
+
+    /**
+     * Return the ordinals of this set which are not in the passed one.
+     */
+    public @NonNull OrdinalSet andNot(@NonNull OrdinalSet other) {
+        Appender appender = new Appender(size);
+        int j = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) {
+                j++;
+            }
+            if (j < other.size && other.keys[j] == keys[i]) {
+                appender.append(keys[i], containers[i].andNot(other.containers[j]));
+            } else {
+                appender.append(keys[i], containers[i]);
+            }
+        }
+        return appender.build();
+    }
+
+    /**
+     * Return the ordinals of the set in ascending order.
+     */
+    public @NonNull int[] toArray() {
+        int[] ordinals = new int[cardinality()];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offset = containers[i].copyTo(keys[i] << 16, ordinals, offset);
+        }
+        return ordinals;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return Arrays.equals(toArray(), ((OrdinalSet) o).toArray());
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(toArray());
+    }
+
+    @Override
+    public @NonNull String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    private static boolean isSorted(@NonNull int[] ordinals, int count) {
+        for (int i = 1; i < count; i++) {
+            if (ordinals[i - 1] > ordinals[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Accumulates the non empty containers of a new set, in ascending key order.
+     */
+    private static class Appender {
+        private final char[] keys;
+        private final Container[] containers;
+        private int size;
+
+        Appender(int capacity) {
+            keys = new char[capacity];
+            containers = new Container[capacity];
+        }
+
+        void append(char key, @NonNull Container container) {
+            if (container.cardinality() > 0) {
+                keys[size] = key;
+                containers[size++] = container;
+            }
+        }
+
+        @NonNull OrdinalSet build() {
+            return size == 0 ? EMPTY : new OrdinalSet(keys, containers, size);
+        }
+    }
+
+    /**
+     * The 16 low bits of the ordinals of a partition.
+     */
+    private interface Container {
+
+        int cardinality();
+
+        boolean contains(char value);
+
+        @NonNull Container and(@NonNull Container other);
+
+        @NonNull Container or(@NonNull Container other);
+
+        @NonNull Container andNot(@NonNull Container other);
+
+        /* copy the ordinals into the passed array from the passed offset, returning the offset after the last copied ordinal */
+        int copyTo(int high, @NonNull int[] ordinals, int offset);
+    }
+
+    /**
+     * Sorted array of values, for partitions with up to {@link #ARRAY_MAX_SIZE} ordinals.
+     */
+    private static final class ArrayContainer implements Container {
+        final char[] values;
+        final int size;
+
+        private ArrayContainer(@NonNull char[] values, int size) {
+            this.values = values;
+            this.size = size;
+        }
+
+        /* create the most compact container for the passed sorted values */
+        static @NonNull Container create(@NonNull char[] values, int size) {
+            if (size <= ARRAY_MAX_SIZE) {
+                return new ArrayContainer(values, size);
+            }
+            long[] words = new long[BITMAP_WORDS];
+            for (int i = 0; i < size; i++) {
+                words[values[i] >>> 6] |= 1L << values[i];
+            }
+            return new BitmapContainer(words, size);
+        }
+
+        @Override
+        public int cardinality() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        public @NonNull Container and(@NonNull Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                int j = 0;
+                for (int i = 0; i < size && j < array.size; ) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i++];
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        public @NonNull Container or(@NonNull Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer array = (ArrayContainer) other;
+            char[] result = new char[size + array.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < array.size) {
+                if (j == array.size || (i < size && values[i] < array.values[j])) {
+                    result[count++] = values[i++];
+                } else if (i == size || values[i] > array.values[j]) {
+                    result[count++] = array.values[j++];
+                } else {
+                    result[count++] = values[i++];
+                    j++;
+                }
+            }
+            return create(result, count);
+        }
+
+        @Override
+        public @NonNull Container andNot(@NonNull Container other) {
+            char[] result = new char[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                if (!other.contains(values[i])) {
+                    result[count++] = values[i];
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        public int copyTo(int high, @NonNull int[] ordinals, int offset) {
+            for (int i = 0; i < size; i++) {
+                ordinals[offset++] = high | values[i];
+            }
+            return offset;
+        }
+    }
+
+    /**
+     * Bitmap of all the 65536 values, for partitions with more than {@link #ARRAY_MAX_SIZE} ordinals.
+     */
+    private static final class BitmapContainer implements Container {
+        final long[] words;
+        final int cardinality;
+
+        BitmapContainer(@NonNull long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        /* create the most compact container for the passed bitmap words */
+        static @NonNull Container create(@NonNull long[] words) {
+            int cardinality = 0;
+            for (long word : words) {
+                cardinality += Long.bitCount(word);
+            }
+            if (cardinality > ARRAY_MAX_SIZE) {
+                return new BitmapContainer(words, cardinality);
+            }
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    values[count++] = (char) (w << 6 | Long.numberOfTrailingZeros(word));
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+
+        @Override
+        public int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        public boolean contains(char value) {
+            return (words[value >>> 6] & 1L << value) != 0;
+        }
+
+        @Override
+        public @NonNull Container and(@NonNull Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[BITMAP_WORDS];
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                result[w] = words[w] & otherWords[w];
+            }
+            return create(result);
+        }
+
+        @Override
+        public @NonNull Container or(@NonNull Container other) {
+            long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i++) {
+                    result[array.values[i] >>> 6] |= 1L << array.values[i];
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] |= otherWords[w];
+                }
+            }
+            return create(result);
+        }
+
+        @Override
+        public @NonNull Container andNot(@NonNull Container other) {
+            long[] result = Arrays.copyOf(words, BITMAP_WORDS);
+            if (other instanceof ArrayContainer) {
+                ArrayContainer array = (ArrayContainer) other;
+                for (int i = 0; i < array.size; i++) {
+                    result[array.values[i] >>> 6] &= ~(1L << array.values[i]);
+                }
+            } else {
+                long[] otherWords = ((BitmapContainer) other).words;
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    result[w] &= ~otherWords[w];
+                }
+            }
+            return create(result);
+        }
+
+        @Override
+        public int copyTo(int high, @NonNull int[] ordinals, int offset) {
+            for (int w = 0; w < words.length; w++) {
+                for (long word = words[w]; word != 0; word &= word - 1) {
+                    ordinals[offset++] = high | w << 6 | Long.numberOfTrailingZeros(word);
+                }
+            }
+            return offset;
+        }
+    }
+
+}
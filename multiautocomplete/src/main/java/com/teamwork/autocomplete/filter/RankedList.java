@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * List of filtered items ranked in tiers of decreasing match quality, i.e. the prefix matches and then the matches inside the text,
+ * as returned by the filters which rank their results while filtering them.
+ * <p>
+ * Items are added in tier order, calling {@link #endTier()} after the items of each tier. The tiers refer to the positions of the
+ * items, so that {@link com.teamwork.autocomplete.util.UsageComparator} reads the match quality of each item rather than matching it
+ * with the constraint again: they're only meaningful until the list is structurally modified, and reordering the items is only
+ * allowed within each tier.
+ */
+public class RankedList<M> extends ArrayList<M> {
+
+    /* the (exclusive) end position of each ended tier, in ascending order */
+    private int[] tierEnds = new int[4];
+    private int tierCount;
+
+    public RankedList() {
+    }
+
+    public RankedList(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    /**
+     * Create a copy of the passed list, with its items and tiers.
+     */
+    public RankedList(@NonNull RankedList<M> source) {
+        super(source);
+        tierEnds = source.tierEnds.clone();
+        tierCount = source.tierCount;
+    }
+
+    /**
+     * End the current tier: the items added afterwards belong to the next one. Ending a tier without items has no effect.
+     */
+    public void endTier() {
+        int end = size();
+        if (end == (tierCount > 0 ? tierEnds[tierCount - 1] : 0)) {
+            return;
+        }
+        if (tierCount == tierEnds.length) {
+            tierEnds = Arrays.copyOf(tierEnds, tierCount * 2);
+        }
+        tierEnds[tierCount++] = end;
+    }
+
+    /**
+     * Return the tier of each item by position, starting from 0 for the best matches. Items added after the last ended tier belong to a
+     * tier of their own.
+     */
+    public @NonNull int[] getTiers() {
+        int[] tiers = new int[size()];
+        int tier = 0;
+        for (int position = 0; position < tiers.length; position++) {
+            while (tier < tierCount && position >= tierEnds[tier]) {
+                tier++;
+            }
+            tiers[position] = tier;
+        }
+        return tiers;
+    }
+
+}
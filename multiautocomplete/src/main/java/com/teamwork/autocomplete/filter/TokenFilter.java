@@ -18,12 +18,14 @@ package com.teamwork.autocomplete.filter;
 
 import android.widget.Filter;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
 import com.teamwork.autocomplete.util.ConstraintComparator;
+import com.teamwork.autocomplete.util.SortKeyComparator;
 
 import java.util.List;
 import java.util.regex.Pattern;
@@ -84,21 +86,33 @@ public interface TokenFilter<M> {
     /**
      * Perform the actual items filtering, delegating to the filter the decision whether each items matches the passed text constraint.
      * <p>
-     * This method must always be executed from a worker thread.
+     * This method must always be executed from a worker thread. Note that it can be called with consecutive chunks of the data set rather
+     * than the whole list, when the type adapter is streaming its results.
      *
      * @param constraint The current text constraint to be used for matching.
      * @param items      The list of items to iterate and filter (the list shouldn't be modified by implementations).
      * @return A new List containing the items that have matched the constraint.
+     * @see #returnsOwnedResults()
      */
     @WorkerThread
     @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull List<M> items);
 
+    /**
+     * Return whether {@link #performFiltering(CharSequence, List)} (and the indexed filtering of an {@link IndexedTokenFilter}) always
+     * returns a new, modifiable List which isn't referenced anywhere else, so that the type adapter can rank it in place and publish it
+     * without copying it. The default implementation returns false, and the results are copied before ranking them.
+     */
+    default boolean returnsOwnedResults() {
+        return false;
+    }
+
     /**
      * Return an optional {@link ConstraintComparator} to sort the filtered items based on the current text constraint.
      * <p>
      * Note that it's more efficient, performance-wise, to just sort the initial list set and then pass it to
      * {@link AutoCompleteTypeAdapter#setItems(List)} and return null from this method, if the ordering never depends on the text
-     * constraint.
+     * constraint. When the ordering can be expressed as an integer key per item, return a {@link SortKeyComparator}, which the type
+     * adapter evaluates once per item rather than once per comparison.
      *
      * @return The {@link ConstraintComparator} instance, can be reused across calls if possible, or null if the filtered results can use
      * the original items list order.
@@ -106,4 +120,22 @@ public interface TokenFilter<M> {
     @WorkerThread
     @Nullable ConstraintComparator<M> getConstraintComparator();
 
+    /**
+     * Return the ranges of the passed item text that match the constraint, so that the view binder can highlight them without searching
+     * the constraint again.
+     * <p>
+     * The ranges are relative to the text the filter matches the items on (i.e. {@link #toString()} for a {@link BaseTokenFilter}). The
+     * type adapter computes them in background for the first results of each filter pass, and from the main thread while binding the
+     * rows further down the list, so implementations should be cheap. The default implementation returns null, which means the ranges
+     * are unknown.
+     *
+     * @param constraint The current text constraint, without handle.
+     * @param item       An item that matched the constraint.
+     * @return The matching ranges, or null if unknown.
+     */
+    @AnyThread
+    default @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item) {
+        return null;
+    }
+
 }
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * {@link IndexedTokenFilter} which returns the top scoring completions of the constraint, i.e. the most popular or recent people for
+ * an "@" mention.
+ * <p>
+ * When a data set is indexed, each item is inserted into a completion trie under the folded text (see {@link TextNormalizer}) starting
+ * at each of its words, and every node of the trie stores the best score of the items below it. The top results are then found with a
+ * best-first search from the node of the constraint, which stops as soon as enough results are found instead of collecting and
+ * sorting all the items under the node: a one or two letters constraint costs about the same as a longer one.
+ * <p>
+ * Results are sorted by descending score, then in data set order. Scores are read when the data set is indexed, so set the items again
+ * to update them.
+ */
+public class TopCompletionTokenFilter<M> extends IndexedTokenFilter<M, TopCompletionTokenFilter.Index<M>> {
+
+    private final int maxResults;
+    private final Scorer<M> scorer;
+
+    /**
+     * @param tokenFilter The filter to delegate handles and tokens to.
+     * @param maxResults  The maximum number of results to return.
+     * @param scorer      The scorer of the items.
+     */
+    public TopCompletionTokenFilter(@NonNull TokenFilter<M> tokenFilter, int maxResults, @NonNull Scorer<M> scorer) {
+        super(tokenFilter);
+        if (maxResults <= 0) {
+            throw new IllegalArgumentException("Max results must be positive");
+        }
+        this.maxResults = maxResults;
+        this.scorer = scorer;
+    }
+
+    /**
+     * Return the text used to match the passed item. The default implementation returns {@link #toString()}, like {@link
+     * BaseTokenFilter}.
+     */
+    @WorkerThread
+    protected @NonNull CharSequence getSearchableText(@NonNull M item) {
+        return item.toString();
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull Index<M> buildIndex(@NonNull List<M> items) {
+        double[] scores = new double[items.size()];
+        BuildNode root = new BuildNode('\0');
+        for (int ordinal = 0; ordinal < items.size(); ordinal++) {
+            M item = items.get(ordinal);
+            scores[ordinal] = scorer.getScore(item);
+            String text = TextNormalizer.fold(getSearchableText(item));
+            for (int start = 0; start < text.length(); start++) {
+                if (isWordStart(text, start)) {
+                    root.insert(text, start, ordinal, scores[ordinal]);
+                }
+            }
+        }
+        return new Index<>(new ArrayList<>(items), scores, root);
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull Index<M> index) {
+        String query = TextNormalizer.fold(constraint);
+        int node = index.find(query);
+        if (node < 0) {
+            return new ArrayList<>();
+        }
+
+        // best-first search: nodes are expanded in order of their best score, items are emitted in order of score
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        queue.add(Candidate.node(index.maxScores[node], node));
+        Set<Integer> emitted = new HashSet<>();
+        RankedList<M> filteredItems = new RankedList<>(maxResults); // completions of the prefix only: a single tier
+        while (!queue.isEmpty() && filteredItems.size() < maxResults) {
+            Candidate candidate = queue.poll();
+            if (candidate.ordinal >= 0) {
+                if (emitted.add(candidate.ordinal)) { // an item can be reached from several of its words
+                    filteredItems.add(index.items.get(candidate.ordinal));
+                }
+                continue;
+            }
+            int current = candidate.node;
+            for (int i = index.itemStarts[current]; i < index.itemStarts[current + 1]; i++) {
+                int ordinal = index.itemOrdinals[i];
+                queue.add(Candidate.item(index.scores[ordinal], ordinal));
+            }
+            int firstChild = index.firstChildren[current];
+            for (int child = firstChild; child < firstChild + index.childCounts[current]; child++) {
+                queue.add(Candidate.node(index.maxScores[child], child));
+            }
+        }
+        return filteredItems;
+    }
+
+    /**
+     * Scan the passed items folding their text one by one: only used while a data set is being indexed.
+     */
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull List<M> items) {
+        String query = TextNormalizer.fold(constraint);
+        List<M> filteredItems = new ArrayList<>();
+        List<Double> scores = new ArrayList<>();
+        for (M item : items) {
+            String text = TextNormalizer.fold(getSearchableText(item));
+            if (query.isEmpty() || matchesWordStart(text, query)) {
+                filteredItems.add(item);
+                scores.add(scorer.getScore(item));
+            }
+        }
+
+        Integer[] order = new Integer[filteredItems.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i1, i2) -> Double.compare(scores.get(i2), scores.get(i1))); // stable, keeps the data set order on ties
+        List<M> topItems = new ArrayList<>(Math.min(maxResults, order.length));
+        for (int i = 0; i < order.length && i < maxResults; i++) {
+            topItems.add(filteredItems.get(order[i]));
+        }
+        return topItems;
+    }
+
+    @Override
+    public boolean returnsOwnedResults() {
+        return true; // both the indexed and the list filtering return a new list
+    }
+
+    private static boolean matchesWordStart(@NonNull String text, @NonNull String query) {
+        for (int start = 0; start < text.length(); start++) {
+            if (isWordStart(text, start) && text.startsWith(query, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWordStart(@NonNull String text, int position) {
+        return Character.isLetterOrDigit(text.charAt(position)) && (position == 0 || !Character.isLetterOrDigit(text.charAt(position - 1)));
+    }
+
+
+    /**
+     * Provides the score of each item: items with higher scores are returned first.
+     */
+    public interface Scorer<M> {
+
+        @WorkerThread
+        double getScore(@NonNull M item);
+    }
+
+    private static class Candidate implements Comparable<Candidate> {
+        final double score;
+        final int node;
+        final int ordinal;
+
+        private Candidate(double score, int node, int ordinal) {
+            this.score = score;
+            this.node = node;
+            this.ordinal = ordinal;
+        }
+
+        static Candidate node(double score, int node) {
+            return new Candidate(score, node, -1);
+        }
+
+        static Candidate item(double score, int ordinal) {
+            return new Candidate(score, -1, ordinal);
+        }
+
+        @Override
+        public int compareTo(@NonNull Candidate other) {
+            int result = Double.compare(other.score, score);
+            if (result != 0) {
+                return result;
+            }
+            // on ties, expand nodes first so that all the items with the same score are queued and emitted in data set order
+            if ((ordinal < 0) != (other.ordinal < 0)) {
+                return ordinal < 0 ? -1 : 1;
+            }
+            return ordinal >= 0 ? ordinal - other.ordinal : node - other.node;
+        }
+    }
+
+    /**
+     * Trie node used only while building the index, before it's flattened into arrays.
+     */
+    private static class BuildNode {
+        final char label;
+        final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        final List<Integer> ordinals = new ArrayList<>(1);
+        double maxScore = Double.NEGATIVE_INFINITY;
+
+        BuildNode(char label) {
+            this.label = label;
+        }
+
+        void insert(@NonNull String key, int start, int ordinal, double score) {
+            BuildNode node = this;
+            node.maxScore = Math.max(node.maxScore, score);
+            for (int i = start; i < key.length(); i++) {
+                char c = key.charAt(i);
+                BuildNode child = node.children.get(c);
+                if (child == null) {
+                    child = new BuildNode(c);
+                    node.children.put(c, child);
+                }
+                node = child;
+                node.maxScore = Math.max(node.maxScore, score);
+            }
+            if (node.ordinals.isEmpty() || node.ordinals.get(node.ordinals.size() - 1) != ordinal) {
+                node.ordinals.add(ordinal);
+            }
+        }
+    }
+
+    /**
+     * The completion trie of a data set, flattened into arrays in breadth-first order so that the children of a node are contiguous.
+     */
+    // @Immutable
+    public static final class Index<M> {
+        final List<M> items;
+        final double[] scores;
+
+        final char[] labels;
+        final int[] firstChildren;
+        final int[] childCounts;
+        final double[] maxScores;
+        /* the items of node i are itemOrdinals[itemStarts[i]] to itemOrdinals[itemStarts[i + 1] - 1] */
+        final int[] itemStarts;
+        final int[] itemOrdinals;
+
+        Index(@NonNull List<M> items, @NonNull double[] scores, @NonNull BuildNode root) {
+            this.items = items;
+            this.scores = scores;
+
+            List<BuildNode> nodes = new ArrayList<>();
+            nodes.add(root);
+            int itemCount = 0;
+            for (int i = 0; i < nodes.size(); i++) {
+                BuildNode node = nodes.get(i);
+                nodes.addAll(node.children.values());
+                itemCount += node.ordinals.size();
+            }
+
+            int size = nodes.size();
+            labels = new char[size];
+            firstChildren = new int[size];
+            childCounts = new int[size];
+            maxScores = new double[size];
+            itemStarts = new int[size + 1];
+            itemOrdinals = new int[itemCount];
+            int nextChild = 1;
+            int nextItem = 0;
+            for (int i = 0; i < size; i++) {
+                BuildNode node = nodes.get(i);
+                labels[i] = node.label;
+                firstChildren[i] = nextChild;
+                childCounts[i] = node.children.size();
+                maxScores[i] = node.maxScore;
+                nextChild += node.children.size();
+
+                itemStarts[i] = nextItem;
+                List<Integer> ordinals = new ArrayList<>(node.ordinals);
+                Collections.sort(ordinals, (o1, o2) -> Double.compare(scores[o2], scores[o1]));
+                for (int ordinal : ordinals) {
+                    itemOrdinals[nextItem++] = ordinal;
+                }
+            }
+            itemStarts[size] = nextItem;
+        }
+
+        /* return the node reached by the passed key from the root, or -1 if there is none */
+        int find(@NonNull String key) {
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                int firstChild = firstChildren[node];
+                int child = Arrays.binarySearch(labels, firstChild, firstChild + childCounts[node], key.charAt(i));
+                if (child < 0) {
+                    return -1;
+                }
+                node = child;
+            }
+            return node;
+        }
+    }
+
+}
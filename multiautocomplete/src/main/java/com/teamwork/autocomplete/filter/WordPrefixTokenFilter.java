@@ -0,0 +1,413 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link IndexedTokenFilter} which matches the start of any word of the items text, and acronyms made of the words initials: "wat"
+ * and "mjw" both match "Mary Jane Watson". A constraint made of several terms, like "ma wat", matches the items where every term
+ * matches the start of a word.
+ * <p>
+ * When a data set is indexed, the folded words (see {@link TextNormalizer}) and the acronym of each item are sorted into arrays, so that
+ * a query is answered with binary searches rather than scanning all the items. Results are ranked in tiers, in data set order within
+ * each tier: items whose first word matches, items where another word matches, acronym matches and, optionally, matches in the middle
+ * of a word (which require a scan of the items).
+ * <p>
+ * Each term of a multi-term constraint is resolved to the posting list ({@link OrdinalSet}) of the items with a word starting with it,
+ * and the lists are intersected starting from the smallest, so the candidates shrink as fast as possible.
+ */
+public class WordPrefixTokenFilter<M> extends IndexedTokenFilter<M, WordPrefixTokenFilter.Index<M>> {
+
+    private final boolean midWordMatching;
+
+    /**
+     * @param tokenFilter     The filter to delegate handles and tokens to.
+     * @param midWordMatching Whether to also match (and rank last) items containing the constraint in the middle of a word.
+     */
+    public WordPrefixTokenFilter(@NonNull TokenFilter<M> tokenFilter, boolean midWordMatching) {
+        super(tokenFilter);
+        this.midWordMatching = midWordMatching;
+    }
+
+    /**
+     * Return the text used to match the passed item. The default implementation returns {@link #toString()}, like {@link
+     * BaseTokenFilter}.
+     */
+    @WorkerThread
+    protected @NonNull CharSequence getSearchableText(@NonNull M item) {
+        return item.toString();
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull Index<M> buildIndex(@NonNull List<M> items) {
+        int size = items.size();
+        String[] foldedTexts = new String[size];
+        List<Entry> wordEntries = new ArrayList<>(size * 2);
+        List<Entry> acronymEntries = new ArrayList<>();
+
+        StringBuilder acronym = new StringBuilder();
+        for (int ordinal = 0; ordinal < size; ordinal++) {
+            String text = TextNormalizer.fold(getSearchableText(items.get(ordinal)));
+            foldedTexts[ordinal] = text;
+
+            acronym.setLength(0);
+            int position = 0;
+            for (int start = nextWordStart(text, 0); start < text.length(); start = nextWordStart(text, start)) {
+                int end = wordEnd(text, start);
+                wordEntries.add(new Entry(text.substring(start, end), ordinal, position++));
+                acronym.append(text.charAt(start));
+                start = end;
+            }
+            if (acronym.length() > 1) { // a single word acronym is a word prefix already
+                acronymEntries.add(new Entry(acronym.toString(), ordinal, 0));
+            }
+        }
+        return new Index<>(new ArrayList<>(items), foldedTexts, new SortedKeys(wordEntries), new SortedKeys(acronymEntries));
+    }
+
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull Index<M> index) {
+        String query = TextNormalizer.fold(constraint);
+        if (query.isEmpty()) {
+            return new ArrayList<>(index.items);
+        }
+        String[] terms = splitWords(query);
+        if (terms.length > 1) {
+            return performMultiTermFiltering(query, terms, index);
+        }
+
+        OrdinalSet firstWordMatches = index.words.postings(query, true);
+        OrdinalSet wordMatches = index.words.postings(query, false);
+        OrdinalSet acronymMatches = index.acronyms.postings(query, false);
+        OrdinalSet midWordMatches = midWordMatching ? scanMidWord(query, index) : OrdinalSet.empty();
+
+        // each tier excludes the items already in a higher tier
+        OrdinalSet matches = wordMatches.or(acronymMatches);
+        return getRankedItems(index,
+                firstWordMatches,
+                wordMatches.andNot(firstWordMatches),
+                acronymMatches.andNot(wordMatches),
+                midWordMatches.andNot(matches));
+    }
+
+    @WorkerThread
+    private @NonNull List<M> performMultiTermFiltering(@NonNull String query, @NonNull String[] terms, @NonNull Index<M> index) {
+        SortedKeys words = index.words;
+
+        // resolve the terms matching the fewest words first
+        Integer[] termOrder = new Integer[terms.length];
+        int[] wordCounts = new int[terms.length];
+        for (int t = 0; t < terms.length; t++) {
+            termOrder[t] = t;
+            wordCounts[t] = words.prefixCount(terms[t]);
+        }
+        Arrays.sort(termOrder, (t1, t2) -> wordCounts[t1] - wordCounts[t2]);
+
+        OrdinalSet matches = null;
+        for (int t : termOrder) {
+            OrdinalSet postings = words.postings(terms[t], false);
+            matches = matches == null ? postings : matches.and(postings);
+            if (matches.isEmpty()) {
+                break;
+            }
+        }
+
+        //noinspection ConstantConditions
+        OrdinalSet firstWordMatches = matches.and(words.postings(terms[0], true));
+        OrdinalSet midWordMatches = midWordMatching ? scanMidWord(query, index) : OrdinalSet.empty();
+        return getRankedItems(index,
+                firstWordMatches,
+                matches.andNot(firstWordMatches),
+                midWordMatches.andNot(matches));
+    }
+
+    private @NonNull OrdinalSet scanMidWord(@NonNull String query, @NonNull Index<M> index) {
+        int[] ordinals = new int[index.foldedTexts.length];
+        int count = 0;
+        for (int ordinal = 0; ordinal < index.foldedTexts.length; ordinal++) {
+            if (index.foldedTexts[ordinal].contains(query)) {
+                ordinals[count++] = ordinal;
+            }
+        }
+        return OrdinalSet.of(ordinals, count);
+    }
+
+    /* return the items of the passed tiers, in data set order within each tier */
+    private @NonNull List<M> getRankedItems(@NonNull Index<M> index, @NonNull OrdinalSet... tiers) {
+        RankedList<M> filteredItems = new RankedList<>();
+        for (OrdinalSet tier : tiers) {
+            for (int ordinal : tier.toArray()) {
+                filteredItems.add(index.items.get(ordinal));
+            }
+            filteredItems.endTier();
+        }
+        return filteredItems;
+    }
+
+    /**
+     * Scan the passed items splitting their text one by one: only used while a data set is being indexed.
+     */
+    @Override
+    @WorkerThread
+    public @NonNull List<M> performFiltering(@NonNull CharSequence constraint, @NonNull List<M> items) {
+        String query = TextNormalizer.fold(constraint);
+        String[] terms = splitWords(query);
+        List<M> filteredItems = new ArrayList<>();
+        StringBuilder acronym = new StringBuilder();
+        for (M item : items) {
+            String text = TextNormalizer.fold(getSearchableText(item));
+            boolean matches = query.isEmpty() || (midWordMatching && text.contains(query));
+            if (terms.length > 1) {
+                if (matches || matchesAllTerms(text, terms)) {
+                    filteredItems.add(item);
+                }
+                continue;
+            }
+
+            acronym.setLength(0);
+            for (int start = nextWordStart(text, 0); !matches && start < text.length(); start = nextWordStart(text, start)) {
+                matches = text.startsWith(query, start);
+                acronym.append(text.charAt(start));
+                start = wordEnd(text, start);
+            }
+            if (matches || (acronym.length() > 1 && acronym.toString().startsWith(query))) {
+                filteredItems.add(item);
+            }
+        }
+        return filteredItems;
+    }
+
+    @Override
+    public boolean returnsOwnedResults() {
+        return true; // both the indexed and the list filtering return a new list
+    }
+
+    /**
+     * Return the word prefixes of the item searchable text matching each term of the constraint, or the initials matching an acronym, or
+     * the range matching in the middle of a word. Returns null when folding changes the length of the text (i.e. "&szlig;" to "ss") and
+     * the ranges can't be mapped back to it.
+     */
+    @Override
+    @AnyThread
+    public @Nullable MatchRanges getMatchRanges(@NonNull CharSequence constraint, @NonNull M item) {
+        CharSequence searchableText = getSearchableText(item);
+        String text = TextNormalizer.fold(searchableText);
+        String query = TextNormalizer.fold(constraint);
+        if (text.length() != searchableText.length()) {
+            return null;
+        }
+        String[] terms = splitWords(query);
+        if (terms.length == 0) {
+            return MatchRanges.empty();
+        }
+
+        // each term highlights the first word it's a prefix of, not highlighted by a previous term
+        int[] bounds = new int[terms.length * 2];
+        int count = 0;
+        for (String term : terms) {
+            for (int start = nextWordStart(text, 0); start < text.length(); start = nextWordStart(text, start)) {
+                if (text.startsWith(term, start) && !isHighlighted(bounds, count, start)) {
+                    bounds[count++] = start;
+                    bounds[count++] = start + term.length();
+                    break;
+                }
+                start = wordEnd(text, start);
+            }
+        }
+        if (count == bounds.length) {
+            return MatchRanges.of(bounds);
+        }
+
+        if (terms.length == 1) { // an acronym: highlight the initials
+            String acronym = terms[0];
+            int[] initials = new int[acronym.length() * 2];
+            int matched = 0;
+            for (int start = nextWordStart(text, 0); start < text.length(); start = nextWordStart(text, start)) {
+                if (matched == acronym.length() || text.charAt(start) != acronym.charAt(matched)) {
+                    break;
+                }
+                initials[matched * 2] = start;
+                initials[matched * 2 + 1] = start + 1;
+                matched++;
+                start = wordEnd(text, start);
+            }
+            if (matched == acronym.length()) {
+                return MatchRanges.of(initials);
+            }
+        }
+        int start = text.indexOf(query);
+        return start >= 0 ? MatchRanges.of(start, start + query.length()) : null;
+    }
+
+    private static boolean isHighlighted(@NonNull int[] bounds, int count, int start) {
+        for (int i = 0; i < count; i += 2) {
+            if (bounds[i] == start) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesAllTerms(@NonNull String text, @NonNull String[] terms) {
+        for (String term : terms) {
+            boolean matches = false;
+            for (int start = nextWordStart(text, 0); !matches && start < text.length(); start = nextWordStart(text, start)) {
+                matches = text.startsWith(term, start);
+                start = wordEnd(text, start);
+            }
+            if (!matches) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static @NonNull String[] splitWords(@NonNull String text) {
+        List<String> words = new ArrayList<>();
+        for (int start = nextWordStart(text, 0); start < text.length(); start = nextWordStart(text, start)) {
+            int end = wordEnd(text, start);
+            words.add(text.substring(start, end));
+            start = end;
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private static int nextWordStart(@NonNull String text, int from) {
+        while (from < text.length() && !Character.isLetterOrDigit(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int wordEnd(@NonNull String text, int start) {
+        while (start < text.length() && Character.isLetterOrDigit(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+
+    private static class Entry implements Comparable<Entry> {
+        final String key;
+        final int ordinal;
+        final int position;
+
+        Entry(@NonNull String key, int ordinal, int position) {
+            this.key = key;
+            this.ordinal = ordinal;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(@NonNull Entry other) {
+            int result = key.compareTo(other.key);
+            return result != 0 ? result : ordinal - other.ordinal;
+        }
+    }
+
+    /**
+     * Sorted array of keys, each with the ordinal of its item and its word position within the item text.
+     */
+    // @Immutable
+    static final class SortedKeys {
+        final String[] keys;
+        final int[] ordinals;
+        final int[] positions;
+
+        SortedKeys(@NonNull List<Entry> entries) {
+            Entry[] sorted = entries.toArray(new Entry[0]);
+            Arrays.sort(sorted);
+            keys = new String[sorted.length];
+            ordinals = new int[sorted.length];
+            positions = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                keys[i] = sorted[i].key;
+                ordinals[i] = sorted[i].ordinal;
+                positions[i] = sorted[i].position;
+            }
+        }
+
+        /* number of keys starting with the passed prefix */
+        int prefixCount(@NonNull String prefix) {
+            return lowerBound(prefix + Character.MAX_VALUE) - lowerBound(prefix);
+        }
+
+        /**
+         * Return the ordinals of the items with a key starting with the passed prefix.
+         *
+         * @param firstWordOnly Whether to only consider the keys at the first word position.
+         */
+        @NonNull OrdinalSet postings(@NonNull String prefix, boolean firstWordOnly) {
+            int from = lowerBound(prefix);
+            int to = lowerBound(prefix + Character.MAX_VALUE);
+            int[] postings = new int[to - from];
+            int count = 0;
+            for (int i = from; i < to; i++) {
+                if (!firstWordOnly || positions[i] == 0) {
+                    postings[count++] = ordinals[i];
+                }
+            }
+            return OrdinalSet.of(postings, count);
+        }
+
+        /* index of the first key greater than or equal to the passed one */
+        int lowerBound(@NonNull String key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (keys[middle].compareTo(key) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * The sorted words and acronyms of a data set.
+     */
+    // @Immutable
+    public static final class Index<M> {
+        final List<M> items;
+        final String[] foldedTexts;
+        final SortedKeys words;
+        final SortedKeys acronyms;
+
+        Index(@NonNull List<M> items, @NonNull String[] foldedTexts, @NonNull SortedKeys words, @NonNull SortedKeys acronyms) {
+            this.items = items;
+            this.foldedTexts = foldedTexts;
+            this.words = words;
+            this.acronyms = acronyms;
+        }
+    }
+
+}
@@ -37,7 +37,6 @@ public class SimpleItem {
         this.text = text;
     }
 
-    @SuppressWarnings("unused")
     public @Nullable String getImageUrl() {
         return imageUrl;
     }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.tokenizer;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * A precomputed set of characters, for tokenizers to classify the characters they scan in constant time rather than by comparing them
+ * against each character of the set.
+ * <p>
+ * ASCII characters are looked up in a 128-bit set, while the (rarer) others are looked up with a binary search in a sorted array.
+ */
+// @Immutable
+public final class CharClass {
+
+    private static final int ASCII_SIZE = 128;
+
+    /**
+     * All the Unicode whitespace and space characters, including non-breaking spaces and line and paragraph separators.
+     */
+    public static final CharClass WHITESPACE = whitespace();
+
+    /**
+     * The default separators of a {@link PrefixTokenizer}: space and new line.
+     */
+    public static final CharClass SPACE_AND_NEW_LINE = of(' ', '\n');
+
+    /* bits 0-63 and 64-127 of the ASCII set */
+    private final long asciiLow;
+    private final long asciiHigh;
+    /* sorted non-ASCII characters */
+    private final char[] others;
+
+    private CharClass(long asciiLow, long asciiHigh, @NonNull char[] others) {
+        this.asciiLow = asciiLow;
+        this.asciiHigh = asciiHigh;
+        this.others = others;
+    }
+
+    /**
+     * Create a class of the passed characters.
+     */
+    public static @NonNull CharClass of(@NonNull char... chars) {
+        long asciiLow = 0;
+        long asciiHigh = 0;
+        char[] others = new char[chars.length];
+        int othersCount = 0;
+        for (char c : chars) {
+            if (c < 64) {
+                asciiLow |= 1L << c;
+            } else if (c < ASCII_SIZE) {
+                asciiHigh |= 1L << (c - 64);
+            } else {
+                others[othersCount++] = c;
+            }
+        }
+        others = Arrays.copyOf(others, othersCount);
+        Arrays.sort(others);
+        int unique = 0;
+        for (int i = 0; i < othersCount; i++) {
+            if (unique == 0 || others[i] != others[unique - 1]) {
+                others[unique++] = others[i];
+            }
+        }
+        return new CharClass(asciiLow, asciiHigh, Arrays.copyOf(others, unique));
+    }
+
+    /**
+     * Create a class of the characters of the passed string.
+     */
+    public static @NonNull CharClass of(@NonNull CharSequence chars) {
+        return of(chars.toString().toCharArray());
+    }
+
+    /**
+     * Return a class of the characters of both this and the passed class.
+     */
+    public @NonNull CharClass union(@NonNull CharClass other) {
+        char[] others = Arrays.copyOf(this.others, this.others.length + other.others.length);
+        System.arraycopy(other.others, 0, others, this.others.length, other.others.length);
+        CharClass union = of(others);
+        return new CharClass(asciiLow | other.asciiLow, asciiHigh | other.asciiHigh, union.others);
+    }
+
+    public boolean contains(char c) {
+        if (c < 64) {
+            return (asciiLow & (1L << c)) != 0;
+        } else if (c < ASCII_SIZE) {
+            return (asciiHigh & (1L << (c - 64))) != 0;
+        }
+        return others.length > 0 && Arrays.binarySearch(others, c) >= 0;
+    }
+
+    /**
+     * Return whether the class contains no characters.
+     */
+    public boolean isEmpty() {
+        return asciiLow == 0 && asciiHigh == 0 && others.length == 0;
+    }
+
+    private static @NonNull CharClass whitespace() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = 0; c < Character.MAX_VALUE; c++) {
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                chars.append(c);
+            }
+        }
+        return of(chars);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        CharClass charClass = (CharClass) o;
+        return asciiLow == charClass.asciiLow && asciiHigh == charClass.asciiHigh && Arrays.equals(others, charClass.others);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (asciiLow ^ (asciiLow >>> 32));
+        result = 31 * result + (int) (asciiHigh ^ (asciiHigh >>> 32));
+        result = 31 * result + Arrays.hashCode(others);
+        return result;
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.tokenizer;
+
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.widget.MultiAutoCompleteTextView;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Implementation of {@link android.widget.MultiAutoCompleteTextView.Tokenizer} for tokens prefixed by one of several handles, which can
+ * be longer than a single character (i.e. '@', '#' and '+:'), and delimited by a configurable set of separators.
+ * <p>
+ * As with {@link PrefixTokenizer}, a token starts with a handle at the beginning of a word and ends at the cursor, and it's not filtered
+ * on its characters. Separators and handle first characters are precomputed into {@link CharClass} tables, so that each scanned
+ * character is classified with a single lookup however many handles and separators there are: handles are only compared at the start
+ * of a word whose first character can begin one. Scans can also be bounded with a maximum token length.
+ * <p>
+ * Use the {@link Builder} to create an instance.
+ */
+// @Immutable
+public class HandleTokenizer implements MultiAutoCompleteTextView.Tokenizer {
+
+    private final CharClass separators;
+    private final char terminator;
+    private final int maxTokenLength;
+    /* handles sorted by decreasing length, so that the longest matching handle wins */
+    private final String[] handles;
+    private final CharClass handleStarts;
+
+    private HandleTokenizer(@NonNull Builder builder) {
+        separators = builder.separators;
+        terminator = builder.terminator;
+        maxTokenLength = builder.maxTokenLength;
+        handles = Arrays.copyOf(builder.handles, builder.handles.length);
+        Arrays.sort(handles, (handle1, handle2) -> handle2.length() - handle1.length());
+        char[] starts = new char[handles.length];
+        for (int i = 0; i < handles.length; i++) {
+            starts[i] = handles[i].charAt(0);
+        }
+        handleStarts = CharClass.of(starts);
+    }
+
+    @Override
+    public int findTokenStart(CharSequence text, int cursor) {
+        // iterate back until we find a word starting with a handle
+        int limit = (int) Math.max(0, (long) cursor - maxTokenLength);
+        for (int i = cursor - 1; i >= limit; i--) {
+            if ((i == 0 || separators.contains(text.charAt(i - 1))) && handleStarts.contains(text.charAt(i))
+                    && matchesHandle(text, i, cursor)) {
+                return i;
+            }
+        }
+        return cursor;
+    }
+
+    private boolean matchesHandle(@NonNull CharSequence text, int start, int cursor) {
+        for (String handle : handles) {
+            int length = handle.length();
+            if (start + length <= cursor && TextUtils.regionMatches(text, start, handle, 0, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the position of the first separator from the cursor (or the end of the text), which is where the token ends.
+     */
+    @Override
+    public int findTokenEnd(CharSequence text, int cursor) {
+        int length = text.length();
+        int limit = (int) Math.min(length, (long) cursor + maxTokenLength);
+        for (int i = cursor; i < limit; i++) {
+            if (separators.contains(text.charAt(i))) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    @Override
+    public CharSequence terminateToken(CharSequence text) {
+        int length = text.length();
+        // the text is empty or already has a trailing separator
+        if (length == 0 || separators.contains(text.charAt(length - 1))) {
+            return text;
+        }
+
+        // append the terminator to the string
+        if (text instanceof Spanned) {
+            SpannableString sp = new SpannableString(text + String.valueOf(terminator));
+            TextUtils.copySpansFrom((Spanned) text, 0, length, Object.class, sp, 0);
+            return sp;
+        } else {
+            return text + String.valueOf(terminator);
+        }
+    }
+
+
+    /**
+     * Builder class for a {@link HandleTokenizer}.
+     */
+    public static class Builder {
+
+        private String[] handles = new String[0];
+        private CharClass separators = CharClass.SPACE_AND_NEW_LINE;
+        private char terminator = ' ';
+        private int maxTokenLength = Integer.MAX_VALUE;
+
+        /**
+         * Set the handles tokens start with. At least one handle is required.
+         *
+         * @param handles The non empty handles.
+         * @return The builder for chaining calls.
+         */
+        public Builder handles(@NonNull String... handles) {
+            for (String handle : handles) {
+                if (TextUtils.isEmpty(handle)) {
+                    throw new IllegalArgumentException("Handles must not be empty");
+                }
+            }
+            this.handles = Arrays.copyOf(handles, handles.length);
+            return this;
+        }
+
+        /**
+         * Set the characters that delimit tokens, space and new line by default (see {@link CharClass#WHITESPACE} for all the
+         * Unicode whitespace).
+         *
+         * @param separators The separators.
+         * @return The builder for chaining calls.
+         */
+        public Builder separators(@NonNull CharClass separators) {
+            if (separators.isEmpty()) {
+                throw new IllegalArgumentException("At least one separator is required");
+            }
+            this.separators = separators;
+            return this;
+        }
+
+        /**
+         * Set the separator appended to a completed token, space by default. It must be one of the separators.
+         *
+         * @param terminator The terminator.
+         * @return The builder for chaining calls.
+         */
+        public Builder terminator(char terminator) {
+            this.terminator = terminator;
+            return this;
+        }
+
+        /**
+         * Set the maximum length of a token, handle included, to bound the text scanned from the cursor. Tokens are unbounded by
+         * default.
+         *
+         * @param maxTokenLength The maximum token length.
+         * @return The builder for chaining calls.
+         */
+        public Builder maxTokenLength(int maxTokenLength) {
+            if (maxTokenLength <= 0) {
+                throw new IllegalArgumentException("The maximum token length must be positive");
+            }
+            this.maxTokenLength = maxTokenLength;
+            return this;
+        }
+
+        /**
+         * @throws IllegalStateException If no handles were set, or the terminator is not a separator.
+         */
+        public @NonNull HandleTokenizer build() {
+            if (handles.length == 0) {
+                throw new IllegalStateException("At least one handle is required");
+            }
+            if (!separators.contains(terminator)) {
+                throw new IllegalStateException("The terminator must be one of the separators");
+            }
+            return new HandleTokenizer(this);
+        }
+    }
+
+}
@@ -22,17 +22,23 @@ import android.text.TextUtils;
 import android.widget.MultiAutoCompleteTextView;
 
 import androidx.annotation.NonNull;
-
-import java.util.Arrays;
+import androidx.annotation.Nullable;
 
 /**
  * Implementation of {@link android.widget.MultiAutoCompleteTextView.Tokenizer} that finds tokens which are prefixed by one of the passed
  * chars. This is useful, for example, to manage autocomplete for user handles ('@' prefix).
  * <p>
  * Only one separator is supported per tokenizer. The default is the space character, to change override {@link #getDefaultSeparator}.
+ * For several separators (i.e. all the Unicode whitespace) or handles longer than one character, use a {@link HandleTokenizer}.
  * <p>
  * This implementation does not filter on the token characters (i.e. '@han:dle;' is a valid token), but only terminates it when a separator
  * is found.
+ * <p>
+ * By default, token boundaries are found by scanning the text from the cursor, which can reach the start or the end of the text. For long
+ * texts, create the tokenizer with a maximum token length with {@link #PrefixTokenizer(char[], int)}: tokens longer than that are
+ * ignored, and when the text is an {@link android.text.Editable} the positions of its separators are indexed (and kept up to date as the
+ * text changes) so that boundaries are found with a binary search. Either way, a lookup costs in the order of the token length regardless
+ * of the text length.
  *
  * @author Marco Salis
  */
@@ -40,14 +46,32 @@ public class PrefixTokenizer implements MultiAutoCompleteTextView.Tokenizer {
 
     private static final char NEW_LINE = '\n';
 
-    private final char[] prefixes;
+    /* token length of the default unbounded mode */
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final CharClass prefixes;
+    private final int maxTokenLength;
 
     public PrefixTokenizer(char prefix) {
-        prefixes = new char[]{prefix};
+        this(new char[]{prefix}, UNBOUNDED);
     }
 
     public PrefixTokenizer(char... prefixes) {
-        this.prefixes = Arrays.copyOf(prefixes, prefixes.length);
+        this(prefixes, UNBOUNDED);
+    }
+
+    /**
+     * Create a bounded tokenizer, which never scans further than the passed token length from the cursor.
+     *
+     * @param prefixes       The token prefixes.
+     * @param maxTokenLength The maximum length of a token, prefix included.
+     */
+    public PrefixTokenizer(@NonNull char[] prefixes, int maxTokenLength) {
+        if (maxTokenLength <= 0) {
+            throw new IllegalArgumentException("The maximum token length must be positive");
+        }
+        this.prefixes = CharClass.of(prefixes);
+        this.maxTokenLength = maxTokenLength;
     }
 
     @Override
@@ -57,9 +81,15 @@ public class PrefixTokenizer implements MultiAutoCompleteTextView.Tokenizer {
             return 0;
         }
 
-        // iterate back until we find the prefix
         char separator = getDefaultSeparator();
-        for (int i = cursor - 1; i >= 0; i--) {
+        SeparatorIndex separatorIndex = getSeparatorIndex(text, separator);
+        if (separatorIndex != null) {
+            return findIndexedTokenStart(text, cursor, separatorIndex);
+        }
+
+        // iterate back until we find the prefix
+        int limit = getScanLimit(cursor, -maxTokenLength);
+        for (int i = cursor - 1; i >= limit; i--) {
             if (matchesPrefix(text, i)) {
                 char charAt; // consider separator or new line as a token start
                 if (i == 0 || (charAt = text.charAt(i - 1)) == separator || charAt == NEW_LINE) {
@@ -71,13 +101,22 @@ public class PrefixTokenizer implements MultiAutoCompleteTextView.Tokenizer {
         return cursor;
     }
 
-    private boolean matchesPrefix(@NonNull CharSequence text, int index) {
-        for (char prefix : prefixes) {
-            if (text.charAt(index) == prefix) {
-                return true;
+    private int findIndexedTokenStart(@NonNull CharSequence text, int cursor, @NonNull SeparatorIndex separatorIndex) {
+        // a token starts right after a separator (or at the text start): check those within the token length only
+        for (int rank = separatorIndex.rank(cursor - 1) - 1; rank >= -1; rank--) {
+            int start = rank >= 0 ? separatorIndex.get(rank) + 1 : 0;
+            if (cursor - start > maxTokenLength) {
+                break;
+            }
+            if (start < cursor && matchesPrefix(text, start)) {
+                return start;
             }
         }
-        return false;
+        return cursor;
+    }
+
+    private boolean matchesPrefix(@NonNull CharSequence text, int index) {
+        return prefixes.contains(text.charAt(index));
     }
 
     @Override
@@ -88,16 +127,42 @@ public class PrefixTokenizer implements MultiAutoCompleteTextView.Tokenizer {
             return 0;
         }
 
-        // iterate forward until we get a space, a new line or the end of the string
         char separator = getDefaultSeparator();
-        for (int i = cursor; i < length; i++) {
+        int limit = getScanLimit(cursor, maxTokenLength);
+        SeparatorIndex separatorIndex = getSeparatorIndex(text, separator);
+        if (separatorIndex != null) {
+            int rank = separatorIndex.rank(cursor);
+            if (rank < separatorIndex.size() && separatorIndex.get(rank) < Math.min(limit, length)) {
+                int i = separatorIndex.get(rank);
+                return i == 0 ? 0 : i - 1;
+            }
+            return Math.min(limit, length);
+        }
+
+        // iterate forward until we get a space, a new line or the end of the string
+        for (int i = cursor; i < length && i < limit; i++) {
             char charAt = text.charAt(i);
             if (charAt == separator || charAt == NEW_LINE) {
                 return i == 0 ? 0 : i - 1;
             }
         }
 
-        return length;
+        return Math.min(limit, length);
+    }
+
+    /**
+     * Return the separators index of the passed text, only available in bounded mode.
+     */
+    private @Nullable SeparatorIndex getSeparatorIndex(@NonNull CharSequence text, char separator) {
+        return maxTokenLength != UNBOUNDED ? SeparatorIndex.get(text, separator) : null;
+    }
+
+    /**
+     * Return the position the scan from the cursor stops at, in the direction (and within the token length) of the passed offset.
+     */
+    private static int getScanLimit(int cursor, int offset) {
+        long limit = (long) cursor + offset;
+        return (int) Math.max(0, Math.min(Integer.MAX_VALUE, limit));
     }
 
     @Override
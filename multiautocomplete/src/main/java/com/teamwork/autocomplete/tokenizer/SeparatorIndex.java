@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.tokenizer;
+
+import android.text.Editable;
+import android.text.NoCopySpan;
+import android.text.Spannable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.Arrays;
+
+/**
+ * Sorted index of the separator positions of an editable text, used by a bounded {@link PrefixTokenizer} to find token boundaries with a
+ * binary search rather than scanning the text.
+ * <p>
+ * The index is attached to the text it indexes as a span, so that each text (and view) has its own index even when the tokenizer is
+ * shared, and it's kept up to date from the text change events the text sends to its {@link TextWatcher} spans: an edit only scans the
+ * inserted characters and shifts the positions that follow it. It's never copied along with the text spans.
+ */
+final class SeparatorIndex implements TextWatcher, NoCopySpan {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Spannable text;
+    private final char separator;
+
+    /* sorted separator positions */
+    // GuardedBy("main thread")
+    private int[] positions = new int[INITIAL_CAPACITY];
+    // GuardedBy("main thread")
+    private int size;
+    // GuardedBy("main thread")
+    private int length;
+
+    private SeparatorIndex(@NonNull Spannable text, char separator) {
+        this.text = text;
+        this.separator = separator;
+        insert(0, text, 0, text.length());
+        length = text.length();
+    }
+
+    /**
+     * Return the index attached to the passed text for the passed separator, attaching a new one if the text doesn't have one yet.
+     *
+     * @return The index, or null if the text can't hold one.
+     */
+    @MainThread
+    static @Nullable SeparatorIndex get(@NonNull CharSequence text, char separator) {
+        if (!(text instanceof Editable)) {
+            return null; // immutable texts don't send change events
+        }
+        Editable editable = (Editable) text;
+        for (SeparatorIndex index : editable.getSpans(0, editable.length(), SeparatorIndex.class)) {
+            if (index.separator == separator) {
+                if (index.text == editable && index.length == editable.length()) {
+                    return index;
+                }
+                editable.removeSpan(index); // stale
+            }
+        }
+        SeparatorIndex index = new SeparatorIndex(editable, separator);
+        editable.setSpan(index, 0, editable.length(), Spanned.SPAN_INCLUSIVE_INCLUSIVE);
+        return index;
+    }
+
+    /**
+     * Return whether the passed char is a separator: the index separator or a new line.
+     */
+    boolean isSeparator(char c) {
+        return c == separator || c == '\n';
+    }
+
+    /**
+     * Return the number of separators before the passed position, which is also the index of the first separator at or after it.
+     */
+    int rank(int position) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (positions[mid] < position) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Return the position of the separator of the passed rank.
+     */
+    int get(int rank) {
+        return positions[rank];
+    }
+
+    int size() {
+        return size;
+    }
+
+    @VisibleForTesting int[] toArray() {
+        return Arrays.copyOf(positions, size);
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+    }
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {
+        if (s != text) {
+            return;
+        }
+        // drop the replaced separators and shift the following ones
+        int from = rank(start);
+        int to = rank(start + before);
+        int delta = count - before;
+        System.arraycopy(positions, to, positions, from, size - to);
+        size -= to - from;
+        for (int i = from; i < size; i++) {
+            positions[i] += delta;
+        }
+        insert(from, s, start, start + count);
+        length = s.length();
+    }
+
+    @Override
+    public void afterTextChanged(Editable s) {
+    }
+
+    /**
+     * Insert the separators found in the passed range of the text at the passed rank.
+     */
+    private void insert(int rank, @NonNull CharSequence s, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (isSeparator(s.charAt(i))) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        if (size + count > positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(positions.length * 2, size + count));
+        }
+        System.arraycopy(positions, rank, positions, rank + count, size - rank);
+        for (int i = start; i < end; i++) {
+            if (isSeparator(s.charAt(i))) {
+                positions[rank++] = i;
+            }
+        }
+        size += count;
+    }
+
+}
@@ -19,6 +19,7 @@ package com.teamwork.autocomplete.util;
 import android.text.TextUtils;
 import android.widget.EditText;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 /**
@@ -56,6 +57,32 @@ public class AutoCompleteUtils {
         return text.charAt(0) == handle ? text.toString().substring(1) : text.toString();
     }
 
+    /**
+     * Check whether a token starts with the passed handle, which can be longer than a single character.
+     *
+     * @param handle The handle to detect at the start of the token.
+     * @param token  A CharSequence to find the handle from.
+     * @return true if the text token starts with the passed handle, false otherwise.
+     */
+    public static boolean hasPrefixHandle(@NonNull String handle, @Nullable CharSequence token) {
+        return !TextUtils.isEmpty(token) && token.length() >= handle.length()
+                && TextUtils.regionMatches(token, 0, handle, 0, handle.length());
+    }
+
+    /**
+     * Removes the passed handle from the start of the text, if present.
+     *
+     * @param handle The handle to strip from the text.
+     * @param text   A CharSequence to find and remove the handle from.
+     * @return The stripped string (might be empty).
+     */
+    public static String stripPrefixHandle(@NonNull String handle, @Nullable CharSequence text) {
+        if (TextUtils.isEmpty(text)) {
+            return "";
+        }
+        return hasPrefixHandle(handle, text) ? text.toString().substring(handle.length()) : text.toString();
+    }
+
     /**
      * Select all the text in the {@link EditText}.
      *
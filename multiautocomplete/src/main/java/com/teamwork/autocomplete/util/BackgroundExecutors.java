@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Executors shared by all the components of the library for background work that must not delay filtering.
+ * <p>
+ * Their threads are created lazily, run at background (or lower) priority and are daemon threads, so they never need to be shut down.
+ */
+public final class BackgroundExecutors {
+
+    private BackgroundExecutors() { // no instantiation needed
+    }
+
+    /**
+     * Return the shared executor for disk reads and writes. It runs a single thread, so tasks are executed in submission order.
+     */
+    public static @NonNull Executor io() {
+        return IoHolder.EXECUTOR;
+    }
+
+    /**
+     * Return the shared executor for loading and decoding images, which runs two threads so that a slow image doesn't hold back the
+     * others.
+     */
+    public static @NonNull Executor images() {
+        return ImagesHolder.EXECUTOR;
+    }
+
+    /**
+     * Return the shared executor for speculative work, such as inflating row views before they're needed. It runs a single thread at
+     * the lowest priority, so that it never competes with filtering or with the main thread.
+     */
+    public static @NonNull Executor lowPriority() {
+        return LowPriorityHolder.EXECUTOR;
+    }
+
+    /**
+     * Create a thread factory for daemon threads with the passed name, running at background priority.
+     */
+    static @NonNull ThreadFactory newThreadFactory(@NonNull String name) {
+        return newThreadFactory(name, Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    /**
+     * Create a thread factory for daemon threads with the passed name, running at the passed {@link Process} thread priority.
+     */
+    static @NonNull ThreadFactory newThreadFactory(@NonNull String name, int priority) {
+        return runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(priority);
+                runnable.run();
+            }, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class IoHolder {
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(newThreadFactory("MultiAutoComplete-io"));
+    }
+
+    private static final class ImagesHolder {
+        static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2, newThreadFactory("MultiAutoComplete-images"));
+    }
+
+    private static final class LowPriorityHolder {
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(
+                newThreadFactory("MultiAutoComplete-low-priority", Process.THREAD_PRIORITY_LOWEST));
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link ConstraintComparator} which orders items by an integer sort key computed from each item and the text constraint, i.e. the
+ * position of the constraint within the item text.
+ * <p>
+ * Implement {@link #getSortKey(CharSequence, Object)} rather than {@link #compare(CharSequence, Object, Object)}: when sorting the
+ * filtered items, the type adapter calls it only once per item and then sorts a primitive array, instead of evaluating the (often
+ * expensive) comparison logic O(N log N) times. The sort is stable: items with the same key keep the order they were filtered in.
+ */
+public abstract class SortKeyComparator<T> extends ConstraintComparator<T> {
+
+    /**
+     * Return the sort key of the passed item for the constraint: items with a lower key come first.
+     *
+     * @param constraint The constraint text.
+     * @param item       The item to compute the key for.
+     * @return The sort key.
+     */
+    @WorkerThread
+    public abstract int getSortKey(@Nullable CharSequence constraint, @NonNull T item);
+
+    @Override
+    @WorkerThread
+    public int compare(@Nullable CharSequence constraint, @NonNull T o1, @NonNull T o2) {
+        return Integer.compare(getSortKey(constraint, o1), getSortKey(constraint, o2));
+    }
+
+    /**
+     * Sort the passed list computing the key of each item once, with the currently set constraint.
+     *
+     * @param items The list to sort in place.
+     */
+    @WorkerThread
+    public synchronized void sort(@NonNull List<T> items) {
+        CharSequence constraint = getConstraint();
+        Object[] sortedItems = items.toArray();
+        int[] keys = new int[sortedItems.length];
+        for (int i = 0; i < sortedItems.length; i++) {
+            //noinspection unchecked
+            keys[i] = getSortKey(constraint, (T) sortedItems[i]);
+        }
+        int[] order = sortedOrder(keys);
+        for (int i = 0; i < order.length; i++) {
+            //noinspection unchecked
+            items.set(i, (T) sortedItems[order[i]]);
+        }
+    }
+
+    /**
+     * Return the positions of the passed keys in ascending key order. The sort is stable: positions with the same key keep their order.
+     */
+    public static @NonNull int[] sortedOrder(@NonNull int[] keys) {
+        // the key in the high bits and the original position in the low bits: sorting the longs is a stable sort by key
+        long[] packed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            packed[i] = ((long) keys[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < packed.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+
+    /**
+     * Same as {@link #sortedOrder(int[])} for long keys: the keys are replaced by their rank among the distinct keys, so that equal keys
+     * still compare as equal and keep their order.
+     */
+    public static @NonNull int[] sortedOrder(@NonNull long[] keys) {
+        long[] distinctKeys = keys.clone();
+        Arrays.sort(distinctKeys);
+        int count = 0;
+        for (long key : distinctKeys) {
+            if (count == 0 || key != distinctKeys[count - 1]) {
+                distinctKeys[count++] = key;
+            }
+        }
+        int[] ranks = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ranks[i] = Arrays.binarySearch(distinctKeys, 0, count, keys[i]);
+        }
+        return sortedOrder(ranks);
+    }
+
+}
@@ -16,11 +16,20 @@
 
 package com.teamwork.autocomplete.util;
 
+import android.graphics.Typeface;
 import android.text.Spannable;
+import android.text.SpannableString;
 import android.text.SpannableStringBuilder;
+import android.text.style.StyleSpan;
 
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 
+import com.teamwork.autocomplete.filter.MatchRanges;
+
+import java.util.List;
+
 /**
  * Utility methods to manipulate {@link Spannable}s.
  */
@@ -50,4 +59,55 @@ public class SpannableUtils {
         return span;
     }
 
+    /**
+     * Return a copy of the passed text with the passed ranges set to bold. Ranges exceeding the text length are clipped.
+     *
+     * @param text   The text to copy.
+     * @param ranges The ranges of the text to set to bold.
+     * @return a new {@link Spannable}.
+     */
+    @AnyThread
+    public static @NonNull Spannable newBoldRanges(@NonNull CharSequence text, @NonNull MatchRanges ranges) {
+        SpannableString spannable = new SpannableString(text);
+        for (int i = 0; i < ranges.size(); i++) {
+            int start = Math.min(ranges.getStart(i), text.length());
+            int end = Math.min(ranges.getEnd(i), text.length());
+            if (end > start) {
+                spannable.setSpan(new StyleSpan(Typeface.BOLD), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+        return spannable;
+    }
+
+    /**
+     * Set the passed ranges of a text to bold, reusing the passed builder and spans rather than allocating them for every text.
+     * Ranges exceeding the text length are clipped.
+     *
+     * @param builder  The builder to reuse: it's cleared and filled with the passed text.
+     * @param text     The text to set into the builder.
+     * @param ranges   The ranges of the text to set to bold.
+     * @param spanPool The bold spans to reuse, one per range: it's filled with new spans when there are more ranges than spans.
+     * @return The passed builder.
+     */
+    @MainThread
+    public static @NonNull SpannableStringBuilder setBoldRanges(@NonNull SpannableStringBuilder builder,
+                                                                @NonNull CharSequence text,
+                                                                @NonNull MatchRanges ranges,
+                                                                @NonNull List<StyleSpan> spanPool) {
+        builder.clearSpans();
+        builder.clear();
+        builder.append(text);
+        for (int i = 0; i < ranges.size(); i++) {
+            int start = Math.min(ranges.getStart(i), text.length());
+            int end = Math.min(ranges.getEnd(i), text.length());
+            if (end > start) {
+                if (spanPool.size() <= i) {
+                    spanPool.add(new StyleSpan(Typeface.BOLD));
+                }
+                builder.setSpan(spanPool.get(i), start, end, Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+            }
+        }
+        return builder;
+    }
+
 }
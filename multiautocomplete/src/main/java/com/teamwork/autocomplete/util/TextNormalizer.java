@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import androidx.annotation.NonNull;
+
+import java.text.Normalizer;
+
+/**
+ * Locale-independent text folding for accent and case insensitive matching.
+ * <p>
+ * Folding decomposes the text (NFKD), strips the combining marks and applies a full case folding which doesn't depend on the default
+ * locale: "Z&uuml;rich" and "ZURICH" both fold to "zurich", "Jos&eacute;" to "jose", the Turkish dotless "&#305;" and dotted "&#304;"
+ * to "i" and "&szlig;" to "ss". It's meant to be run once per item when indexing, and once per constraint when filtering.
+ */
+public class TextNormalizer {
+
+    private TextNormalizer() { // no instantiation needed
+    }
+
+    /**
+     * Fold the passed text for matching.
+     *
+     * @param text The text to fold.
+     * @return The folded text (might be longer than the original).
+     */
+    public static @NonNull String fold(@NonNull CharSequence text) {
+        if (isPlainAscii(text)) { // fast path: no decomposition needed
+            StringBuilder folded = new StringBuilder(text.length());
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                folded.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            }
+            return folded.toString();
+        }
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); ) {
+            int codePoint = decomposed.codePointAt(i);
+            i += Character.charCount(codePoint);
+
+            if (isCombiningMark(codePoint)) {
+                continue;
+            }
+            if (codePoint == '\u00DF' || codePoint == '\u1E9E') { // sharp s has no single char case folding
+                folded.append("ss");
+                continue;
+            }
+            // the round trip through upper case folds characters with multiple lower case forms (i.e. dotless i, final sigma)
+            folded.appendCodePoint(Character.toLowerCase(Character.toUpperCase(codePoint)));
+        }
+        return folded.toString();
+    }
+
+    private static boolean isPlainAscii(@NonNull CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCombiningMark(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK || type == Character.ENCLOSING_MARK;
+    }
+
+}
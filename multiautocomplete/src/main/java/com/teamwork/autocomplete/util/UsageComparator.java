@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import android.text.TextUtils;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.filter.MatchRanges;
+import com.teamwork.autocomplete.filter.RankedList;
+import com.teamwork.autocomplete.filter.TokenFilter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@link SortKeyComparator} which ranks the items the user picks more often and more recently first, as recorded by a {@link
+ * UsageTracker}, without letting usage override the quality of the match with the constraint.
+ * <p>
+ * Items are compared by their {@link #getMatchQuality(CharSequence, Object) match quality} first, then by their usage score, and then
+ * with the comparator of the token filter if any (for a non empty constraint): when there is none, items with the same quality and
+ * score keep the order the filter returned them in. Items are identified in the tracker by their token string.
+ * <p>
+ * The sort key of an item is its match quality, and {@link #sort(List)} ranks the filtered items computing the match quality and
+ * reading the score of each item once, so the type adapter sorts them the same way as with any other sort key comparator. When the
+ * filter returns a {@link RankedList}, the match quality of each item is its tier in the list, which the filter computed while
+ * filtering.
+ */
+// @ThreadSafe
+public class UsageComparator<M> extends SortKeyComparator<M> {
+
+    private final UsageTracker usageTracker;
+    private final TokenFilter<M> tokenFilter;
+
+    /**
+     * @param usageTracker The tracker holding the usage scores.
+     * @param tokenFilter  The token filter of the type adapter, used to get the key of the items, to find where they match the
+     *                     constraint and to compare items with the same match quality and score.
+     */
+    public UsageComparator(@NonNull UsageTracker usageTracker, @NonNull TokenFilter<M> tokenFilter) {
+        this.usageTracker = usageTracker;
+        this.tokenFilter = tokenFilter;
+    }
+
+    /**
+     * Return the match quality of the passed item with the constraint, lower values being better matches. The default implementation
+     * uses the {@link TokenFilter#getMatchRanges(CharSequence, Object) match ranges} of the filter, so that it matches text the same way
+     * the filter does (i.e. ignoring accents): matches at the start of the text are better than matches inside it, and matches in the
+     * first {@link MatchRanges#getField() field} better than those in the following ones. When the filter doesn't know the ranges, all
+     * its matches have the same quality.
+     * <p>
+     * It's not called by {@link #sort(List)} for the items of a {@link RankedList}, whose tiers are the match quality.
+     */
+    @WorkerThread
+    protected int getMatchQuality(@Nullable CharSequence constraint, @NonNull M item) {
+        if (TextUtils.isEmpty(constraint)) {
+            return 0;
+        }
+        MatchRanges ranges = tokenFilter.getMatchRanges(constraint, item);
+        if (ranges == null) {
+            return 0;
+        }
+        boolean prefix = ranges.isEmpty() || ranges.getStart(0) == 0;
+        return ranges.getField() * 2 + (prefix ? 0 : 1);
+    }
+
+    /**
+     * Return the {@link #getMatchQuality(CharSequence, Object) match quality} of the passed item: items with the same quality are then
+     * ranked by their score.
+     */
+    @Override
+    @WorkerThread
+    public int getSortKey(@Nullable CharSequence constraint, @NonNull M item) {
+        return getMatchQuality(constraint, item);
+    }
+
+    @Override
+    public synchronized boolean shouldCompare() {
+        return super.shouldCompare() || !usageTracker.isEmpty();
+    }
+
+    @Override
+    @WorkerThread
+    public int compare(@Nullable CharSequence constraint, @NonNull M o1, @NonNull M o2) {
+        int result = getMatchQuality(constraint, o1) - getMatchQuality(constraint, o2);
+        if (result != 0) {
+            return result;
+        }
+        result = Double.compare(usageTracker.getWeight(tokenFilter.toTokenString(o2).toString()),
+                usageTracker.getWeight(tokenFilter.toTokenString(o1).toString()));
+        if (result != 0) {
+            return result;
+        }
+        ConstraintComparator<M> filterComparator = tokenFilter.getConstraintComparator();
+        return filterComparator != null && !TextUtils.isEmpty(constraint) ? filterComparator.compare(constraint, o1, o2) : 0;
+    }
+
+    /**
+     * Sort the passed list with the currently set constraint, computing the match quality and the usage score of each item once.
+     * <p>
+     * The items are sorted with a stable sort by each key in turn, from the least significant one: the filter comparator first, then
+     * the score and then the match quality, which is read from the tiers when the list is a {@link RankedList}.
+     *
+     * @param items The list to sort in place.
+     */
+    @Override
+    @WorkerThread
+    @SuppressWarnings("unchecked")
+    public synchronized void sort(@NonNull List<M> items) {
+        CharSequence constraint = getConstraint();
+        boolean hasConstraint = !TextUtils.isEmpty(constraint);
+        Object[] sortedItems = items.toArray();
+        int size = sortedItems.length;
+
+        // the match quality is computed first, by position, and reordered along with the items
+        int[] qualities = null;
+        if (hasConstraint && items instanceof RankedList) {
+            qualities = ((RankedList<M>) items).getTiers();
+        } else if (hasConstraint) {
+            qualities = new int[size];
+            for (int i = 0; i < size; i++) {
+                qualities[i] = getSortKey(constraint, (M) sortedItems[i]);
+            }
+        }
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+
+        ConstraintComparator<M> filterComparator = tokenFilter.getConstraintComparator();
+        if (hasConstraint && filterComparator != null) {
+            int[] order;
+            if (filterComparator instanceof SortKeyComparator) {
+                SortKeyComparator<M> keyComparator = (SortKeyComparator<M>) filterComparator;
+                int[] filterKeys = new int[size];
+                for (int i = 0; i < size; i++) {
+                    filterKeys[i] = keyComparator.getSortKey(constraint, (M) sortedItems[i]);
+                }
+                order = SortKeyComparator.sortedOrder(filterKeys);
+            } else {
+                Integer[] boxedOrder = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    boxedOrder[i] = i;
+                }
+                Object[] filteredItems = sortedItems;
+                Arrays.sort(boxedOrder, (o1, o2) -> filterComparator.compare(constraint, (M) filteredItems[o1], (M) filteredItems[o2]));
+                order = new int[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = boxedOrder[i];
+                }
+            }
+            sortedItems = reorder(sortedItems, order);
+            positions = reorder(positions, order);
+        }
+
+        String[] keys = new String[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = tokenFilter.toTokenString((M) sortedItems[i]).toString();
+        }
+        double[] weights = usageTracker.getWeights(keys);
+        long[] weightKeys = new long[size];
+        for (int i = 0; i < size; i++) {
+            // the bits of a non negative double grow with it, negated for the highest weight first: close weights stay distinct
+            weightKeys[i] = -Double.doubleToLongBits(Math.max(weights[i], 0d));
+        }
+        int[] order = SortKeyComparator.sortedOrder(weightKeys);
+        sortedItems = reorder(sortedItems, order);
+        positions = reorder(positions, order);
+
+        if (qualities != null) {
+            int[] sortedQualities = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedQualities[i] = qualities[positions[i]];
+            }
+            sortedItems = reorder(sortedItems, SortKeyComparator.sortedOrder(sortedQualities));
+        }
+        for (int i = 0; i < size; i++) {
+            items.set(i, (M) sortedItems[i]);
+        }
+    }
+
+    private static @NonNull Object[] reorder(@NonNull Object[] items, @NonNull int[] order) {
+        Object[] reordered = new Object[items.length];
+        for (int i = 0; i < order.length; i++) {
+            reordered[i] = items[order[i]];
+        }
+        return reordered;
+    }
+
+    private static @NonNull int[] reorder(@NonNull int[] values, @NonNull int[] order) {
+        int[] reordered = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            reordered[i] = values[order[i]];
+        }
+        return reordered;
+    }
+
+}
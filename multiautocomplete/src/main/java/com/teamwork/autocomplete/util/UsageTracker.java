@@ -0,0 +1,372 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.MultiAutoComplete;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records which items the user picks from the suggestions of a type adapter, so that frequently and recently picked items can be
+ * ranked first (see {@link UsageComparator}).
+ * <p>
+ * Each pick adds 1 to the score of the item key, and scores decay exponentially over time with the configured half-life: with the
+ * default half-life of a week, a pick made a week ago counts half as much as a pick made today. Scores are stored relative to a
+ * common reference time, so that looking up the score of an item is a single hash map lookup, and the relative order of items only
+ * changes when a new pick is recorded.
+ * <p>
+ * When a file is passed, picks are persisted in an append-only log from the shared {@link BackgroundExecutors#io() IO thread}, which is
+ * loaded on creation and periodically compacted into one record per item, dropping the items whose score has decayed to nothing.
+ * <p>
+ * Use a separate instance (and file) for each type adapter. This class is thread safe.
+ */
+// @ThreadSafe
+public class UsageTracker {
+
+    private static final String TAG = MultiAutoComplete.class.getSimpleName();
+
+    public static final long DEFAULT_HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(7);
+
+    /* items whose decayed score goes below this are dropped when compacting the log */
+    private static final double MIN_SCORE = 0.01;
+    /* the log is compacted when it has more than this number of records, and twice as many records as items */
+    private static final int COMPACTION_MIN_RECORDS = 256;
+    /* the reference time is moved forward before weights can overflow (2^64 is still far from the double range) */
+    private static final double MAX_EXPONENT = 64;
+
+    private final @Nullable File logFile;
+    private final long halfLifeMillis;
+    private final Executor ioExecutor;
+
+    // GuardedBy("this")
+    private final Map<String, Double> weights = new HashMap<>();
+    /* weights are scores at referenceTime: score(t) = weight * 2^(-(t - referenceTime) / halfLife) */
+    // GuardedBy("this")
+    private long referenceTime;
+    // GuardedBy("ioExecutor")
+    private int logRecords;
+    /* most picked keys, computed at most once per version */
+    // GuardedBy("this")
+    private @Nullable List<String> topKeys;
+    // GuardedBy("this")
+    private long topKeysVersion;
+
+    // written while holding "this"
+    private volatile long version;
+
+    /**
+     * Create a tracker with the default half-life.
+     *
+     * @param logFile A file in the app private storage to persist the picks, or null to keep them in memory only.
+     */
+    public UsageTracker(@Nullable File logFile) {
+        this(logFile, DEFAULT_HALF_LIFE_MILLIS);
+    }
+
+    /**
+     * @param logFile        A file in the app private storage to persist the picks, or null to keep them in memory only.
+     * @param halfLifeMillis The time it takes for the score of a pick to halve.
+     */
+    public UsageTracker(@Nullable File logFile, long halfLifeMillis) {
+        this(BackgroundExecutors.io(), logFile, halfLifeMillis, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting UsageTracker(@NonNull Executor ioExecutor, @Nullable File logFile, long halfLifeMillis, long timeMillis) {
+        if (halfLifeMillis <= 0) {
+            throw new IllegalArgumentException("The half-life must be positive");
+        }
+        this.ioExecutor = ioExecutor;
+        this.logFile = logFile;
+        this.halfLifeMillis = halfLifeMillis;
+        this.referenceTime = timeMillis;
+        if (logFile != null) {
+            //noinspection WrongThread
+            ioExecutor.execute(() -> load(logFile));
+        }
+    }
+
+    /**
+     * Record that the user picked the item with the passed key.
+     *
+     * @param key The item key, usually its token string.
+     */
+    @AnyThread
+    public void recordSelection(@NonNull CharSequence key) {
+        recordSelection(key, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting void recordSelection(@NonNull CharSequence key, long timeMillis) {
+        String stringKey = key.toString();
+        synchronized (this) {
+            addWeight(stringKey, 1.0, timeMillis);
+            version++;
+        }
+        if (logFile != null) {
+            //noinspection WrongThread
+            ioExecutor.execute(() -> append(logFile, stringKey, timeMillis));
+        }
+    }
+
+    /**
+     * Return the current decayed score of the item with the passed key, 0 if it was never picked.
+     */
+    @AnyThread
+    public double getScore(@NonNull CharSequence key) {
+        return getScore(key, System.currentTimeMillis());
+    }
+
+    @VisibleForTesting synchronized double getScore(@NonNull CharSequence key, long timeMillis) {
+        Double weight = weights.get(key.toString());
+        return weight != null ? weight * Math.pow(2, -(double) (timeMillis - referenceTime) / halfLifeMillis) : 0;
+    }
+
+    /**
+     * Return a value proportional to the current score of the passed key, only meant to compare keys: it doesn't decay.
+     */
+    synchronized double getWeight(@NonNull String key) {
+        Double weight = weights.get(key);
+        return weight != null ? weight : 0;
+    }
+
+    /**
+     * Same as {@link #getWeight(String)} for all the passed keys, read at once.
+     */
+    synchronized @NonNull double[] getWeights(@NonNull String[] keys) {
+        double[] result = new double[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            Double weight = weights.get(keys[i]);
+            result[i] = weight != null ? weight : 0;
+        }
+        return result;
+    }
+
+    /**
+     * Return whether any pick has been recorded (or loaded) so far.
+     */
+    public synchronized boolean isEmpty() {
+        return weights.isEmpty();
+    }
+
+    /**
+     * Return the keys with the highest scores, most picked first. The result is computed once after each pick, so that it can be
+     * returned straight away when the user has typed nothing to filter yet.
+     *
+     * @param maxKeys The maximum number of keys to return.
+     * @return An unmodifiable list of at most maxKeys keys.
+     */
+    public synchronized @NonNull List<String> getTopKeys(int maxKeys) {
+        if (topKeys == null || topKeysVersion != version || topKeys.size() < Math.min(maxKeys, weights.size())) {
+            topKeys = Collections.unmodifiableList(computeTopKeys(maxKeys));
+            topKeysVersion = version;
+        }
+        return topKeys.size() > maxKeys ? topKeys.subList(0, maxKeys) : topKeys;
+    }
+
+    // GuardedBy("this")
+    private @NonNull List<String> computeTopKeys(int maxKeys) {
+        if (maxKeys <= 0) {
+            return Collections.emptyList();
+        }
+        // keep the best keys in a min-heap of maxKeys entries
+        PriorityQueue<Map.Entry<String, Double>> heap =
+                new PriorityQueue<>(maxKeys, (e1, e2) -> Double.compare(e1.getValue(), e2.getValue()));
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            if (heap.size() < maxKeys) {
+                heap.add(entry);
+            } else if (entry.getValue() > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        List<String> keys = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            keys.add(heap.poll().getKey());
+        }
+        Collections.reverse(keys);
+        return keys;
+    }
+
+    /**
+     * Return a number that changes whenever the scores change relative to each other, i.e. when a pick is recorded. Results ranked
+     * with the scores can be cached as long as the version doesn't change.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    // GuardedBy("this")
+    private void addWeight(@NonNull String key, double score, long timeMillis) {
+        double exponent = (double) (timeMillis - referenceTime) / halfLifeMillis;
+        if (exponent > MAX_EXPONENT) { // rebase all weights at the new time
+            double factor = Math.pow(2, -exponent);
+            for (Map.Entry<String, Double> entry : weights.entrySet()) {
+                entry.setValue(entry.getValue() * factor);
+            }
+            referenceTime = timeMillis;
+            exponent = 0;
+        }
+        Double weight = weights.get(key);
+        weights.put(key, (weight != null ? weight : 0) + score * Math.pow(2, exponent));
+    }
+
+    /* log format: a sequence of records, each with the item key (modified UTF-8), its score (double) and the time of the score (long) */
+
+    @WorkerThread
+    private void load(@NonNull File file) {
+        if (!file.isFile()) {
+            return;
+        }
+        DataInputStream input = null;
+        boolean corrupted = false;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            while (true) {
+                String key;
+                try {
+                    key = input.readUTF();
+                } catch (EOFException e) {
+                    break; // end of the log
+                }
+                double score = input.readDouble();
+                long timeMillis = input.readLong();
+                synchronized (this) {
+                    addWeight(key, score, timeMillis);
+                }
+                logRecords++;
+            }
+        } catch (IOException e) { // i.e. a truncated record: keep what was read so far and rewrite the log
+            Log.w(TAG, "Unable to read usage log " + file, e);
+            corrupted = true;
+        } finally {
+            closeQuietly(input);
+        }
+        synchronized (this) {
+            version++;
+        }
+        if (corrupted) {
+            compact(file);
+        }
+    }
+
+    @WorkerThread
+    private void append(@NonNull File file, @NonNull String key, long timeMillis) {
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            output.writeUTF(key);
+            output.writeDouble(1.0);
+            output.writeLong(timeMillis);
+            output.close();
+            output = null;
+            logRecords++;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write usage log " + file, e);
+        } finally {
+            closeQuietly(output);
+        }
+
+        int itemCount;
+        synchronized (this) {
+            itemCount = weights.size();
+        }
+        if (logRecords > COMPACTION_MIN_RECORDS && logRecords > itemCount * 2) {
+            compact(file);
+        }
+    }
+
+    /**
+     * Rewrite the log with a record per item holding its current score, so that it doesn't grow with the number of picks.
+     */
+    @WorkerThread
+    private void compact(@NonNull File file) {
+        Map<String, Double> scores;
+        long timeMillis = System.currentTimeMillis();
+        synchronized (this) {
+            scores = new HashMap<>(weights.size());
+            double factor = Math.pow(2, -(double) (timeMillis - referenceTime) / halfLifeMillis);
+            for (Map.Entry<String, Double> entry : weights.entrySet()) {
+                scores.put(entry.getKey(), entry.getValue() * factor);
+            }
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream output = null;
+        int records = 0;
+        try {
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            output = new DataOutputStream(new BufferedOutputStream(outputStream));
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                if (entry.getValue() >= MIN_SCORE) {
+                    output.writeUTF(entry.getKey());
+                    output.writeDouble(entry.getValue());
+                    output.writeLong(timeMillis);
+                    records++;
+                }
+            }
+            output.flush();
+            outputStream.getFD().sync();
+            output.close();
+            output = null;
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Unable to rename " + tempFile + " to " + file);
+            }
+            logRecords = records;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to compact usage log " + file, e);
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+        } finally {
+            closeQuietly(output);
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
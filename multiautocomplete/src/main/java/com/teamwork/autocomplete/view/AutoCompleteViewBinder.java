@@ -19,12 +19,16 @@ package com.teamwork.autocomplete.view;
 import android.view.View;
 import android.widget.BaseAdapter;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.LayoutRes;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 
 import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
+import com.teamwork.autocomplete.filter.MatchRanges;
+import com.teamwork.autocomplete.filter.TokenFilter;
 
 /**
  * View binder interface that an {@link AutoCompleteTypeAdapter}s use to allow the auto complete component to render the desired UI into the
@@ -39,10 +43,14 @@ public interface AutoCompleteViewBinder<Model> {
     /**
      * Return a numeric identifier for the passed model. The returned value must be unique and "stable" (see {@link
      * BaseAdapter#hasStableIds()}.
+     * <p>
+     * This is also called from the worker thread to diff the filtered items when the recycler drop down is enabled (see {@link
+     * com.teamwork.autocomplete.MultiAutoComplete.Builder#recyclerDropDown()}), so it must not depend on the main thread state.
      *
      * @param item The item to return the identifier of.
      * @return A long identifier for the item.
      */
+    @AnyThread
     long getItemId(@NonNull Model item);
 
     /**
@@ -54,10 +62,14 @@ public interface AutoCompleteViewBinder<Model> {
     /**
      * Return a layout-specific implementation of {@link AutoCompleteViewHolder} for the adapter to access sub-views faster, following
      * Android's suggested view binder pattern.
+     * <p>
+     * When row views are prewarmed (see {@link com.teamwork.autocomplete.MultiAutoComplete.Builder#prewarmRows(int)}), this is called
+     * from a worker thread for the prewarmed views, so it must only access the passed view.
      *
      * @param view The view to create a view holder.
      * @return The {@link AutoCompleteViewHolder} instance.
      */
+    @AnyThread
     @NonNull AutoCompleteViewHolder getViewHolder(@NonNull View view);
 
     /**
@@ -71,4 +83,61 @@ public interface AutoCompleteViewBinder<Model> {
      */
     void bindData(@NonNull AutoCompleteViewHolder viewHolder, @NonNull Model item, @Nullable CharSequence constraint);
 
+    /**
+     * Same as {@link #bindData(AutoCompleteViewHolder, Object, CharSequence)}, also passing the ranges of the item text that matched
+     * the constraint, when the token filter provides them (see {@link TokenFilter#getMatchRanges(CharSequence, Object)}), so that they
+     * can be highlighted without searching the constraint again.
+     * <p>
+     * The default implementation ignores the ranges and calls {@link #bindData(AutoCompleteViewHolder, Object, CharSequence)}.
+     *
+     * @param viewHolder  The {@link AutoCompleteViewHolder} returned by the adapter.
+     * @param item        The item whose data must be bound to the view.
+     * @param constraint  The current text filter constraint, if any.
+     * @param matchRanges The ranges of the item text matching the constraint, or null if unknown.
+     */
+    default void bindData(@NonNull AutoCompleteViewHolder viewHolder,
+                          @NonNull Model item,
+                          @Nullable CharSequence constraint,
+                          @Nullable MatchRanges matchRanges) {
+        bindData(viewHolder, item, constraint);
+    }
+
+    /**
+     * Called from the worker thread at the end of a filter pass to prepare the styled text of one of the first (visible) rows, so that
+     * the expensive work of building spans and measuring the text doesn't happen on the main thread when the row is bound. The returned
+     * text is passed back to {@link #bindData(AutoCompleteViewHolder, Object, CharSequence, MatchRanges, CharSequence)}.
+     * <p>
+     * The default implementation returns null, which means no text is prepared.
+     *
+     * @param item        The item whose row text must be prepared.
+     * @param constraint  The current text filter constraint.
+     * @param matchRanges The ranges of the item text matching the constraint, or null if unknown.
+     * @return The prepared text, or null.
+     */
+    @WorkerThread
+    default @Nullable CharSequence prepareText(@NonNull Model item, @NonNull CharSequence constraint, @Nullable MatchRanges matchRanges) {
+        return null;
+    }
+
+    /**
+     * Same as {@link #bindData(AutoCompleteViewHolder, Object, CharSequence, MatchRanges)}, also passing the text prepared in background
+     * with {@link #prepareText(Object, CharSequence, MatchRanges)}, if any.
+     * <p>
+     * This is the method called by the type adapter: the default implementation ignores the prepared text and calls {@link
+     * #bindData(AutoCompleteViewHolder, Object, CharSequence, MatchRanges)}.
+     *
+     * @param viewHolder   The {@link AutoCompleteViewHolder} returned by the adapter.
+     * @param item         The item whose data must be bound to the view.
+     * @param constraint   The current text filter constraint, if any.
+     * @param matchRanges  The ranges of the item text matching the constraint, or null if unknown.
+     * @param preparedText The text prepared for the item row, or null if none was prepared.
+     */
+    default void bindData(@NonNull AutoCompleteViewHolder viewHolder,
+                          @NonNull Model item,
+                          @Nullable CharSequence constraint,
+                          @Nullable MatchRanges matchRanges,
+                          @Nullable CharSequence preparedText) {
+        bindData(viewHolder, item, constraint, matchRanges);
+    }
+
 }
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.view;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+
+import com.teamwork.autocomplete.MultiAutoComplete;
+import com.teamwork.autocomplete.util.BackgroundExecutors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Minimal image loader for the rows of a {@link SimpleItemViewBinder}, for components that don't need a full image loading library.
+ * <p>
+ * Images are opened with a pluggable {@link Fetcher} and decoded in background, downsampled to the size of the target image view.
+ * Decoded bitmaps are kept in a memory LRU cache bounded by size in bytes, so that scrolling back to a row or typing again doesn't
+ * decode the same image twice. Loading an image into a view cancels any previous request for the same view: a recycled row never
+ * shows the image of the item it was bound to before.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ImageLoader {
+
+    private static final String TAG = MultiAutoComplete.class.getSimpleName();
+
+    /* an eighth of the app heap by default, as per Android guidelines for memory caches */
+    private static final int DEFAULT_CACHE_DIVIDER = 8;
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final Executor loaderExecutor;
+    private final Handler mainThreadHandler;
+    private final Fetcher fetcher;
+    private final LruCache<String, Bitmap> bitmapCache;
+
+    // GuardedBy("main thread")
+    private final Map<ImageView, Request> pendingRequests = new WeakHashMap<>();
+
+    /**
+     * Opens the image for an URL, from the network or any other source.
+     */
+    public interface Fetcher {
+
+        /**
+         * Open a stream for the image at the passed URL. It's called once per decoded image: the stream is read in full and closed
+         * by the loader.
+         *
+         * @throws IOException If the image cannot be opened.
+         */
+        @WorkerThread
+        @NonNull InputStream open(@NonNull String url) throws IOException;
+    }
+
+    /**
+     * {@link Fetcher} for images stored in local files, whose URL is the file path.
+     */
+    public static final Fetcher FILE_FETCHER = url -> new FileInputStream(new File(url));
+
+    /**
+     * Create a loader with a cache of an eighth of the app maximum heap size.
+     */
+    public ImageLoader(@NonNull Fetcher fetcher) {
+        this(fetcher, (int) (Runtime.getRuntime().maxMemory() / DEFAULT_CACHE_DIVIDER));
+    }
+
+    /**
+     * @param fetcher       The fetcher to open the images with.
+     * @param maxCacheBytes The maximum size in bytes of the decoded bitmaps in the memory cache.
+     */
+    public ImageLoader(@NonNull Fetcher fetcher, int maxCacheBytes) {
+        this(BackgroundExecutors.images(), fetcher, maxCacheBytes);
+    }
+
+    /**
+     * Same as {@link #ImageLoader(Fetcher, int)}, loading the images on the passed executor rather than on the threads shared by all
+     * the loaders (see {@link BackgroundExecutors#images()}), i.e. to share the app image loading threads.
+     *
+     * @param loaderExecutor The executor to open and decode the images on.
+     * @param fetcher        The fetcher to open the images with.
+     * @param maxCacheBytes  The maximum size in bytes of the decoded bitmaps in the memory cache.
+     */
+    public ImageLoader(@NonNull Executor loaderExecutor, @NonNull Fetcher fetcher, int maxCacheBytes) {
+        this(loaderExecutor, new Handler(Looper.getMainLooper()), fetcher, maxCacheBytes);
+    }
+
+    @VisibleForTesting ImageLoader(@NonNull Executor loaderExecutor,
+                                   @NonNull Handler mainThreadHandler,
+                                   @NonNull Fetcher fetcher,
+                                   int maxCacheBytes) {
+        if (maxCacheBytes <= 0) {
+            throw new IllegalArgumentException("The cache size must be positive");
+        }
+        this.loaderExecutor = loaderExecutor;
+        this.mainThreadHandler = mainThreadHandler;
+        this.fetcher = fetcher;
+        this.bitmapCache = new LruCache<String, Bitmap>(maxCacheBytes) {
+            @Override
+            protected int sizeOf(@NonNull String key, @NonNull Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Load the image at the passed URL into the image view, cancelling any pending request for the same view.
+     * A cached image is set immediately, otherwise the view is cleared until the image is decoded.
+     *
+     * @param imageView The image view to load the image into.
+     * @param url       The image URL, or null to hide the image view.
+     */
+    @MainThread
+    public void load(@NonNull ImageView imageView, @Nullable String url) {
+        cancel(imageView);
+        if (url == null) {
+            imageView.setImageDrawable(null);
+            imageView.setVisibility(View.GONE);
+            return;
+        }
+        imageView.setVisibility(View.VISIBLE);
+
+        int width = getTargetSize(imageView.getWidth(), imageView.getLayoutParams(), true);
+        int height = getTargetSize(imageView.getHeight(), imageView.getLayoutParams(), false);
+        String key = getCacheKey(url, width, height);
+        Bitmap bitmap = bitmapCache.get(key);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+            return;
+        }
+        imageView.setImageDrawable(null);
+
+        Request request = new Request(imageView, url, key, width, height);
+        pendingRequests.put(imageView, request);
+        loaderExecutor.execute(request);
+    }
+
+    /**
+     * Cancel the pending request for the passed image view, if any.
+     */
+    @MainThread
+    public void cancel(@NonNull ImageView imageView) {
+        Request request = pendingRequests.remove(imageView);
+        if (request != null) {
+            request.cancelled = true;
+        }
+    }
+
+    /**
+     * Evict all the decoded images from the memory cache.
+     */
+    public void clearCache() {
+        bitmapCache.evictAll();
+    }
+
+    @VisibleForTesting
+    @Nullable Bitmap getCachedBitmap(@NonNull String url, int width, int height) {
+        return bitmapCache.get(getCacheKey(url, width, height));
+    }
+
+    @MainThread
+    private void onRequestCompleted(@NonNull Request request, @Nullable Bitmap bitmap) {
+        if (request.cancelled || pendingRequests.get(request.imageView) != request) {
+            return; // the view has been rebound in the meantime
+        }
+        pendingRequests.remove(request.imageView);
+        if (bitmap != null) {
+            request.imageView.setImageBitmap(bitmap);
+        }
+    }
+
+    @WorkerThread
+    private @Nullable Bitmap decode(@NonNull Request request) throws IOException {
+        // the image is fetched once: both the bounds and the downsampled bitmap are decoded from the same bytes
+        byte[] data;
+        InputStream inputStream = fetcher.open(request.url);
+        try {
+            data = readFully(inputStream);
+        } finally {
+            closeQuietly(inputStream);
+        }
+        if (request.cancelled) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (request.cancelled) {
+            return null;
+        }
+
+        options.inSampleSize = getInSampleSize(options.outWidth, options.outHeight, request.width, request.height);
+        options.inJustDecodeBounds = false;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+
+    /**
+     * Return the largest power of two sample size that keeps both image dimensions equal or larger than the requested ones.
+     *
+     * @return The sample size, 1 if the image is to be decoded at full size or any of the sizes is unknown.
+     */
+    @VisibleForTesting
+    static int getInSampleSize(int imageWidth, int imageHeight, int requestedWidth, int requestedHeight) {
+        int inSampleSize = 1;
+        if (imageWidth <= 0 || imageHeight <= 0 || requestedWidth <= 0 || requestedHeight <= 0) {
+            return inSampleSize;
+        }
+        while (imageWidth / (inSampleSize * 2) >= requestedWidth && imageHeight / (inSampleSize * 2) >= requestedHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Return the size of a view dimension, using its layout params until the view is laid out, or 0 if unknown.
+     */
+    private static int getTargetSize(int size, @Nullable ViewGroup.LayoutParams params, boolean width) {
+        if (size > 0 || params == null) {
+            return size;
+        }
+        return Math.max(width ? params.width : params.height, 0); // wrap and match parent are negative
+    }
+
+    private static @NonNull String getCacheKey(@NonNull String url, int width, int height) {
+        return url + '#' + width + 'x' + height;
+    }
+
+    private static @NonNull byte[] readFully(@NonNull InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+
+    private class Request implements Runnable {
+
+        final ImageView imageView;
+        final String url;
+        final String key;
+        final int width;
+        final int height;
+
+        volatile boolean cancelled;
+
+        Request(@NonNull ImageView imageView, @NonNull String url, @NonNull String key, int width, int height) {
+            this.imageView = imageView;
+            this.url = url;
+            this.key = key;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        @WorkerThread
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            Bitmap bitmap = bitmapCache.get(key); // another view may have loaded the same image in the meantime
+            if (bitmap == null) {
+                try {
+                    bitmap = decode(this);
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Unable to load image " + url, e);
+                }
+                if (bitmap != null) {
+                    bitmapCache.put(key, bitmap);
+                }
+            }
+            Bitmap result = bitmap;
+            mainThreadHandler.post(() -> onRequestCompleted(this, result));
+        }
+    }
+
+}
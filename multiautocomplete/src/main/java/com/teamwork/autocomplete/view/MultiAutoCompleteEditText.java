@@ -20,6 +20,7 @@ import android.content.Context;
 import android.util.AttributeSet;
 import android.view.KeyEvent;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.widget.AppCompatMultiAutoCompleteTextView;
 
@@ -33,6 +34,8 @@ import java.lang.reflect.Field;
  * <p>
  * We need that to start the filtering (and display the dropdown if necessary) when the user moves the cursor within the {@link
  * AppCompatMultiAutoCompleteTextView}.
+ * <p>
+ * It also allows replacing the built-in drop down list with a custom {@link DropDown}.
  *
  * @author Marco Salis
  */
@@ -48,8 +51,39 @@ public class MultiAutoCompleteEditText extends AppCompatMultiAutoCompleteTextVie
         boolean onSelectionChanged(int selStart, int selEnd);
     }
 
+    /**
+     * Listener for the items the user commits from the drop down, as opposed to the items that are only displayed in it.
+     */
+    public interface OnItemCompletedListener {
+
+        /**
+         * Called after the current token has been replaced with the passed item.
+         *
+         * @param item The committed item of the adapter.
+         */
+        void onItemCompleted(@NonNull Object item);
+    }
+
+    /**
+     * A custom drop down shown in place of the built-in one, when set with {@link #setDropDown(DropDown)}.
+     */
+    public interface DropDown {
+
+        void show();
+
+        void dismiss();
+
+        boolean isShowing();
+    }
+
 
     private OnSelectionChangedListener listener;
+    private @Nullable OnItemCompletedListener itemCompletedListener;
+    private @Nullable DropDown dropDown;
+
+    /* the last item converted to a string, and its string: the drop down also converts the items it only displays */
+    private @Nullable Object convertedItem;
+    private @Nullable CharSequence convertedText;
 
     public MultiAutoCompleteEditText(Context context) {
         super(context);
@@ -67,6 +101,76 @@ public class MultiAutoCompleteEditText extends AppCompatMultiAutoCompleteTextVie
         this.listener = listener;
     }
 
+    public void setOnItemCompletedListener(@Nullable OnItemCompletedListener listener) {
+        this.itemCompletedListener = listener;
+    }
+
+    /**
+     * Set a custom drop down to show the filtered items in place of the built-in drop down list, or null to restore it.
+     */
+    public void setDropDown(@Nullable DropDown dropDown) {
+        dismissDropDown();
+        this.dropDown = dropDown;
+    }
+
+    @Override
+    public void showDropDown() {
+        if (dropDown != null) {
+            dropDown.show();
+        } else {
+            super.showDropDown();
+        }
+    }
+
+    @Override
+    public void dismissDropDown() {
+        if (dropDown != null) { // this is also called from the super constructor, before the field is set
+            dropDown.dismiss();
+        } else {
+            super.dismissDropDown();
+        }
+    }
+
+    @Override
+    public boolean isPopupShowing() {
+        return dropDown != null ? dropDown.isShowing() : super.isPopupShowing();
+    }
+
+    /**
+     * Replace the current token with the passed item picked from a custom drop down, the same way an item picked from the built-in drop
+     * down list does.
+     *
+     * @param item The picked item of the adapter.
+     */
+    public void performCompletion(@NonNull Object item) {
+        clearComposingText();
+        replaceText(convertSelectionToString(item));
+        dismissDropDown();
+    }
+
+    @Override
+    protected CharSequence convertSelectionToString(Object selectedItem) {
+        CharSequence text = super.convertSelectionToString(selectedItem);
+        convertedItem = selectedItem;
+        convertedText = text;
+        return text;
+    }
+
+    /**
+     * The built-in drop down converts the items it displays to strings for the input method completions, so the committed item is only
+     * known here: every completion path replaces the token with the string the committed item has just been converted to.
+     */
+    @Override
+    protected void replaceText(CharSequence text) {
+        Object item = text != null && text == convertedText ? convertedItem : null;
+        convertedItem = null;
+        convertedText = null;
+        if (item != null && itemCompletedListener != null) { // before the new text starts a filter pass for the next token
+            itemCompletedListener.onItemCompleted(item);
+        }
+        super.replaceText(text);
+    }
+
     @Override
     protected void onSelectionChanged(int selStart, int selEnd) {
         super.onSelectionChanged(selStart, selEnd);
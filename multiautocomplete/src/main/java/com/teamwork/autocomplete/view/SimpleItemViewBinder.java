@@ -16,17 +16,27 @@
 
 package com.teamwork.autocomplete.view;
 
+import android.text.Spannable;
+import android.text.SpannableStringBuilder;
+import android.text.style.StyleSpan;
 import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
 
 import com.teamwork.autocomplete.R;
+import com.teamwork.autocomplete.filter.MatchRanges;
 import com.teamwork.autocomplete.model.SimpleItem;
 import com.teamwork.autocomplete.util.SpannableUtils;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Item view binder for a {@link SimpleItem} model.
  * <p>
@@ -35,15 +45,42 @@ import com.teamwork.autocomplete.util.SpannableUtils;
  * <li>{@link #getItemId(SimpleItem)} returns the item's hash code</li>
  * <li>It binds the data to the R.layout.simple_item layout</li>
  * <li>It highlights the portion of text that matches the current text constraint</li>
+ * <li>It prepares the highlighted text of the first rows in background as a {@link PrecomputedTextCompat}, measured with the text
+ * metrics of the rows inflated so far</li>
  * </ul>
  * To prevent the library to have dependencies on any image loading/caching framework, images are not loaded into the
- * image view. To implement your own loading, override {@link #onImageViewBind(ImageView, SimpleItem)}.
+ * image view unless an {@link ImageLoader} is passed to the constructor. To implement your own loading, override
+ * {@link #onImageViewBind(ImageView, SimpleItem)}.
  *
  * @author Marco Salis
  */
 @SuppressWarnings("WeakerAccess")
 public class SimpleItemViewBinder implements AutoCompleteViewBinder<SimpleItem> {
 
+    /* lets the row text views keep the spannable text they're set rather than a copy of it */
+    private static final Spannable.Factory SPANNABLE_FACTORY = new Spannable.Factory() {
+        @Override
+        public Spannable newSpannable(CharSequence source) {
+            return source instanceof Spannable ? (Spannable) source : super.newSpannable(source);
+        }
+    };
+
+    /* text metrics of the inflated rows, null until the first row is inflated */
+    private volatile @Nullable PrecomputedTextCompat.Params textMetricsParams;
+
+    private final @Nullable ImageLoader imageLoader;
+
+    public SimpleItemViewBinder() {
+        this(null);
+    }
+
+    /**
+     * @param imageLoader The loader for the {@link SimpleItem#getImageUrl()} images, or null not to show images.
+     */
+    public SimpleItemViewBinder(@Nullable ImageLoader imageLoader) {
+        this.imageLoader = imageLoader;
+    }
+
     @Override
     public long getItemId(@NonNull SimpleItem item) {
         return item.hashCode();
@@ -56,19 +93,68 @@ public class SimpleItemViewBinder implements AutoCompleteViewBinder<SimpleItem>
 
     @Override
     public @NonNull AutoCompleteViewHolder getViewHolder(@NonNull View view) {
-        return new SimpleItemViewHolder(view);
+        SimpleItemViewHolder viewHolder = new SimpleItemViewHolder(view);
+        textMetricsParams = viewHolder.textMetricsParams;
+        return viewHolder;
     }
 
     @Override
     public void bindData(@NonNull AutoCompleteViewHolder viewHolder, @NonNull SimpleItem item, @Nullable CharSequence constraint) {
+        bindData(viewHolder, item, constraint, null);
+    }
+
+    @Override
+    @WorkerThread
+    public @Nullable CharSequence prepareText(@NonNull SimpleItem item,
+                                              @NonNull CharSequence constraint,
+                                              @Nullable MatchRanges matchRanges) {
+        PrecomputedTextCompat.Params params = textMetricsParams;
+        if (params == null) {
+            return null; // no row has been inflated yet: there is nothing to measure the text with
+        }
+        CharSequence text;
+        if (matchRanges != null) { // ranges of another field than the item text don't apply to it
+            text = matchRanges.getField() == 0 ? SpannableUtils.newBoldRanges(item.getText(), matchRanges) : item.getText();
+        } else {
+            text = SpannableUtils.setBoldSubText(item.getText(), constraint);
+        }
+        return PrecomputedTextCompat.create(text, params);
+    }
+
+    @Override
+    public void bindData(@NonNull AutoCompleteViewHolder viewHolder,
+                         @NonNull SimpleItem item,
+                         @Nullable CharSequence constraint,
+                         @Nullable MatchRanges matchRanges,
+                         @Nullable CharSequence preparedText) {
+        SimpleItemViewHolder itemViewHolder = (SimpleItemViewHolder) viewHolder;
+        if (preparedText instanceof PrecomputedTextCompat
+                && ((PrecomputedTextCompat) preparedText).getParams().equals(itemViewHolder.textMetricsParams)) {
+            TextViewCompat.setPrecomputedText(itemViewHolder.textView, (PrecomputedTextCompat) preparedText);
+            onImageViewBind(itemViewHolder.imageView, item);
+        } else { // the text was measured for a different text view style
+            bindData(viewHolder, item, constraint, matchRanges);
+        }
+    }
+
+    @Override
+    public void bindData(@NonNull AutoCompleteViewHolder viewHolder,
+                         @NonNull SimpleItem item,
+                         @Nullable CharSequence constraint,
+                         @Nullable MatchRanges matchRanges) {
         SimpleItemViewHolder itemViewHolder = (SimpleItemViewHolder) viewHolder;
         CharSequence text;
-        if (constraint != null) { // highlight constraint text in bold if any
+        if (matchRanges != null && matchRanges.getField() != 0) { // the filter matched another field than the item text
+            text = item.getText();
+        } else if (matchRanges != null) { // highlight the ranges found by the filter, reusing the holder builder and spans
+            text = SpannableUtils.setBoldRanges(itemViewHolder.textBuilder, item.getText(), matchRanges, itemViewHolder.boldSpans);
+        } else if (constraint != null) { // highlight constraint text in bold if any
             text = SpannableUtils.setBoldSubText(item.getText(), constraint);
         } else {
             text = item.getText();
         }
-        itemViewHolder.textView.setText(text);
+        // spannable texts are set as they are: with the holder builder, binding a row doesn't copy its text
+        itemViewHolder.textView.setText(text, text instanceof Spannable ? TextView.BufferType.SPANNABLE : TextView.BufferType.NORMAL);
 
         onImageViewBind(itemViewHolder.imageView, item);
     }
@@ -76,10 +162,15 @@ public class SimpleItemViewBinder implements AutoCompleteViewBinder<SimpleItem>
     /**
      * Override this to provide image loading to the {@link SimpleItemViewBinder} using your own image caching library.
      * <p>
-     * The default implementation just sets the ImageView's visibility to {@link View#GONE}.
+     * The default implementation loads the item image with the {@link ImageLoader}, if any, which also cancels the request of the item
+     * the row was previously bound to. Otherwise, it just sets the ImageView's visibility to {@link View#GONE}.
      */
-    protected void onImageViewBind(@NonNull ImageView imageView, @SuppressWarnings("unused") @NonNull SimpleItem item) {
-        imageView.setVisibility(View.GONE);
+    protected void onImageViewBind(@NonNull ImageView imageView, @NonNull SimpleItem item) {
+        if (imageLoader != null) {
+            imageLoader.load(imageView, item.getImageUrl());
+        } else {
+            imageView.setVisibility(View.GONE);
+        }
     }
 
 
@@ -88,10 +179,16 @@ public class SimpleItemViewBinder implements AutoCompleteViewBinder<SimpleItem>
         public final ImageView imageView;
         public final TextView textView;
 
+        final SpannableStringBuilder textBuilder = new SpannableStringBuilder();
+        final List<StyleSpan> boldSpans = new ArrayList<>(1);
+        final PrecomputedTextCompat.Params textMetricsParams;
+
         public SimpleItemViewHolder(@NonNull View view) {
             super(view);
             imageView = view.findViewById(R.id.imageView);
             textView = view.findViewById(R.id.textView);
+            textView.setSpannableFactory(SPANNABLE_FACTORY);
+            textMetricsParams = TextViewCompat.getTextMetricsParams(textView);
         }
     }
 
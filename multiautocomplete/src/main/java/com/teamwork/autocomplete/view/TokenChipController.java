@@ -0,0 +1,290 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.view;
+
+import android.graphics.Bitmap;
+import android.text.Editable;
+import android.text.Spanned;
+import android.text.TextWatcher;
+import android.text.style.ImageSpan;
+import android.widget.EditText;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
+import com.teamwork.autocomplete.adapter.OnTokensChangedListener;
+import com.teamwork.autocomplete.filter.TokenFilter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Shows the tokens recognized by a type adapter as chips within the {@link EditText}s it's attached to.
+ * <p>
+ * Set it as the {@link OnTokensChangedListener} of the type adapter (see
+ * {@link AutoCompleteTypeAdapter#setOnTokensChangedListener(OnTokensChangedListener)}), passing any existing listener to the constructor
+ * to keep receiving the callbacks, and attach it to each view the type adapter is used with. The chipped ranges are the matches of the
+ * {@link TokenFilter#getValidTokenPattern()} of the type adapter filter, the same the type adapter recognizes tokens with, so a token
+ * can be followed by punctuation or contain spaces. Spans are applied incrementally: a token that gets added is chipped wherever it
+ * appears in the attached views, a token that gets removed is unchipped, and on every text change only the lines around the edited
+ * range are matched again, so that a chip whose text has been edited is dropped and an active token typed again is chipped. The chips
+ * are rendered (and cached) by a {@link TokenChipRenderer}.
+ * <p>
+ * This class must be used from the main thread.
+ */
+public class TokenChipController<M> implements OnTokensChangedListener<M> {
+
+    private final TokenFilter<M> filter;
+    private final TokenChipRenderer renderer;
+    private final TokenChipRenderer.Style style;
+    private final @Nullable OnTokensChangedListener<M> listener;
+
+    /* the type adapter notifies a token for each view it's typed in: it stays active until it's removed from all of them */
+    // GuardedBy("main thread")
+    private final Map<String, Integer> activeTokens = new HashMap<>();
+    // GuardedBy("main thread")
+    private final Map<EditText, ViewWatcher> attachedViews = new HashMap<>();
+
+    /**
+     * Create a controller, to be attached to the views with {@link #attach(EditText)}.
+     *
+     * @param filter   The filter of the type adapter, whose valid token pattern delimits the chips.
+     * @param renderer The renderer for the chips.
+     * @param style    The chips style.
+     * @param listener The listener to forward the token callbacks to, if any.
+     */
+    public TokenChipController(@NonNull TokenFilter<M> filter,
+                               @NonNull TokenChipRenderer renderer,
+                               @NonNull TokenChipRenderer.Style style,
+                               @Nullable OnTokensChangedListener<M> listener) {
+        this.filter = filter;
+        this.renderer = renderer;
+        this.style = style;
+        this.listener = listener;
+    }
+
+    /**
+     * Start watching the passed view text and show the chips of the active tokens into it.
+     */
+    @MainThread
+    public void attach(@NonNull EditText editText) {
+        if (attachedViews.containsKey(editText)) {
+            return;
+        }
+        ViewWatcher watcher = new ViewWatcher(editText);
+        attachedViews.put(editText, watcher);
+        editText.addTextChangedListener(watcher);
+        Editable text = editText.getText();
+        updateChips(editText, text, 0, text.length());
+    }
+
+    /**
+     * Stop watching the passed view text and remove all the chips from it.
+     */
+    @MainThread
+    public void detach(@NonNull EditText editText) {
+        ViewWatcher watcher = attachedViews.remove(editText);
+        if (watcher == null) {
+            return;
+        }
+        editText.removeTextChangedListener(watcher);
+        Editable text = editText.getText();
+        for (ChipSpan span : text.getSpans(0, text.length(), ChipSpan.class)) {
+            text.removeSpan(span);
+        }
+    }
+
+    @Override
+    @MainThread
+    public void onTokenAdded(@NonNull CharSequence token, @NonNull M added) {
+        String tokenString = token.toString();
+        Integer count = activeTokens.get(tokenString);
+        activeTokens.put(tokenString, count != null ? count + 1 : 1);
+        if (count == null) {
+            for (EditText editText : attachedViews.keySet()) {
+                Editable text = editText.getText();
+                updateChips(editText, text, 0, text.length());
+            }
+        }
+        if (listener != null) {
+            listener.onTokenAdded(token, added);
+        }
+    }
+
+    @Override
+    @MainThread
+    public void onTokenRemoved(@NonNull CharSequence token, @NonNull M removed) {
+        String tokenString = token.toString();
+        Integer count = activeTokens.get(tokenString);
+        if (count != null && count > 1) {
+            activeTokens.put(tokenString, count - 1);
+        } else if (count != null) {
+            activeTokens.remove(tokenString);
+            for (EditText editText : attachedViews.keySet()) {
+                Editable text = editText.getText();
+                for (ChipSpan span : text.getSpans(0, text.length(), ChipSpan.class)) {
+                    if (span.token.equals(tokenString)) {
+                        text.removeSpan(span);
+                    }
+                }
+            }
+        }
+        if (listener != null) {
+            listener.onTokenRemoved(token, removed);
+        }
+    }
+
+    /**
+     * Match the valid token pattern within the passed range of the text, chipping the active tokens and dropping the chips that
+     * don't match their token anymore.
+     */
+    @MainThread
+    private void updateChips(@NonNull EditText editText, @NonNull Editable text, int start, int end) {
+        Pattern pattern = filter.getValidTokenPattern();
+        List<ChipRange> chipRanges = new ArrayList<>();
+        if (pattern != null && !activeTokens.isEmpty()) {
+            // transparent bounds, so that lookarounds and boundaries match as they do for the type adapter on the whole text
+            Matcher matcher = pattern.matcher(text).region(start, end).useTransparentBounds(true).useAnchoringBounds(false);
+            while (matcher.find()) {
+                int tokenStart = matcher.start();
+                int tokenEnd = matcher.end();
+                while (tokenStart < tokenEnd && text.charAt(tokenStart) <= ' ') { // trimmed as by the type adapter
+                    tokenStart++;
+                }
+                while (tokenEnd > tokenStart && text.charAt(tokenEnd - 1) <= ' ') {
+                    tokenEnd--;
+                }
+                String token = text.subSequence(tokenStart, tokenEnd).toString();
+                if (activeTokens.containsKey(token)) {
+                    chipRanges.add(new ChipRange(token, tokenStart, tokenEnd));
+                }
+            }
+        }
+
+        for (ChipSpan span : text.getSpans(start, end, ChipSpan.class)) {
+            int spanStart = text.getSpanStart(span);
+            int spanEnd = text.getSpanEnd(span);
+            if (spanStart < start || spanEnd > end) {
+                continue; // outside of the matched range
+            }
+            ChipRange chipRange = findChipRange(chipRanges, spanStart, spanEnd);
+            if (chipRange != null && chipRange.token.equals(span.token)) {
+                chipRanges.remove(chipRange); // already chipped
+            } else {
+                text.removeSpan(span);
+            }
+        }
+        for (ChipRange chipRange : chipRanges) {
+            ChipSpan span = new ChipSpan(editText, chipRange.token, renderer.getChip(chipRange.token, style));
+            text.setSpan(span, chipRange.start, chipRange.end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+    }
+
+    private static @Nullable ChipRange findChipRange(@NonNull List<ChipRange> chipRanges, int start, int end) {
+        for (ChipRange chipRange : chipRanges) {
+            if (chipRange.start == start && chipRange.end == end) {
+                return chipRange;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Watches the text of an attached view, tracking the range replaced by each change.
+     */
+    private class ViewWatcher implements TextWatcher {
+
+        private final EditText editText;
+
+        /* range of the text replaced by the last change, editStart is -1 when there is none */
+        private int editStart = -1;
+        private int editEnd;
+
+        ViewWatcher(@NonNull EditText editText) {
+            this.editText = editText;
+        }
+
+        @Override
+        public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence s, int start, int before, int count) {
+            editStart = start;
+            editEnd = start + count;
+        }
+
+        @Override
+        public void afterTextChanged(Editable s) {
+            if (editStart < 0) {
+                return;
+            }
+            // expand the edited range to the lines it touches
+            int start = Math.min(editStart, s.length());
+            int end = Math.min(editEnd, s.length());
+            editStart = -1;
+            while (start > 0 && s.charAt(start - 1) != '\n') {
+                start--;
+            }
+            while (end < s.length() && s.charAt(end) != '\n') {
+                end++;
+            }
+            updateChips(editText, s, start, end);
+        }
+    }
+
+
+    private static class ChipRange {
+
+        final String token;
+        final int start;
+        final int end;
+
+        ChipRange(@NonNull String token, int start, int end) {
+            this.token = token;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+
+    /**
+     * The span of a chipped token.
+     */
+    public static class ChipSpan extends ImageSpan {
+
+        final String token;
+
+        ChipSpan(@NonNull EditText editText, @NonNull String token, @NonNull Bitmap chip) {
+            super(editText.getContext(), chip, ALIGN_BASELINE);
+            this.token = token;
+        }
+
+        public @NonNull String getToken() {
+            return token;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.view;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.util.LruCache;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Renders the chips shown in place of the recognized tokens by a {@link TokenChipController}.
+ * <p>
+ * Rendering a chip allocates a bitmap and draws its background and text, which is too slow to do for every token at every text change.
+ * Rendered chips are kept in an LRU cache keyed by token and {@link Style}, bounded by number of chips, so that a token is only rendered
+ * again after it has been evicted. The same renderer can be shared by the controllers of several views.
+ */
+public class TokenChipRenderer {
+
+    public static final int DEFAULT_MAX_CHIPS = 128;
+
+    private final LruCache<ChipKey, Bitmap> chipCache;
+    private final Paint backgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final RectF chipRect = new RectF();
+
+    public TokenChipRenderer() {
+        this(DEFAULT_MAX_CHIPS);
+    }
+
+    /**
+     * @param maxChips The maximum number of rendered chips to keep in the cache.
+     */
+    public TokenChipRenderer(int maxChips) {
+        if (maxChips <= 0) {
+            throw new IllegalArgumentException("The chips cache size must be positive");
+        }
+        chipCache = new LruCache<>(maxChips);
+    }
+
+    /**
+     * Return the chip bitmap for the passed token and style, rendering it only if it's not cached.
+     */
+    @MainThread
+    public @NonNull Bitmap getChip(@NonNull CharSequence token, @NonNull Style style) {
+        ChipKey key = new ChipKey(token.toString(), style);
+        Bitmap chip = chipCache.get(key);
+        if (chip == null) {
+            chip = render(key.token, style);
+            chipCache.put(key, chip);
+        }
+        return chip;
+    }
+
+    /**
+     * Evict all the rendered chips from the cache.
+     */
+    public void clearCache() {
+        chipCache.evictAll();
+    }
+
+    @VisibleForTesting int getCachedChipsCount() {
+        return chipCache.size();
+    }
+
+    @MainThread
+    private @NonNull Bitmap render(@NonNull String token, @NonNull Style style) {
+        textPaint.setTextSize(style.textSize);
+        textPaint.setColor(style.textColor);
+        backgroundPaint.setColor(style.backgroundColor);
+
+        Paint.FontMetrics fontMetrics = textPaint.getFontMetrics();
+        float verticalPadding = style.padding / 2f;
+        int width = Math.max((int) Math.ceil(textPaint.measureText(token) + 2 * style.padding), 1);
+        int height = Math.max((int) Math.ceil(fontMetrics.descent - fontMetrics.ascent + 2 * verticalPadding), 1);
+
+        Bitmap chip = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(chip);
+        chipRect.set(0, 0, width, height);
+        canvas.drawRoundRect(chipRect, style.cornerRadius, style.cornerRadius, backgroundPaint);
+        canvas.drawText(token, style.padding, verticalPadding - fontMetrics.ascent, textPaint);
+        return chip;
+    }
+
+
+    /**
+     * The appearance of a chip. Sizes are in pixels.
+     */
+    // @Immutable
+    public static final class Style {
+
+        final float textSize;
+        final @ColorInt int textColor;
+        final @ColorInt int backgroundColor;
+        final float cornerRadius;
+        final float padding;
+
+        /**
+         * @param textSize        The chip text size.
+         * @param textColor       The chip text color.
+         * @param backgroundColor The chip background color.
+         * @param cornerRadius    The radius of the chip background corners.
+         * @param padding         The horizontal padding of the chip text (the vertical padding is half of it).
+         */
+        public Style(float textSize, @ColorInt int textColor, @ColorInt int backgroundColor, float cornerRadius, float padding) {
+            this.textSize = textSize;
+            this.textColor = textColor;
+            this.backgroundColor = backgroundColor;
+            this.cornerRadius = cornerRadius;
+            this.padding = padding;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Style style = (Style) o;
+            return Float.compare(style.textSize, textSize) == 0
+                    && textColor == style.textColor
+                    && backgroundColor == style.backgroundColor
+                    && Float.compare(style.cornerRadius, cornerRadius) == 0
+                    && Float.compare(style.padding, padding) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(textSize);
+            result = 31 * result + textColor;
+            result = 31 * result + backgroundColor;
+            result = 31 * result + Float.floatToIntBits(cornerRadius);
+            result = 31 * result + Float.floatToIntBits(padding);
+            return result;
+        }
+    }
+
+
+    // @Immutable
+    private static final class ChipKey {
+
+        final String token;
+        final Style style;
+
+        ChipKey(@NonNull String token, @NonNull Style style) {
+            this.token = token;
+            this.style = style;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            ChipKey chipKey = (ChipKey) o;
+            return token.equals(chipKey.token) && style.equals(chipKey.style);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * token.hashCode() + style.hashCode();
+        }
+    }
+
+}
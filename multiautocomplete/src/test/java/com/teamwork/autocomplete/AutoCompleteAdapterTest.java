@@ -1,10 +1,16 @@
 package com.teamwork.autocomplete;
 
+import android.database.DataSetObserver;
 import android.widget.Filter;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
 import com.teamwork.autocomplete.adapter.TypeAdapterDelegate;
 import com.teamwork.autocomplete.filter.SimpleTokenFilter;
+import com.teamwork.autocomplete.util.ConstraintComparator;
+import com.teamwork.autocomplete.util.SortKeyComparator;
 import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
 
 import org.junit.Before;
@@ -14,15 +20,21 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Matchers.eq;
@@ -117,6 +129,79 @@ public class AutoCompleteAdapterTest extends Filter {
         verify(((TypeAdapterDelegate<String>) typeAdapter).getFilter()).performFiltering("it", dataset);
     }
 
+    @Test
+    public void testFilter_resultsPublishedByReference() throws Exception {
+        Filter filter = autoCompleteAdapter.getFilter();
+        performFiltering(filter, "it");
+        List<?> displayed = autoCompleteAdapter.getDisplayedItems();
+        performFiltering(filter, "i");
+        performFiltering(filter, "it");
+
+        // the second "it" pass hits the type adapter results cache, and its results are displayed without being copied
+        assertThat(autoCompleteAdapter.getDisplayedItems(), sameInstance(displayed));
+        assertThat(autoCompleteAdapter.getCount(), is(2));
+    }
+
+    @Test
+    public void testMergeStable() {
+        List<Object> displayed = Arrays.asList("Italy", "Ireland", "Spain");
+        List<Object> results = Arrays.asList("Iceland", "Ireland", "Italy", "India");
+
+        List<Object> merged = AutoCompleteAdapter.mergeStable(displayed, results);
+
+        assertThat(merged, is(Arrays.asList((Object) "Italy", "Ireland", "Iceland", "India")));
+    }
+
+    @Test
+    public void testFilter_streaming() throws Exception {
+        // more items than a filtering chunk, with better (prefix) matches after the first items of each chunk
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            items.add(i == 40 ? "ireland" : i == 80 ? "italy" : "xi" + i);
+        }
+        SortKeyComparator<String> prefixComparator = new SortKeyComparator<String>() {
+            @Override public int getSortKey(@Nullable CharSequence constraint, @NonNull String item) {
+                return constraint != null && item.startsWith(constraint.toString()) ? 0 : 1;
+            }
+        };
+        AutoCompleteTypeAdapter<String> rankingTypeAdapter = AutoCompleteTypeAdapter.Build.from(viewBinder,
+                new SimpleTokenFilter<String>() {
+                    @Override public ConstraintComparator<String> getConstraintComparator() {
+                        return prefixComparator;
+                    }
+                });
+        rankingTypeAdapter.setItems(items);
+        awaitItems((TypeAdapterDelegate<?>) rankingTypeAdapter, items.size());
+
+        autoCompleteAdapter = new AutoCompleteAdapter(RuntimeEnvironment.application,
+                Collections.singletonList((TypeAdapterDelegate<?>) rankingTypeAdapter), delayer, 5);
+        List<List<?>> displayed = new ArrayList<>();
+        autoCompleteAdapter.registerDataSetObserver(new DataSetObserver() {
+            @Override public void onChanged() {
+                displayed.add(autoCompleteAdapter.getDisplayedItems());
+            }
+        });
+        performFilteringOnWorkerThread(autoCompleteAdapter.getFilter(), "i");
+
+        // the early batch is the best ranked of the first chunk matches
+        assertThat(displayed.size(), is(2));
+        assertThat(displayed.get(0), is(Arrays.asList("ireland", "xi0", "xi1", "xi2", "xi3")));
+        // the final results keep the early batch rows in place, followed by the ranked matches of the whole data set
+        List<?> merged = displayed.get(1);
+        assertThat(merged.size(), is(items.size()));
+        assertThat(merged.subList(0, 7), is(Arrays.asList("ireland", "xi0", "xi1", "xi2", "xi3", "italy", "xi4")));
+        assertThat(merged.get(merged.size() - 1), is("xi99"));
+    }
+
+    // the type adapters index their items in background
+    private static void awaitItems(TypeAdapterDelegate<?> typeAdapter, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (typeAdapter.performFiltering("", 0, null, results -> { }, () -> false).getItems().size() < count
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
     // running the asynchronous Filter.filter() yields to unstable tests which need to rely on Thread.sleep
     private static void performFiltering(Filter filter, String constraint)
             throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
@@ -128,6 +213,23 @@ public class AutoCompleteAdapterTest extends Filter {
         publishResults.invoke(filter, constraint, results);
     }
 
+    // as the Filter does, the results are computed on a worker thread: the early batch it posts is displayed before the results
+    private static void performFilteringOnWorkerThread(Filter filter, String constraint) throws Exception {
+        Class<? extends Filter> filterCls = filter.getClass();
+        Method performFiltering = filterCls.getDeclaredMethod("performFiltering", CharSequence.class);
+        Method publishResults = filterCls.getDeclaredMethod("publishResults", CharSequence.class, FilterResults.class);
+
+        ExecutorService worker = Executors.newSingleThreadExecutor();
+        try {
+            FilterResults results = (FilterResults) worker.submit(() -> performFiltering.invoke(filter, constraint))
+                    .get(5, TimeUnit.SECONDS);
+            ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+            publishResults.invoke(filter, constraint, results);
+        } finally {
+            worker.shutdown();
+        }
+    }
+
     // extends Filter only for quicker access to FilterResults class
 
     @Override protected FilterResults performFiltering(CharSequence charSequence) {
@@ -0,0 +1,108 @@
+package com.teamwork.autocomplete;
+
+import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
+import com.teamwork.autocomplete.adapter.TypeAdapterDelegate;
+import com.teamwork.autocomplete.filter.SimpleTokenFilter;
+import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class DropDownRowsTest {
+
+    @Mock AutoCompleteViewBinder<String> viewBinder;
+
+    private TypeAdapterDelegate<String> typeAdapter;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        when(viewBinder.getItemId(any())).then(invocation -> (long) invocation.getArguments()[0].hashCode());
+        typeAdapter = (TypeAdapterDelegate<String>) AutoCompleteTypeAdapter.Build.from(viewBinder, new SimpleTokenFilter<String>());
+    }
+
+    @Test
+    public void testCallback_itemsTheSame() {
+        DropDownRows.Callback callback = new DropDownRows.Callback(rows(1, "ita", "Italy", "Mauritania"),
+                rows(2, "ital", "Mauritania", "Italy", "Haiti"));
+
+        assertThat(callback.getOldListSize(), is(2));
+        assertThat(callback.getNewListSize(), is(3));
+        assertThat(callback.areItemsTheSame(0, 1), is(true));
+        assertThat(callback.areItemsTheSame(1, 0), is(true));
+        assertThat(callback.areItemsTheSame(0, 0), is(false));
+        assertThat(callback.areItemsTheSame(0, 2), is(false));
+    }
+
+    @Test
+    public void testCallback_contentsTheSame() {
+        DropDownRows oldRows = rows(1, "ita", "Italy", "Mauritania", "Spain");
+
+        // the highlighted range of Italy grows, and Mauritania no longer matches
+        DropDownRows.Callback callback = new DropDownRows.Callback(oldRows, rows(2, "ital", "Italy", "Mauritania", "Spain"));
+        assertThat(callback.areContentsTheSame(0, 0), is(false));
+        assertThat(callback.areContentsTheSame(1, 1), is(false));
+        assertThat(callback.areContentsTheSame(2, 2), is(false)); // no ranges: the constraint has changed
+
+        callback = new DropDownRows.Callback(oldRows, rows(2, "ita", "Spain", "Mauritania", "Italy"));
+        assertThat(callback.areContentsTheSame(0, 2), is(true));
+        assertThat(callback.areContentsTheSame(1, 1), is(true));
+        assertThat(callback.areContentsTheSame(2, 0), is(true));
+    }
+
+    @Test
+    public void testMergeWith() {
+        DropDownRows batch = new DropDownRows(1, typeAdapter, "i", Arrays.asList("Italy", "Ireland"),
+                typeAdapter.prepareRows("i", Arrays.asList("Italy", "Ireland")), false);
+        DropDownRows results = rows(1, "i", "Iceland", "Ireland", "India");
+
+        DropDownRows merged = batch.mergeWith(results);
+
+        assertThat(merged.generation, is(1));
+        assertThat(merged.complete, is(true));
+        assertThat(merged.items, is(Arrays.asList((Object) "Ireland", "Iceland", "India")));
+    }
+
+    @Test
+    public void testDiff() {
+        DropDownRows oldRows = rows(1, "ita", "Italy", "Mauritania");
+        assertThat(DropDownRows.diff(oldRows, rows(2, "ital", "Italy")), notNullValue());
+
+        // rows of another type adapter can't be diffed
+        TypeAdapterDelegate<String> otherTypeAdapter =
+                (TypeAdapterDelegate<String>) AutoCompleteTypeAdapter.Build.from(viewBinder, new SimpleTokenFilter<String>());
+        DropDownRows otherRows = new DropDownRows(2, otherTypeAdapter, "ita", Arrays.asList("Italy"),
+                otherTypeAdapter.prepareRows("ita", Arrays.asList("Italy")), true);
+        assertThat(DropDownRows.diff(oldRows, otherRows), nullValue());
+
+        // neither can too many rows
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i <= DropDownRows.MAX_DIFF_ROWS; i++) {
+            items.add("Italy" + i);
+        }
+        assertThat(DropDownRows.diff(oldRows, rows(2, "ita", items.toArray(new String[0]))), nullValue());
+    }
+
+    private DropDownRows rows(int generation, String constraint, String... items) {
+        List<String> itemsList = Arrays.asList(items);
+        return new DropDownRows(generation, typeAdapter, constraint, itemsList, typeAdapter.prepareRows(constraint, itemsList), true);
+    }
+
+}
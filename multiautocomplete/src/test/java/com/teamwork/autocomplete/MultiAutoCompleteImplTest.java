@@ -1,9 +1,15 @@
 package com.teamwork.autocomplete;
 
+import android.app.Activity;
+import android.content.Context;
 import android.text.SpannableStringBuilder;
 import android.widget.MultiAutoCompleteTextView;
 
+import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
 import com.teamwork.autocomplete.adapter.TypeAdapterDelegate;
+import com.teamwork.autocomplete.filter.SimpleTokenFilter;
+import com.teamwork.autocomplete.test_util.TextViewBinder;
+import com.teamwork.autocomplete.util.UsageTracker;
 import com.teamwork.autocomplete.view.MultiAutoCompleteEditText;
 
 import org.junit.Before;
@@ -11,15 +17,26 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -31,6 +48,7 @@ public class MultiAutoCompleteImplTest {
     @Mock TypeAdapterDelegate<Object> typeAdapter2;
 
     @Mock MultiAutoCompleteEditText editText;
+    @Mock MultiAutoCompleteEditText editText2;
 
     private MultiAutoCompleteImpl autoComplete;
 
@@ -39,6 +57,7 @@ public class MultiAutoCompleteImplTest {
         MockitoAnnotations.initMocks(this);
 
         when(editText.getContext()).thenReturn(RuntimeEnvironment.application);
+        when(editText2.getContext()).thenReturn(RuntimeEnvironment.application);
         autoComplete = new MultiAutoCompleteImpl(tokenizer, Arrays.asList(typeAdapter1, typeAdapter2), null);
     }
 
@@ -59,13 +78,104 @@ public class MultiAutoCompleteImplTest {
         assertThat(autoComplete.getEditText(), nullValue());
     }
 
+    @Test
+    public void onViewAttached_multipleViews() throws Exception {
+        autoComplete.onViewAttached(editText);
+        AutoCompleteAdapter adapter1 = autoComplete.getAdapter();
+        autoComplete.onViewAttached(editText2);
+        AutoCompleteAdapter adapter2 = autoComplete.getAdapter();
+
+        assertThat(adapter1, notNullValue());
+        assertThat(adapter2, not(sameInstance(adapter1)));
+        verify(editText).setAdapter(adapter1);
+        verify(editText2).setAdapter(adapter2);
+        // the type adapters are shared and observed only once
+        verify(typeAdapter1, times(1)).registerDataSetObserver(any());
+
+        autoComplete.onViewDetached(editText2);
+
+        assertThat(autoComplete.getEditText(), sameInstance(editText));
+        assertThat(autoComplete.getAdapter(), sameInstance(adapter1));
+        verify(typeAdapter1, never()).unregisterDataSetObserver(any());
+
+        autoComplete.onViewDetached(editText);
+
+        assertThat(autoComplete.getEditText(), nullValue());
+        verify(typeAdapter1).unregisterDataSetObserver(any());
+    }
+
+    @Test
+    public void afterTextChanged_multipleViews() throws Exception {
+        when(editText.getText()).thenReturn(new SpannableStringBuilder("one"));
+        when(editText2.getText()).thenReturn(new SpannableStringBuilder("two"));
+        autoComplete.onViewAttached(editText);
+        autoComplete.onViewAttached(editText2);
+
+        autoComplete.afterTextChanged(editText2.getText());
+
+        // only the text of the edited view is passed, with the view its tokens are tracked for
+        verify(typeAdapter1).onTextChanged(same(editText2), eq("two"));
+        verify(typeAdapter2).onTextChanged(same(editText2), eq("two"));
+        verify(typeAdapter1, never()).onTextChanged(same(editText), any());
+
+        autoComplete.onViewDetached(editText2);
+        verify(typeAdapter1).onViewDetached(editText2);
+    }
+
+    @Test
+    public void onItemCompleted_recordsOnlyCommittedPicks() throws Exception {
+        UsageTracker usageTracker = new UsageTracker(null);
+        AutoCompleteTypeAdapter<String> typeAdapter = AutoCompleteTypeAdapter.Build.from(new TextViewBinder(), new SimpleTokenFilter<>());
+        typeAdapter.setUsageTracker(usageTracker);
+        typeAdapter.setItems(Arrays.asList("Ireland", "Italy", "Spain"));
+
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        activity.getSystemService(Context.INPUT_METHOD_SERVICE); // the drop down builds the input method completions only if it exists
+        MultiAutoCompleteEditText view = new MultiAutoCompleteEditText(activity);
+        activity.setContentView(view);
+        autoComplete = new MultiAutoCompleteImpl(new MultiAutoCompleteTextView.CommaTokenizer(),
+                Collections.singletonList((TypeAdapterDelegate<?>) typeAdapter), null);
+        autoComplete.onViewAttached(view);
+        AutoCompleteAdapter adapter = autoComplete.getAdapter();
+        awaitFiltering(adapter, "i");
+
+        // showing the drop down converts the displayed items to strings: they're not picks
+        view.showDropDown();
+        assertThat(adapter.getCount(), is(3));
+        assertThat(usageTracker.isEmpty(), is(true));
+
+        view.performCompletion(adapter.getItem(1));
+
+        assertThat(view.getText().toString(), is("Italy, "));
+        assertThat(usageTracker.getTopKeys(3), is(Collections.singletonList("Italy")));
+    }
+
     @Test
     public void afterTextChanged() throws Exception {
         CharSequence text = "text";
+        when(editText.getText()).thenReturn(new SpannableStringBuilder(text));
+        autoComplete.onViewAttached(editText);
+        autoComplete.afterTextChanged(editText.getText());
+
+        verify(typeAdapter1).onTextChanged(same(editText), eq(text));
+        verify(typeAdapter2).onTextChanged(same(editText), eq(text));
+
+        // the text of a view which is not attached is ignored
         autoComplete.afterTextChanged(new SpannableStringBuilder(text));
+        verify(typeAdapter1, times(1)).onTextChanged(any(), any());
+    }
 
-        verify(typeAdapter1).onTextChanged(eq(text));
-        verify(typeAdapter2).onTextChanged(eq(text));
+    // the type adapters index their items in background, and the filter publishes its results on the main thread
+    private static void awaitFiltering(AutoCompleteAdapter adapter, String constraint) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (adapter.getCount() == 0 && System.currentTimeMillis() < deadline) {
+            CountDownLatch published = new CountDownLatch(1);
+            adapter.getFilter().filter(constraint, count -> published.countDown());
+            while (published.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+                Thread.sleep(10);
+            }
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,117 @@
+package com.teamwork.autocomplete;
+
+import android.app.Activity;
+import android.content.Context;
+import android.widget.LinearLayout;
+import android.widget.MultiAutoCompleteTextView;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.teamwork.autocomplete.adapter.AutoCompleteTypeAdapter;
+import com.teamwork.autocomplete.adapter.TypeAdapterDelegate;
+import com.teamwork.autocomplete.filter.SimpleTokenFilter;
+import com.teamwork.autocomplete.test_util.TextViewBinder;
+import com.teamwork.autocomplete.view.MultiAutoCompleteEditText;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class RecyclerDropDownTest {
+
+    private Activity activity;
+    private LinearLayout layout;
+    private AutoCompleteTypeAdapter<String> typeAdapter;
+    private RecyclerView.RecycledViewPool rowViewPool;
+
+    @Before
+    public void setUp() throws Exception {
+        activity = Robolectric.setupActivity(Activity.class);
+        activity.getSystemService(Context.INPUT_METHOD_SERVICE); // the drop down builds the input method completions only if it exists
+        layout = new LinearLayout(activity);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        activity.setContentView(layout);
+
+        typeAdapter = AutoCompleteTypeAdapter.Build.from(new TextViewBinder(), new SimpleTokenFilter<>());
+        typeAdapter.setItems(Arrays.asList("Ireland", "Italy", "Spain"));
+    }
+
+    @Test
+    public void rowClick_sharedRowViewPool() throws Exception {
+        MultiAutoCompleteEditText view1 = new MultiAutoCompleteEditText(activity);
+        MultiAutoCompleteEditText view2 = new MultiAutoCompleteEditText(activity);
+        RecyclerDropDown dropDown1 = attach(view1);
+        RecyclerDropDown dropDown2 = attach(view2);
+
+        awaitFiltering((AutoCompleteAdapter) view1.getAdapter(), "i");
+        dropDown1.show();
+        dropDown1.dismiss(); // the rows of the first view go back to the shared pool
+
+        awaitFiltering((AutoCompleteAdapter) view2.getAdapter(), "sp");
+        dropDown2.show();
+        RecyclerView rows = dropDown2.getRecyclerView();
+        assertThat(rows.getChildCount(), is(1));
+
+        // a row created by the drop down of the first view completes the item of the view it's now shown for
+        rows.getChildAt(0).performClick();
+        assertThat(view2.getText().toString(), is("Spain, "));
+        assertThat(view1.getText().toString(), is(""));
+    }
+
+    @Test
+    public void show_afterDismiss() throws Exception {
+        MultiAutoCompleteEditText view = new MultiAutoCompleteEditText(activity);
+        RecyclerDropDown dropDown = attach(view);
+        awaitFiltering((AutoCompleteAdapter) view.getAdapter(), "i");
+
+        dropDown.show();
+        int height = dropDown.getRecyclerView().getMeasuredHeight();
+        assertThat(height > 0, is(true));
+
+        // the rows are measured again once they're rebound from the pool
+        dropDown.dismiss();
+        dropDown.show();
+        assertThat(dropDown.getRecyclerView().getMeasuredHeight(), is(height));
+    }
+
+    /* wires the view as MultiAutoCompleteImpl does, sharing the row view pool with the other views */
+    private RecyclerDropDown attach(MultiAutoCompleteEditText view) {
+        layout.addView(view);
+        AutoCompleteAdapter adapter = new AutoCompleteAdapter(activity, Collections.singletonList((TypeAdapterDelegate<?>) typeAdapter),
+                null);
+        if (rowViewPool == null) {
+            rowViewPool = RecyclerDropDown.newRowViewPool(adapter.getViewTypeCount());
+        }
+        RecyclerDropDown dropDown = new RecyclerDropDown(view, adapter, rowViewPool);
+        view.setAdapter(adapter);
+        view.setTokenizer(new MultiAutoCompleteTextView.CommaTokenizer());
+        adapter.setDropDown(dropDown);
+        view.setDropDown(dropDown);
+        return dropDown;
+    }
+
+    // the type adapters index their items in background, and the filter publishes its results on the main thread
+    private static void awaitFiltering(AutoCompleteAdapter adapter, String constraint) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (adapter.getCount() == 0 && System.currentTimeMillis() < deadline) {
+            CountDownLatch published = new CountDownLatch(1);
+            adapter.getFilter().filter(constraint, count -> published.countDown());
+            while (published.getCount() > 0 && System.currentTimeMillis() < deadline) {
+                ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+                Thread.sleep(10);
+            }
+        }
+    }
+
+}
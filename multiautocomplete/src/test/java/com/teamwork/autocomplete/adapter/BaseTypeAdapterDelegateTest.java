@@ -2,27 +2,49 @@ package com.teamwork.autocomplete.adapter;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
 
+import androidx.annotation.NonNull;
+
+import com.teamwork.autocomplete.filter.HandleTokenFilter;
+import com.teamwork.autocomplete.filter.MatchRanges;
+import com.teamwork.autocomplete.filter.MultiFieldTokenFilter;
+import com.teamwork.autocomplete.filter.NormalizedTokenFilter;
 import com.teamwork.autocomplete.filter.SimpleTokenFilter;
+import com.teamwork.autocomplete.filter.TokenFilter;
 import com.teamwork.autocomplete.test_util.ImmediateExecutor;
+import com.teamwork.autocomplete.util.ConstraintComparator;
+import com.teamwork.autocomplete.util.UsageTracker;
 import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
 
 import org.hamcrest.collection.IsIterableContainingInOrder;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
 import org.robolectric.shadows.ShadowLooper;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import static com.teamwork.autocomplete.adapter.BaseTypeAdapterDelegate.getAddedTokens;
@@ -31,16 +53,24 @@ import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(RobolectricTestRunner.class)
 public class BaseTypeAdapterDelegateTest {
 
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Mock AutoCompleteViewBinder<String> viewBinder;
 
     private List<String> dataset;
@@ -81,28 +111,437 @@ public class BaseTypeAdapterDelegateTest {
         assertThat(adapterDelegate.getItemsMap(), notNullValue());
         assertThat(adapterDelegate.getItemsMap().size(), is(dataset.size()));
         assertThat(adapterDelegate.getItemsMap().values(), IsIterableContainingInOrder.contains(dataset.toArray()));
+    }
+
+    @Test
+    public void testSetItems_indexSnapshot() throws Exception {
+        File snapshotFile = new File(temporaryFolder.getRoot(), "index.snapshot");
+        adapterDelegate.setIndexSnapshotFile(snapshotFile);
+        adapterDelegate.setItems(dataset, 1L);
+
+        assertThat(snapshotFile.exists(), is(true));
+
+        // a new adapter restores the index from the snapshot, only computing the token string of the first item for the fingerprint
+        SimpleTokenFilter<String> tokenFilter = spy(new SimpleTokenFilter<>());
+        BaseTypeAdapterDelegate<String> restoredDelegate = new BaseTypeAdapterDelegate<>(
+                new ImmediateExecutor(), new Handler(Looper.getMainLooper()), viewBinder, tokenFilter);
+        restoredDelegate.setIndexSnapshotFile(snapshotFile);
+        restoredDelegate.setItems(dataset, 1L);
+
+        verify(tokenFilter, times(1)).toTokenString(any());
+        assertThat(restoredDelegate.getItemsMap().keySet(), IsIterableContainingInOrder.contains(dataset.toArray()));
+        assertThat(filter(restoredDelegate, "it"), hasItems("Italy", "UnitedKingdom"));
+
+        // the same version is not indexed again, a different version is rebuilt
+        restoredDelegate.setItems(dataset, 1L);
+        verify(tokenFilter, times(1)).toTokenString(any());
+        restoredDelegate.setItems(dataset, 2L);
+        verify(tokenFilter, times(2 + dataset.size())).toTokenString(any());
+    }
+
+    @Test
+    public void testSetItems_indexSnapshotOfAnotherFilter() throws Exception {
+        File snapshotFile = new File(temporaryFolder.getRoot(), "index.snapshot");
+        BaseTypeAdapterDelegate<String> delegate = new BaseTypeAdapterDelegate<>(
+                new ImmediateExecutor(), new Handler(Looper.getMainLooper()), viewBinder, new HandleTokenFilter<>('@'));
+        delegate.setIndexSnapshotFile(snapshotFile);
+        delegate.setItems(dataset, 1L);
+
+        // the filter formats the tokens with another handle, with the same data set version: the snapshot is discarded
+        BaseTypeAdapterDelegate<String> restoredDelegate = new BaseTypeAdapterDelegate<>(
+                new ImmediateExecutor(), new Handler(Looper.getMainLooper()), viewBinder, new HandleTokenFilter<>('#'));
+        restoredDelegate.setIndexSnapshotFile(snapshotFile);
+        restoredDelegate.setItems(dataset, 1L);
+
+        assertThat(restoredDelegate.getItemsMap().keySet(), IsIterableContainingInOrder.contains("#Ireland", "#Italy", "#UnitedKingdom",
+                "#Spain"));
+    }
+
+    @Test
+    public void testSetItems_compactTokenLookup() throws Exception {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < ItemIndex.COMPACT_LOOKUP_MIN_SIZE; i++) {
+            items.add("item" + i);
+        }
+        items.add("item42"); // duplicates replace the existing item
+        adapterDelegate.setItems(items);
+
+        ItemIndex<String> index = adapterDelegate.getIndex();
+        assertThat(index.hasCompactLookup(), is(true));
+        assertThat(index.size(), is(ItemIndex.COMPACT_LOOKUP_MIN_SIZE));
+        assertThat(index.getItem("item42"), is("item42"));
+        assertThat(index.getItem("item9999"), is("item9999"));
+        assertThat(index.getItem("item"), nullValue());
+
+        adapterDelegate.setItems(dataset);
+        assertThat(adapterDelegate.getIndex().hasCompactLookup(), is(false));
+        assertThat(adapterDelegate.getIndex().getItem("Spain"), is("Spain"));
+    }
+
+    @Test
+    public void testSetItems_progressiveIndexing() throws Exception {
+        int chunkSize = BaseTypeAdapterDelegate.INDEXING_CHUNK_SIZE;
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < chunkSize * 2 + 1; i++) {
+            items.add("item" + i);
+        }
+        CountDownLatch secondChunk = new CountDownLatch(1);
+        CountDownLatch resume = new CountDownLatch(1);
+        SimpleTokenFilter<String> tokenFilter = new SimpleTokenFilter<String>() {
+            @Override public @NonNull CharSequence toTokenString(@NonNull String item) {
+                if (item.equals("item" + (chunkSize + 1))) { // hold the indexing thread while the second chunk is being indexed
+                    secondChunk.countDown();
+                    awaitUninterruptibly(resume);
+                }
+                return item;
+            }
+        };
+        ExecutorService indexingExecutor = Executors.newSingleThreadExecutor();
+        try {
+            adapterDelegate = new BaseTypeAdapterDelegate<>(indexingExecutor, new Handler(Looper.getMainLooper()), viewBinder, tokenFilter);
+            adapterDelegate.setItems(items);
+
+            assertThat(secondChunk.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(adapterDelegate.getIndex().isComplete(), is(false));
+            assertThat(filter(adapterDelegate, "item").size(), is(chunkSize));
+            resume.countDown();
+
+            indexingExecutor.submit(() -> { }).get(5, TimeUnit.SECONDS); // wait for the indexing to complete
+            assertThat(adapterDelegate.getIndex().isComplete(), is(true));
+            assertThat(filter(adapterDelegate, "item").size(), is(items.size()));
+        } finally {
+            resume.countDown();
+            indexingExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testItemIndexBuilder_snapshotNotAffectedByDuplicates() throws Exception {
+        ItemIndex.Builder<String> builder = new ItemIndex.Builder<>(3);
+        String first = new String("item");
+        String duplicate = new String("item");
+        builder.add("item", first);
+        ItemIndex<String> snapshot = builder.snapshot();
+
+        builder.add("item", duplicate); // replaces the item in the complete index only
+        builder.add("other", "other");
+
+        assertThat(snapshot.getItem(0), sameInstance(first));
+        assertThat(snapshot.size(), is(1));
+        ItemIndex<String> index = builder.build();
+        assertThat(index.getItem(0), sameInstance(duplicate));
+        assertThat(index.getItem("other"), is("other"));
+    }
+
+    @Test
+    public void testPerformFiltering_streaming() throws Exception {
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < BaseTypeAdapterDelegate.FILTERING_CHUNK_SIZE * 2; i++) {
+            items.add("item" + i);
+        }
+        adapterDelegate.setItems(items);
+
+        List<List<String>> batches = new ArrayList<>();
+        FilteredItems<String> filtered = adapterDelegate.performFiltering("item", 10, batches::add, results -> fail(), () -> false);
+
+        assertThat(batches.size(), is(1));
+        assertThat(batches.get(0), is(items.subList(0, 10)));
+        assertThat(filtered.getItems(), is(items));
+        assertThat(filtered.isPartial(), is(false));
+
+        // no early batch when the pass doesn't find enough matches
+        batches.clear();
+        filtered = adapterDelegate.performFiltering("item1", items.size(), batches::add, results -> fail(), () -> false);
+        assertThat(batches.isEmpty(), is(true));
+        assertThat(filtered.getItems().get(0), is("item1"));
+    }
+
+    @Test
+    public void testPerformFiltering_timeBudget() throws Exception {
+        int chunkSize = BaseTypeAdapterDelegate.FILTERING_CHUNK_SIZE;
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < chunkSize * 3; i++) {
+            items.add("item" + i);
+        }
+        SimpleTokenFilter<String> slowFilter = new SimpleTokenFilter<String>() {
+            @Override protected boolean matchesConstraint(@NonNull String item, @NonNull CharSequence constraint) {
+                try {
+                    Thread.sleep(2); // a chunk of items takes well over the budget
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+                return super.matchesConstraint(item, constraint);
+            }
+        };
+        adapterDelegate = new BaseTypeAdapterDelegate<>(new ImmediateExecutor(), new Handler(Looper.getMainLooper()),
+                viewBinder, slowFilter);
+        adapterDelegate.setItems(items);
+        adapterDelegate.setFilteringTimeBudget(10);
+
+        List<List<String>> completed = new ArrayList<>();
+        // the immediate executor completes the pass before returning the partial results
+        FilteredItems<String> filtered = adapterDelegate.performFiltering("item", 0, null, completed::add, () -> false);
+
+        // the chunks are sized on the time left, so the pass stops a few items past the deadline rather than at the end of a chunk
+        assertThat(filtered.isPartial(), is(true));
+        assertThat(filtered.getItems().size() < chunkSize / 4, is(true));
+        assertThat(filtered.getItems(), is(items.subList(0, filtered.getItems().size())));
+        assertThat(completed.size(), is(1));
+        assertThat(completed.get(0), is(items));
+
+        // a pass cancelled by its caller (i.e. by a newer pass of the same view) is not completed
+        completed.clear();
+        filtered = adapterDelegate.performFiltering("item1", 0, null, completed::add, () -> true);
+        assertThat(filtered.isPartial(), is(true));
+        assertThat(completed.isEmpty(), is(true));
+    }
+
+    @Test
+    public void testGetTimedChunkSize() throws Exception {
+        int maxChunkSize = BaseTypeAdapterDelegate.FILTERING_CHUNK_SIZE;
+        assertThat(BaseTypeAdapterDelegate.getTimedChunkSize(1, 1000, 10000), is(10));
+        assertThat(BaseTypeAdapterDelegate.getTimedChunkSize(4, 1000, 10000), is(40));
+        assertThat(BaseTypeAdapterDelegate.getTimedChunkSize(1, 1000, 100), is(1));
+        assertThat(BaseTypeAdapterDelegate.getTimedChunkSize(1, 0, Long.MAX_VALUE), is(maxChunkSize));
+    }
+
+    @Test
+    public void testPerformFiltering_resultCache() throws Exception {
+        adapterDelegate.setItems(dataset);
+
+        FilteredItems<String> first = adapterDelegate.performFiltering("it", 0, null, results -> fail(), () -> false);
+        FilteredItems<String> second = adapterDelegate.performFiltering("it", 0, null, results -> fail(), () -> false);
+
+        assertThat(second.getItems(), is(first.getItems()));
+        CacheStats stats = adapterDelegate.getResultCacheStats();
+        assertThat(stats.getHitCount(), is(1L));
+        assertThat(stats.getMissCount(), is(1L));
+        assertThat(stats.getHitRate(), is(0.5));
+
+        // a new data set invalidates the cache
+        adapterDelegate.setItems(Arrays.asList("Italy", "Iceland"));
+        assertThat(adapterDelegate.getResultCacheStats().getSize(), is(0));
+        assertThat(adapterDelegate.performFiltering("it", 0, null, results -> fail(), () -> false).getItems(),
+                IsIterableContainingInOrder.contains("Italy"));
+
+        // the least recently used entries are evicted
+        adapterDelegate.setResultCacheSize(1, Long.MAX_VALUE);
+        adapterDelegate.performFiltering("ice", 0, null, results -> fail(), () -> false);
+        stats = adapterDelegate.getResultCacheStats();
+        assertThat(stats.getSize(), is(1));
+        assertThat(stats.getEvictionCount(), is(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPerformFiltering_sharedFilterResults() throws Exception {
+        List<String> sharedResults = Collections.unmodifiableList(Arrays.asList("Spain", "Italy"));
+        TokenFilter<String> tokenFilter = mock(TokenFilter.class);
+        when(tokenFilter.toTokenString(any())).then(invocation -> invocation.getArguments()[0]);
+        when(tokenFilter.performFiltering(any(), any())).thenReturn(sharedResults);
+        when(tokenFilter.getConstraintComparator()).thenReturn(new ConstraintComparator<String>() {
+            @Override public int compare(CharSequence constraint, @NonNull String o1, @NonNull String o2) {
+                return o1.compareTo(o2);
+            }
+        });
+        adapterDelegate = new BaseTypeAdapterDelegate<>(new ImmediateExecutor(), new Handler(Looper.getMainLooper()),
+                viewBinder, tokenFilter);
+        adapterDelegate.setItems(dataset);
+
+        // a filter that doesn't return a new list for each pass has its results copied before ranking them
+        assertThat(adapterDelegate.performFiltering("a", 0, null, results -> fail(), () -> false).getItems(),
+                IsIterableContainingInOrder.contains("Italy", "Spain"));
+        assertThat(sharedResults, IsIterableContainingInOrder.contains("Spain", "Italy"));
+    }
+
+    @Test
+    public void testPerformFiltering_normalizedIndex() throws Exception {
+        adapterDelegate = new BaseTypeAdapterDelegate<>(new ImmediateExecutor(), new Handler(Looper.getMainLooper()),
+                viewBinder, new NormalizedTokenFilter<>(new SimpleTokenFilter<>(), Locale.ENGLISH));
+        adapterDelegate.setItems(Arrays.asList("Bern", "Z\u00FCrich", "Jos\u00E9", "Lucerne", "Basel"));
+
+        assertThat(adapterDelegate.getIndex().getFilterIndex(), notNullValue());
+        assertThat(filter(adapterDelegate, "zurich"), IsIterableContainingInOrder.contains("Z\u00FCrich"));
+        assertThat(filter(adapterDelegate, "JOSE"), IsIterableContainingInOrder.contains("Jos\u00E9"));
+        // prefix matches first, then sorted alphabetically
+        assertThat(filter(adapterDelegate, "l"), IsIterableContainingInOrder.contains("Lucerne", "Basel"));
+        assertThat(filter(adapterDelegate, "e"), IsIterableContainingInOrder.contains("Basel", "Bern", "Jos\u00E9", "Lucerne"));
+
+        // the match ranges are found in the folded texts of the index
+        PreparedRows<String> preparedRows = adapterDelegate.prepareRows("SE", Arrays.asList("Jos\u00E9", "Basel"));
+        assertThat(preparedRows.getMatchRanges("Jos\u00E9"), is(MatchRanges.of(2, 4)));
+        assertThat(preparedRows.getMatchRanges("Basel"), is(MatchRanges.of(2, 4)));
+    }
+
+    @Test
+    public void testPerformFiltering_multiFieldIndex() throws Exception {
+        MultiFieldTokenFilter<String[]> tokenFilter = new MultiFieldTokenFilter<>(new SimpleTokenFilter<>(),
+                person -> person[0],
+                person -> person[1]);
+        BaseTypeAdapterDelegate<String[]> delegate = new BaseTypeAdapterDelegate<>(new ImmediateExecutor(),
+                new Handler(Looper.getMainLooper()), mock(AutoCompleteViewBinder.class), tokenFilter);
+        String[] mary = {"Mary Watson", "mjw"};
+        String[] john = {"John Smith", "watson"};
+        String[] jane = {"Jane Doe", "jd"};
+        delegate.setItems(Arrays.asList(mary, john, jane));
+
+        // matches in the first field rank higher, then prefix matches
+        assertThat(filter(delegate, "wat"), IsIterableContainingInOrder.contains(mary, john));
+        assertThat(filter(delegate, "j"), IsIterableContainingInOrder.contains(john, jane, mary));
+
+        List<MultiFieldTokenFilter.FieldMatch<String[]>> matches =
+                tokenFilter.search("watson", tokenFilter.buildIndex(Arrays.asList(mary, john, jane)));
+        assertThat(matches.size(), is(2));
+        assertThat(matches.get(0).getField(), is(0));
+        assertThat(matches.get(1).getItem(), is(john));
+        assertThat(matches.get(1).getField(), is(1));
+
+        // the match ranges refer to the matched field
+        assertThat(tokenFilter.getMatchRanges("wat", mary), is(MatchRanges.of(5, 8)));
+        assertThat(tokenFilter.getMatchRanges("wat", john), is(MatchRanges.of(0, 3).inField(1)));
+        assertThat(tokenFilter.getMatchRanges("wat", jane), nullValue());
+    }
 
-        assertThat(adapterDelegate.getCount(), is(0)); // no filterable items just yet
+    @Test
+    public void testPerformFiltering_usageRanking() throws Exception {
+        adapterDelegate.setUsageTracker(new UsageTracker(null));
+        adapterDelegate.setItems(dataset);
+        assertThat(adapterDelegate.performFiltering("i", 0, null, results -> fail(), () -> false).getItems(),
+                IsIterableContainingInOrder.contains("Ireland", "Italy", "UnitedKingdom", "Spain"));
+
+        // a pick invalidates the cached results, and usage doesn't override a better match
+        pick("UnitedKingdom", 3);
+        pick("Italy", 2);
+        pick("Spain", 1);
+        assertThat(adapterDelegate.performFiltering("i", 0, null, results -> fail(), () -> false).getItems(),
+                IsIterableContainingInOrder.contains("Italy", "Ireland", "UnitedKingdom", "Spain"));
+        // the cached results are tagged with the usage version they were ranked with, rather than cleared on the next pass
+        adapterDelegate.performFiltering("i", 0, null, results -> fail(), () -> false);
+        CacheStats stats = adapterDelegate.getResultCacheStats();
+        assertThat(stats.getMissCount(), is(2L));
+        assertThat(stats.getHitCount(), is(1L));
+        assertThat(stats.getSize(), is(1));
     }
 
     @Test
-    public void testSetFilteredItems_getCount_getItem_ItemId() throws Exception {
+    public void testPerformFiltering_usageRankingNormalized() throws Exception {
+        adapterDelegate = new BaseTypeAdapterDelegate<>(new ImmediateExecutor(), new Handler(Looper.getMainLooper()),
+                viewBinder, new NormalizedTokenFilter<>(new SimpleTokenFilter<>(), Locale.ENGLISH));
+        adapterDelegate.setUsageTracker(new UsageTracker(null));
+        adapterDelegate.setItems(Arrays.asList("Azure", "Z\u00FCrich", "Bern"));
+        pick("Azure", 3);
+
+        // the match quality folds the text like the filter: a prefix match ignoring accents still ranks above a more picked item
+        assertThat(adapterDelegate.performFiltering("zur", 0, null, results -> fail(), () -> false).getItems(),
+                IsIterableContainingInOrder.contains("Z\u00FCrich", "Azure"));
+    }
+
+    @Test
+    public void testPerformFiltering_topPicks() throws Exception {
+        adapterDelegate.setUsageTracker(new UsageTracker(null));
+        adapterDelegate.setItems(dataset);
+
+        // no picks yet: the whole data set
+        assertThat(filter(adapterDelegate, ""), is(dataset));
+        assertThat(adapterDelegate.performFiltering("", 0, null, results -> fail(), () -> false).getItems(), is(dataset));
+
+        pick("UnitedKingdom", 3);
+        pick("Italy", 2);
+        pick("Spain", 1);
+        pick("Atlantis", 4); // not in the data set
+        assertThat(filter(adapterDelegate, ""), IsIterableContainingInOrder.contains("UnitedKingdom", "Italy", "Spain"));
+        assertThat(adapterDelegate.performFiltering("", 0, null, results -> fail(), () -> false).getItems(),
+                IsIterableContainingInOrder.contains("UnitedKingdom", "Italy", "Spain"));
+
+        // items removed from the data set are not returned
+        adapterDelegate.setItems(Arrays.asList("Ireland", "Italy", "Spain"));
+        assertThat(filter(adapterDelegate, ""), IsIterableContainingInOrder.contains("Italy", "Spain"));
+    }
+
+    private static <M> List<M> filter(BaseTypeAdapterDelegate<M> delegate, CharSequence constraint) {
+        return delegate.performFiltering(constraint, 0, null, results -> fail(), () -> false).getItems();
+    }
+
+    private void pick(String item, int times) {
+        for (int i = 0; i < times; i++) {
+            adapterDelegate.onItemSelected(item);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    public void testGetStableId() throws Exception {
         when(viewBinder.getItemId(any())).thenReturn(-666L);
-        adapterDelegate.setFilteredItems(dataset);
 
-        assertThat(adapterDelegate.getCount(), is(dataset.size()));
+        for (String item : dataset) {
+            assertThat(adapterDelegate.getStableId(item), is(-666L));
+        }
+    }
+
+    @Test
+    public void testGetView_prewarmedViews() throws Exception {
+        when(viewBinder.getItemLayoutId()).thenReturn(android.R.layout.simple_list_item_1);
+        LayoutInflater inflater = LayoutInflater.from(RuntimeEnvironment.application);
+        FrameLayout parent = new FrameLayout(RuntimeEnvironment.application);
+        PreparedRows<String> preparedRows = PreparedRows.empty();
+
+        adapterDelegate.prewarmViews(inflater, parent, 2);
+        verify(viewBinder, times(2)).getViewHolder(any());
+
+        // the prewarmed views are used first, then the views are inflated
+        View first = adapterDelegate.getView(inflater, dataset.get(0), null, parent, null, preparedRows);
+        View second = adapterDelegate.getView(inflater, dataset.get(1), null, parent, null, preparedRows);
+        assertThat(first != second, is(true));
+        verify(viewBinder, times(2)).getViewHolder(any());
+        adapterDelegate.getView(inflater, dataset.get(2), null, parent, null, preparedRows);
+        verify(viewBinder, times(3)).getViewHolder(any());
+
+        // cleared views are discarded
+        adapterDelegate.prewarmViews(inflater, parent, 1);
+        adapterDelegate.clearPrewarmedViews();
+        adapterDelegate.getView(inflater, dataset.get(0), null, parent, null, preparedRows);
+        verify(viewBinder, times(5)).getViewHolder(any());
+    }
+
+    @Test
+    public void testPrepareRows() throws Exception {
+        adapterDelegate = new BaseTypeAdapterDelegate<>(new ImmediateExecutor(), new Handler(Looper.getMainLooper()),
+                viewBinder, new NormalizedTokenFilter<>(new SimpleTokenFilter<>(), Locale.ENGLISH)); // computes the match ranges
+        when(viewBinder.prepareText(any(), any(), any())).thenAnswer(invocation -> "prepared " + invocation.getArguments()[0]);
+        List<String> results = new ArrayList<>();
+        for (int i = 0; i < BaseTypeAdapterDelegate.MATCH_RANGES_COUNT + 1; i++) {
+            results.add(String.format(Locale.US, "Italy%03d", i));
+        }
+
+        PreparedRows<String> preparedRows = adapterDelegate.prepareRows("ital", results);
 
-        for (int i = 0; i < dataset.size(); i++) {
-            assertThat(adapterDelegate.getItem(i), is(dataset.get(i)));
-            assertThat(adapterDelegate.getItemId(i), is(-666L));
+        for (int i = 0; i < results.size(); i++) {
+            String item = results.get(i);
+            boolean hasRanges = i < BaseTypeAdapterDelegate.MATCH_RANGES_COUNT;
+            assertThat(preparedRows.getMatchRanges(item), is(hasRanges ? MatchRanges.of(0, 4) : null));
+            boolean hasText = i < BaseTypeAdapterDelegate.PREPARED_TEXTS_COUNT;
+            assertThat(preparedRows.getText(item), is(hasText ? "prepared " + item : null));
         }
+        verify(viewBinder, times(BaseTypeAdapterDelegate.PREPARED_TEXTS_COUNT)).prepareText(any(), eq("ital"), any());
+
+        // merged rows keep the prepared data of both passes, the newer taking precedence
+        PreparedRows<String> merged = preparedRows.mergeWith(adapterDelegate.prepareRows("italy0", results.subList(0, 1)));
+        assertThat(merged.getMatchRanges(results.get(0)), is(MatchRanges.of(0, 6)));
+        assertThat(merged.getText(results.get(1)), is("prepared " + results.get(1)));
     }
 
     @Test
     public void testPerformFiltering() throws Exception {
         adapterDelegate.setItems(dataset);
 
-        List<String> filtered = adapterDelegate.performFiltering("it");
+        List<String> filtered = filter(adapterDelegate, "it");
         assertThat(filtered, hasItems("Italy", "UnitedKingdom"));
     }
 
@@ -114,15 +553,48 @@ public class BaseTypeAdapterDelegateTest {
         OnTokensChangedListener mockListener = mock(OnTokensChangedListener.class);
         adapterDelegate.setOnTokensChangedListener(mockListener);
 
-        adapterDelegate.onTextChanged(" Spain");
+        View view = new View(RuntimeEnvironment.application);
+        adapterDelegate.onTextChanged(view, " Spain");
         ShadowLooper.runUiThreadTasks();
 
         verify(mockListener).onTokenAdded(eq("Spain"), eq("Spain"));
 
-        adapterDelegate.onTextChanged(" Spai");
+        adapterDelegate.onTextChanged(view, " Spai");
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockListener).onTokenRemoved(eq("Spain"), eq("Spain"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOnTextChanged_multipleViews() throws Exception {
+        adapterDelegate.setItems(dataset);
+
+        OnTokensChangedListener mockListener = mock(OnTokensChangedListener.class);
+        adapterDelegate.setOnTokensChangedListener(mockListener);
+        View view1 = new View(RuntimeEnvironment.application);
+        View view2 = new View(RuntimeEnvironment.application);
+        adapterDelegate.onTextChanged(view1, " Spain");
+        adapterDelegate.onTextChanged(view2, " Italy");
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockListener).onTokenAdded(eq("Spain"), eq("Spain"));
+        verify(mockListener).onTokenAdded(eq("Italy"), eq("Italy"));
+
+        // editing a view only diffs its own tokens
+        adapterDelegate.onTextChanged(view2, " Ireland");
+        ShadowLooper.runUiThreadTasks();
+
+        verify(mockListener).onTokenRemoved(eq("Italy"), eq("Italy"));
+        verify(mockListener, never()).onTokenRemoved(eq("Spain"), any());
+        verify(mockListener).onTokenAdded(eq("Ireland"), eq("Ireland"));
+
+        // the tokens of a detached view are not active anymore
+        adapterDelegate.onViewDetached(view1);
         ShadowLooper.runUiThreadTasks();
 
         verify(mockListener).onTokenRemoved(eq("Spain"), eq("Spain"));
+        verify(mockListener, never()).onTokenRemoved(eq("Ireland"), any());
     }
 
     @Test
@@ -132,7 +604,7 @@ public class BaseTypeAdapterDelegateTest {
 
         OnTokensChangedListener mockListener = mock(OnTokensChangedListener.class);
         adapterDelegate.setOnTokensChangedListener(mockListener);
-        adapterDelegate.onTextChanged(" Spain Ireland, Italy... UnitedKingdom Portugal");
+        adapterDelegate.onTextChanged(new View(RuntimeEnvironment.application), " Spain Ireland, Italy... UnitedKingdom Portugal");
 
         adapterDelegate.setItems(Arrays.asList("UnitedKingdom", "Spain", "Portugal"));
         ShadowLooper.runUiThreadTasks();
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class DawgTest {
+
+    @Test
+    public void indexOf_getKey() throws Exception {
+        List<String> keys = Arrays.asList("", "tap", "taps", "top", "tops", "zoo");
+        Dawg dawg = Dawg.build(keys);
+
+        assertThat(dawg.size(), is(6));
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(dawg.indexOf(keys.get(i)), is(i));
+            assertThat(dawg.getKey(i), is(keys.get(i)));
+        }
+        assertThat(dawg.indexOf("ta"), is(-1));
+        assertThat(dawg.indexOf("tapss"), is(-1));
+        assertThat(dawg.indexOf("a"), is(-1));
+    }
+
+    @Test
+    public void prefix() throws Exception {
+        Dawg dawg = Dawg.build(Arrays.asList("tap", "taps", "top", "tops", "zoo"));
+
+        assertThat(dawg.prefixStart("t"), is(0));
+        assertThat(dawg.prefixCount("t"), is(4));
+        assertThat(dawg.prefixStart("to"), is(2));
+        assertThat(dawg.prefixCount("to"), is(2));
+        assertThat(dawg.prefixStart("tops"), is(3));
+        assertThat(dawg.prefixCount("tops"), is(1));
+        assertThat(dawg.prefixStart(""), is(0));
+        assertThat(dawg.prefixCount(""), is(5));
+        assertThat(dawg.prefixStart("x"), is(-1));
+        assertThat(dawg.prefixCount("x"), is(0));
+    }
+
+    @Test
+    public void suffixesAreShared() throws Exception {
+        // "tap/taps/top/tops" only need the states: root, t, ta|to (merged), p, s
+        Dawg dawg = Dawg.build(Arrays.asList("tap", "taps", "top", "tops"));
+        assertThat(dawg.getStateCount(), is(5));
+    }
+
+    @Test
+    public void randomKeys() throws Exception {
+        Random random = new Random(42);
+        TreeSet<String> expected = new TreeSet<>();
+        for (int i = 0; i < 5000; i++) {
+            char[] chars = new char[1 + random.nextInt(8)];
+            for (int c = 0; c < chars.length; c++) {
+                chars[c] = (char) ('a' + random.nextInt(5));
+            }
+            expected.add(new String(chars));
+        }
+        List<String> keys = new ArrayList<>(expected);
+        Dawg dawg = Dawg.build(keys);
+
+        assertThat(dawg.size(), is(keys.size()));
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(dawg.indexOf(keys.get(i)), is(i));
+            assertThat(dawg.getKey(i), is(keys.get(i)));
+        }
+        for (String prefix : Arrays.asList("a", "ab", "cde", "eeee")) {
+            List<String> matching = new ArrayList<>(expected.subSet(prefix, prefix + Character.MAX_VALUE));
+            assertThat(dawg.prefixCount(prefix), is(matching.size()));
+            assertThat(dawg.prefixStart(prefix), is(matching.isEmpty() ? -1 : keys.indexOf(matching.get(0))));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void build_unsorted() throws Exception {
+        Dawg.build(Arrays.asList("b", "a"));
+    }
+
+    @Test
+    public void build_empty() throws Exception {
+        Dawg dawg = Dawg.build(Collections.emptyList());
+        assertThat(dawg.size(), is(0));
+        assertThat(dawg.indexOf(""), is(-1));
+        assertThat(dawg.prefixCount(""), is(0));
+    }
+
+}
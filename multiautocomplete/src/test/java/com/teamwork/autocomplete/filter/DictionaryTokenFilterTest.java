@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.filter;
+
+import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class DictionaryTokenFilterTest {
+
+    private List<String> dataset;
+
+    @Before
+    public void setUp() throws Exception {
+        dataset = Arrays.asList("Zurich", "Jos\u00e9", "Jose", "Joanna", "Mary", "John", "Z\u00fcrich");
+    }
+
+    @Test
+    public void performFiltering_index() throws Exception {
+        DictionaryTokenFilter<String> filter = new DictionaryTokenFilter<>(new SimpleTokenFilter<>());
+        DictionaryTokenFilter.Index<String> index = filter.buildIndex(dataset);
+
+        // alphabetical order, items with the same folded text in data set order
+        assertThat(filter.performFiltering("jo", index), IsIterableContainingInOrder.contains("Joanna", "John", "Jos\u00e9", "Jose"));
+        assertThat(filter.performFiltering("Z\u00dc", index), IsIterableContainingInOrder.contains("Zurich", "Z\u00fcrich"));
+        assertThat(filter.performFiltering("mary", index), IsIterableContainingInOrder.contains("Mary"));
+        assertThat(filter.performFiltering("", index).size(), is(dataset.size()));
+        assertThat(filter.performFiltering("rich", index).isEmpty(), is(true));
+        assertThat(filter.performFiltering("maryx", index).isEmpty(), is(true));
+    }
+
+    @Test
+    public void getMatchRanges() throws Exception {
+        DictionaryTokenFilter<String> filter = new DictionaryTokenFilter<>(new SimpleTokenFilter<>());
+
+        assertThat(filter.getMatchRanges("zu", "Z\u00fcrich"), is(MatchRanges.of(0, 2)));
+        assertThat(filter.getMatchRanges("", "Mary"), is(MatchRanges.empty()));
+        // folding changes the text length
+        assertThat(filter.getMatchRanges("stras", "Stra\u00dfe"), nullValue());
+    }
+
+    @Test
+    public void performFiltering_scan() throws Exception {
+        DictionaryTokenFilter<String> filter = new DictionaryTokenFilter<>(new SimpleTokenFilter<>());
+
+        assertThat(filter.performFiltering("jos", dataset), IsIterableContainingInOrder.contains("Jos\u00e9", "Jose"));
+        assertThat(filter.performFiltering("rich", dataset).isEmpty(), is(true));
+    }
+
+}
@@ -0,0 +1,52 @@
+package com.teamwork.autocomplete.filter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class HandleTokenFilterTest {
+
+    @Test
+    public void charHandle() throws Exception {
+        HandleTokenFilter<String> filter = new HandleTokenFilter<>('@');
+
+        assertThat(filter.supportsToken("@jo"), is(true));
+        assertThat(filter.supportsToken("jo"), is(false));
+        assertThat(filter.stripHandle("@jo").toString(), is("jo"));
+        assertThat(filter.toTokenString("john").toString(), is("@john"));
+    }
+
+    @Test
+    public void multiCharHandle() throws Exception {
+        HandleTokenFilter<String> filter = new HandleTokenFilter<>("+:");
+
+        // a token started by a prefix of the handle only is not supported
+        assertThat(filter.supportsToken("+:jo"), is(true));
+        assertThat(filter.supportsToken("+jo"), is(false));
+        assertThat(filter.supportsToken("+"), is(false));
+        assertThat(filter.stripHandle("+:jo").toString(), is("jo"));
+        assertThat(filter.stripHandle("+jo").toString(), is("+jo"));
+        assertThat(filter.toTokenString("john").toString(), is("+:john"));
+    }
+
+    @Test
+    public void getMatchRanges() throws Exception {
+        HandleTokenFilter<String> filter = new HandleTokenFilter<>('@');
+
+        // the ranges of the contains match are computed with the results, not searched again when binding the rows
+        assertThat(filter.getMatchRanges("JO", "Mary Johnson"), is(MatchRanges.of(5, 7)));
+        assertThat(filter.getMatchRanges("", "Mary Johnson"), is(MatchRanges.empty()));
+        assertThat(filter.getMatchRanges("xyz", "Mary Johnson"), nullValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyHandle() throws Exception {
+        new HandleTokenFilter<String>("");
+    }
+
+}
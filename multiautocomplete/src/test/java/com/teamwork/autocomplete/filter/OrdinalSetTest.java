@@ -0,0 +1,78 @@
+package com.teamwork.autocomplete.filter;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class OrdinalSetTest {
+
+    @Test
+    public void of() throws Exception {
+        assertThat(OrdinalSet.of().isEmpty(), is(true));
+        assertThat(OrdinalSet.of(5, 1, 5, 70000, 3).toArray(), is(new int[]{1, 3, 5, 70000}));
+        assertThat(OrdinalSet.of(5, 1, 5, 70000, 3).cardinality(), is(4));
+        assertThat(OrdinalSet.of(5, 70000).contains(70000), is(true));
+        assertThat(OrdinalSet.of(5, 70000).contains(4465), is(false));
+    }
+
+    @Test
+    public void and_or_andNot() throws Exception {
+        assertThat(OrdinalSet.of().and(OrdinalSet.of(1, 2)), is(OrdinalSet.empty()));
+        assertThat(OrdinalSet.of(3, 9, 40).and(OrdinalSet.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 40)).toArray(), is(new int[]{3, 9, 40}));
+        assertThat(OrdinalSet.of(0, 2, 4, 6, 8).and(OrdinalSet.of(1, 2, 3, 8, 9)).toArray(), is(new int[]{2, 8}));
+        assertThat(OrdinalSet.of(0, 2, 70000).or(OrdinalSet.of(1, 2, 140000)).toArray(), is(new int[]{0, 1, 2, 70000, 140000}));
+        assertThat(OrdinalSet.of(0, 2, 70000).andNot(OrdinalSet.of(1, 2, 70000)).toArray(), is(new int[]{0}));
+    }
+
+    @Test
+    public void denseAndSparseContainers() throws Exception {
+        // compare with a reference implementation on sets mixing bitmap and array containers
+        Random random = new Random(42);
+        TreeSet<Integer> expected1 = new TreeSet<>();
+        TreeSet<Integer> expected2 = new TreeSet<>();
+        int[] ordinals1 = new int[20000];
+        int[] ordinals2 = new int[3000];
+        for (int i = 0; i < ordinals1.length; i++) {
+            ordinals1[i] = random.nextInt(1 << 17); // dense: bitmap containers
+            expected1.add(ordinals1[i]);
+        }
+        for (int i = 0; i < ordinals2.length; i++) {
+            ordinals2[i] = random.nextInt(1 << 18); // sparse: array containers
+            expected2.add(ordinals2[i]);
+        }
+        OrdinalSet set1 = OrdinalSet.of(ordinals1);
+        OrdinalSet set2 = OrdinalSet.of(ordinals2);
+        assertThat(set1.cardinality(), is(expected1.size()));
+
+        TreeSet<Integer> and = new TreeSet<>(expected1);
+        and.retainAll(expected2);
+        TreeSet<Integer> or = new TreeSet<>(expected1);
+        or.addAll(expected2);
+        TreeSet<Integer> andNot = new TreeSet<>(expected1);
+        andNot.removeAll(expected2);
+
+        assertThat(set1.and(set2).toArray(), is(toArray(and)));
+        assertThat(set2.and(set1).toArray(), is(toArray(and)));
+        assertThat(set1.or(set2).toArray(), is(toArray(or)));
+        assertThat(set1.andNot(set2).toArray(), is(toArray(andNot)));
+        assertThat(set1.andNot(set1).isEmpty(), is(true));
+        assertThat(set1.and(set1).cardinality(), is(expected1.size()));
+    }
+
+    private static int[] toArray(TreeSet<Integer> set) {
+        int[] array = new int[set.size()];
+        int i = 0;
+        for (int value : set) {
+            array[i++] = value;
+        }
+        return array;
+    }
+
+}
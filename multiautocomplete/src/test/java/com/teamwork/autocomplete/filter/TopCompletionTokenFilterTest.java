@@ -0,0 +1,56 @@
+package com.teamwork.autocomplete.filter;
+
+import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class TopCompletionTokenFilterTest {
+
+    private List<String> dataset;
+    private Map<String, Double> scores;
+
+    @Before
+    public void setUp() throws Exception {
+        dataset = Arrays.asList("John Smith", "Joanna Doe", "Mary Jones", "Joe Bloggs", "Jack Black", "Tom Jordan");
+        scores = new HashMap<>();
+        scores.put("John Smith", 3.0);
+        scores.put("Joanna Doe", 5.0);
+        scores.put("Mary Jones", 1.0);
+        scores.put("Joe Bloggs", 5.0);
+        scores.put("Jack Black", 10.0);
+        scores.put("Tom Jordan", 4.0);
+    }
+
+    @Test
+    public void performFiltering_index() throws Exception {
+        TopCompletionTokenFilter<String> filter = new TopCompletionTokenFilter<>(new SimpleTokenFilter<>(), 3, scores::get);
+        TopCompletionTokenFilter.Index<String> index = filter.buildIndex(dataset);
+
+        // ties are sorted in data set order
+        assertThat(filter.performFiltering("jo", index), IsIterableContainingInOrder.contains("Joanna Doe", "Joe Bloggs", "Tom Jordan"));
+        assertThat(filter.performFiltering("j", index), IsIterableContainingInOrder.contains("Jack Black", "Joanna Doe", "Joe Bloggs"));
+        assertThat(filter.performFiltering("", index), IsIterableContainingInOrder.contains("Jack Black", "Joanna Doe", "Joe Bloggs"));
+        assertThat(filter.performFiltering("smi", index), IsIterableContainingInOrder.contains("John Smith"));
+        assertThat(filter.performFiltering("mit", index).isEmpty(), is(true));
+    }
+
+    @Test
+    public void performFiltering_scan() throws Exception {
+        TopCompletionTokenFilter<String> filter = new TopCompletionTokenFilter<>(new SimpleTokenFilter<>(), 3, scores::get);
+
+        assertThat(filter.performFiltering("jo", dataset), IsIterableContainingInOrder.contains("Joanna Doe", "Joe Bloggs", "Tom Jordan"));
+        assertThat(filter.performFiltering("j", dataset), IsIterableContainingInOrder.contains("Jack Black", "Joanna Doe", "Joe Bloggs"));
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.teamwork.autocomplete.filter;
+
+import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class WordPrefixTokenFilterTest {
+
+    private List<String> dataset;
+
+    @Before
+    public void setUp() throws Exception {
+        dataset = Arrays.asList("Mary Jane Watson", "Watson Smith", "Jim Kwatson", "Marco Jones Hale");
+    }
+
+    @Test
+    public void performFiltering_index() throws Exception {
+        WordPrefixTokenFilter<String> filter = new WordPrefixTokenFilter<>(new SimpleTokenFilter<>(), false);
+        WordPrefixTokenFilter.Index<String> index = filter.buildIndex(dataset);
+
+        // first word matches rank above other words, mid-word matches are ignored
+        assertThat(filter.performFiltering("wat", index), IsIterableContainingInOrder.contains("Watson Smith", "Mary Jane Watson"));
+        // acronyms
+        assertThat(filter.performFiltering("mjw", index), IsIterableContainingInOrder.contains("Mary Jane Watson"));
+        assertThat(filter.performFiltering("MJ", index), IsIterableContainingInOrder.contains("Mary Jane Watson", "Marco Jones Hale"));
+        // word prefix before acronym
+        assertThat(filter.performFiltering("j", index),
+                IsIterableContainingInOrder.contains("Jim Kwatson", "Mary Jane Watson", "Marco Jones Hale"));
+        assertThat(filter.performFiltering("xyz", index).isEmpty(), is(true));
+    }
+
+    @Test
+    public void getMatchRanges() throws Exception {
+        WordPrefixTokenFilter<String> filter = new WordPrefixTokenFilter<>(new SimpleTokenFilter<>(), true);
+
+        assertThat(filter.getMatchRanges("wat", "Mary Jane Watson"), is(MatchRanges.of(10, 13)));
+        assertThat(filter.getMatchRanges("ja wat", "Mary Jane Watson"), is(MatchRanges.of(new int[]{5, 7, 10, 13})));
+        assertThat(filter.getMatchRanges("m m", "Marco Mary"), is(MatchRanges.of(new int[]{0, 1, 6, 7})));
+        assertThat(filter.getMatchRanges("mjw", "Mary Jane Watson"), is(MatchRanges.of(new int[]{0, 1, 5, 6, 10, 11})));
+        assertThat(filter.getMatchRanges("wat", "Jim Kwatson"), is(MatchRanges.of(5, 8)));
+        assertThat(filter.getMatchRanges("jose", "Jos\u00e9 Smith"), is(MatchRanges.of(0, 4)));
+        assertThat(filter.getMatchRanges("", "Jim Kwatson"), is(MatchRanges.empty()));
+        assertThat(filter.getMatchRanges("xyz", "Jim Kwatson"), nullValue());
+    }
+
+    @Test
+    public void performFiltering_midWord() throws Exception {
+        WordPrefixTokenFilter<String> filter = new WordPrefixTokenFilter<>(new SimpleTokenFilter<>(), true);
+        WordPrefixTokenFilter.Index<String> index = filter.buildIndex(dataset);
+
+        assertThat(filter.performFiltering("wat", index),
+                IsIterableContainingInOrder.contains("Watson Smith", "Mary Jane Watson", "Jim Kwatson"));
+    }
+
+    @Test
+    public void performFiltering_multiTerm() throws Exception {
+        WordPrefixTokenFilter<String> filter = new WordPrefixTokenFilter<>(new SimpleTokenFilter<>(), false);
+        WordPrefixTokenFilter.Index<String> index = filter.buildIndex(dataset);
+
+        assertThat(filter.performFiltering("wat ma", index), IsIterableContainingInOrder.contains("Mary Jane Watson"));
+        assertThat(filter.performFiltering("ma j", index), IsIterableContainingInOrder.contains("Mary Jane Watson", "Marco Jones Hale"));
+        assertThat(filter.performFiltering("jim wat", index).isEmpty(), is(true));
+        assertThat(filter.performFiltering("ma j", dataset), IsIterableContainingInOrder.contains("Mary Jane Watson", "Marco Jones Hale"));
+    }
+
+    @Test
+    public void performFiltering_scan() throws Exception {
+        WordPrefixTokenFilter<String> filter = new WordPrefixTokenFilter<>(new SimpleTokenFilter<>(), false);
+
+        // the fallback scan matches the same items, in data set order
+        assertThat(filter.performFiltering("wat", dataset), IsIterableContainingInOrder.contains("Mary Jane Watson", "Watson Smith"));
+        assertThat(filter.performFiltering("mjw", dataset), IsIterableContainingInOrder.contains("Mary Jane Watson"));
+    }
+
+}
@@ -0,0 +1,39 @@
+package com.teamwork.autocomplete.test_util;
+
+import android.view.View;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.teamwork.autocomplete.view.AutoCompleteViewBinder;
+import com.teamwork.autocomplete.view.AutoCompleteViewHolder;
+
+public class TextViewBinder implements AutoCompleteViewBinder<String> {
+
+    @Override public long getItemId(@NonNull String item) {
+        return item.hashCode();
+    }
+
+    @Override public int getItemLayoutId() {
+        return android.R.layout.simple_list_item_1;
+    }
+
+    @Override public @NonNull AutoCompleteViewHolder getViewHolder(@NonNull View view) {
+        return new TextViewHolder(view);
+    }
+
+    @Override public void bindData(@NonNull AutoCompleteViewHolder viewHolder, @NonNull String item, @Nullable CharSequence constraint) {
+        ((TextViewHolder) viewHolder).textView.setText(item);
+    }
+
+    private static class TextViewHolder extends AutoCompleteViewHolder {
+        final TextView textView;
+
+        TextViewHolder(@NonNull View view) {
+            super(view);
+            textView = (TextView) view;
+        }
+    }
+
+}
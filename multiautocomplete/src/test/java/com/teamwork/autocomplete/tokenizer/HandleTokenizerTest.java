@@ -0,0 +1,110 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.tokenizer;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class HandleTokenizerTest {
+
+    private HandleTokenizer tokenizer;
+
+    @Before
+    public void setUp() throws Exception {
+        tokenizer = new HandleTokenizer.Builder()
+                .handles("@", "#", "+:", "+")
+                .separators(CharClass.WHITESPACE)
+                .build();
+    }
+
+    @Test
+    public void charClass() throws Exception {
+        CharClass charClass = CharClass.of('a', '\u00e9', ' ', '\u2003', 'a');
+
+        assertThat(charClass.contains('a'), is(true));
+        assertThat(charClass.contains('\u00e9'), is(true));
+        assertThat(charClass.contains('\u2003'), is(true));
+        assertThat(charClass.contains(' '), is(true));
+        assertThat(charClass.contains('b'), is(false));
+        assertThat(charClass.contains('\u00e8'), is(false));
+        assertThat(charClass.union(CharClass.of("b")), is(CharClass.of("ab \u00e9\u2003")));
+
+        assertThat(CharClass.WHITESPACE.contains(' '), is(true));
+        assertThat(CharClass.WHITESPACE.contains('\t'), is(true));
+        assertThat(CharClass.WHITESPACE.contains('\u00a0'), is(true)); // non-breaking space
+        assertThat(CharClass.WHITESPACE.contains('\u3000'), is(true)); // ideographic space
+        assertThat(CharClass.WHITESPACE.contains('x'), is(false));
+    }
+
+    @Test
+    public void findTokenStart() throws Exception {
+        assertThat(tokenizer.findTokenStart("", 0), is(0)); // empty string
+
+        assertThat(tokenizer.findTokenStart("@te", 3), is(0)); // match - first char
+        assertThat(tokenizer.findTokenStart(" #te", 4), is(1)); // match - space first
+        assertThat(tokenizer.findTokenStart("a\t+:te", 6), is(2)); // match - multi char handle, tab first
+        assertThat(tokenizer.findTokenStart("a\u3000@te", 5), is(2)); // match - unicode whitespace first
+        assertThat(tokenizer.findTokenStart(" @te @tests", 11), is(5)); // match - second handle
+
+        assertThat(tokenizer.findTokenStart("test@s", 6), is(6)); // no match - handle after text
+        assertThat(tokenizer.findTokenStart(" :te", 4), is(4)); // no match - not a handle
+        assertThat(tokenizer.findTokenStart(" @", 1), is(1)); // no match - handle after the cursor
+    }
+
+    @Test
+    public void findTokenStart_bounded() throws Exception {
+        HandleTokenizer bounded = new HandleTokenizer.Builder().handles("@").maxTokenLength(4).build();
+
+        assertThat(bounded.findTokenStart(" @tes", 5), is(1));
+        assertThat(bounded.findTokenStart(" @test", 6), is(6)); // no match - token too long
+    }
+
+    @Test
+    public void findTokenEnd() throws Exception {
+        assertThat(tokenizer.findTokenEnd("", 0), is(0)); // empty string
+
+        assertThat(tokenizer.findTokenEnd("@te", 0), is(3)); // end of the string
+        assertThat(tokenizer.findTokenEnd("@te @tests", 0), is(3)); // space after
+        assertThat(tokenizer.findTokenEnd("@te\u2003@tests", 4), is(10)); // second handle
+        assertThat(tokenizer.findTokenEnd("+:te\ttest", 0), is(4)); // tab after
+    }
+
+    @Test
+    public void terminateToken() throws Exception {
+        assertThat(tokenizer.terminateToken(""), is("")); // empty string stays same
+        assertThat(tokenizer.terminateToken("test\u00a0"), is("test\u00a0")); // already terminated
+        assertThat(tokenizer.terminateToken("test"), is("test ")); // add terminator
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void build_noHandles() throws Exception {
+        new HandleTokenizer.Builder().build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void build_terminatorNotSeparator() throws Exception {
+        new HandleTokenizer.Builder().handles("@").terminator(',').build();
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.teamwork.autocomplete.tokenizer;
 
+import android.text.SpannableStringBuilder;
 import android.widget.MultiAutoCompleteTextView;
 
 import org.hamcrest.MatcherAssert;
@@ -9,8 +10,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.util.Random;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 
 @RunWith(RobolectricTestRunner.class)
 public class PrefixTokenizerTest {
@@ -72,6 +76,71 @@ public class PrefixTokenizerTest {
         assertThat(tokenizer.findTokenEnd("test@\ns:", 0), is(4)); // no match - new line
     }
 
+    @Test
+    public void findTokenStart_bounded() throws Exception {
+        PrefixTokenizer bounded = new PrefixTokenizer(new char[]{'@', ':'}, 4);
+
+        assertThat(bounded.findTokenStart(" @te", 4), is(1)); // match - within the token length
+        assertThat(bounded.findTokenStart(" @tes", 5), is(1));
+        assertThat(bounded.findTokenStart(" @test", 6), is(6)); // no match - token too long
+        assertThat(bounded.findTokenStart(" @te @tests", 11), is(11));
+        assertThat(bounded.findTokenStart(" @te @tes", 9), is(5));
+    }
+
+    @Test
+    public void findTokenEnd_bounded() throws Exception {
+        PrefixTokenizer bounded = new PrefixTokenizer(new char[]{'@', ':'}, 4);
+
+        assertThat(bounded.findTokenEnd("@te ", 0), is(2)); // match - space after
+        assertThat(bounded.findTokenEnd("@tes", 0), is(4)); // match - end of the string
+        assertThat(bounded.findTokenEnd("@tests @te", 0), is(4)); // token too long - stops at the token length
+        assertThat(bounded.findTokenEnd("@tests @te ", 7), is(9));
+    }
+
+    @Test
+    public void separatorIndex() throws Exception {
+        SpannableStringBuilder text = new SpannableStringBuilder("a b\nc");
+        SeparatorIndex index = SeparatorIndex.get(text, ' ');
+        assertArrayEquals(new int[]{1, 3}, index.toArray());
+
+        text.insert(0, "x y ");
+        assertArrayEquals(new int[]{1, 3, 5, 7}, index.toArray());
+        text.replace(2, 6, "zz"); // "x zzb\nc"
+        assertArrayEquals(new int[]{1, 5}, index.toArray());
+        text.delete(0, text.length());
+        assertArrayEquals(new int[0], index.toArray());
+
+        // the index is attached to the text and survives while it's edited
+        text.append("@a b");
+        assertThat(SeparatorIndex.get(text, ' '), is(index));
+        // but it's not copied along with the text
+        assertThat(SeparatorIndex.get(new SpannableStringBuilder(text), ' ') == index, is(false));
+    }
+
+    @Test
+    public void findTokenStartEnd_indexed() throws Exception {
+        // the indexed lookups of an edited text match the scans of the same (non editable) text
+        PrefixTokenizer bounded = new PrefixTokenizer(new char[]{'@', ':'}, 6);
+        String alphabet = "ab @:\n";
+        Random random = new Random(42);
+        SpannableStringBuilder text = new SpannableStringBuilder();
+        for (int edit = 0; edit < 500; edit++) {
+            int start = random.nextInt(text.length() + 1);
+            int end = Math.min(text.length(), start + random.nextInt(3));
+            StringBuilder inserted = new StringBuilder();
+            for (int i = random.nextInt(4); i > 0; i--) {
+                inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            text.replace(start, end, inserted);
+
+            String string = text.toString();
+            for (int cursor = 0; cursor <= text.length(); cursor++) {
+                assertThat(bounded.findTokenStart(text, cursor), is(bounded.findTokenStart(string, cursor)));
+                assertThat(bounded.findTokenEnd(text, cursor), is(bounded.findTokenEnd(string, cursor)));
+            }
+        }
+    }
+
     @Test
     public void terminateToken() throws Exception {
         MatcherAssert.assertThat(tokenizer.terminateToken(""), is("")); // empty string stays same
@@ -26,4 +26,19 @@ public class AutoCompleteUtilsTest {
         assertThat(AutoCompleteUtils.stripPrefixHandle('@', "@handle"), is("handle"));
     }
 
+    @Test
+    public void hasHandle_multiChar() throws Exception {
+        assertThat(AutoCompleteUtils.hasPrefixHandle("+:", ""), is(false));
+        assertThat(AutoCompleteUtils.hasPrefixHandle("+:", "+"), is(false));
+        assertThat(AutoCompleteUtils.hasPrefixHandle("+:", "+handle"), is(false));
+        assertThat(AutoCompleteUtils.hasPrefixHandle("+:", "+:handle"), is(true));
+    }
+
+    @Test
+    public void stripHandle_multiChar() throws Exception {
+        assertThat(AutoCompleteUtils.stripPrefixHandle("+:", ""), is(""));
+        assertThat(AutoCompleteUtils.stripPrefixHandle("+:", "+handle"), is("+handle"));
+        assertThat(AutoCompleteUtils.stripPrefixHandle("+:", "+:handle"), is("handle"));
+    }
+
 }
\ No newline at end of file
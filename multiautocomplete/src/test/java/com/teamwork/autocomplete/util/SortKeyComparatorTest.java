@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class SortKeyComparatorTest {
+
+    /* sorts by position of the constraint in the item, then items not containing it */
+    private static class PositionComparator extends SortKeyComparator<String> {
+        int keyCount;
+
+        @Override
+        public int getSortKey(@Nullable CharSequence constraint, @NonNull String item) {
+            keyCount++;
+            int position = constraint != null ? item.indexOf(constraint.toString()) : 0;
+            return position >= 0 ? position : Integer.MAX_VALUE;
+        }
+    }
+
+    @Test
+    public void sort() throws Exception {
+        PositionComparator comparator = new PositionComparator();
+        List<String> items = new ArrayList<>(Arrays.asList("xxab", "ab", "zz", "xab", "cab", "yy", "abc"));
+        comparator.setConstraint("ab");
+        comparator.sort(items);
+
+        // stable for items with the same key
+        assertThat(items, IsIterableContainingInOrder.contains("ab", "abc", "xab", "cab", "xxab", "zz", "yy"));
+        assertThat(comparator.keyCount, is(items.size()));
+    }
+
+    @Test
+    public void sort_negativeKeys() throws Exception {
+        SortKeyComparator<Integer> comparator = new SortKeyComparator<Integer>() {
+            @Override
+            public int getSortKey(@Nullable CharSequence constraint, @NonNull Integer item) {
+                return item;
+            }
+        };
+        List<Integer> items = new ArrayList<>(Arrays.asList(3, Integer.MIN_VALUE, -1, Integer.MAX_VALUE, 0, -1));
+        comparator.sort(items);
+        assertThat(items, IsIterableContainingInOrder.contains(Integer.MIN_VALUE, -1, -1, 0, 3, Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void sortedOrder_longKeys() throws Exception {
+        long[] keys = {Long.MAX_VALUE, 3L << 40, Long.MIN_VALUE, (3L << 40) + 1, 3L << 40};
+        assertThat(SortKeyComparator.sortedOrder(keys), is(new int[]{2, 1, 4, 3, 0}));
+    }
+
+    @Test
+    public void compare() throws Exception {
+        PositionComparator comparator = new PositionComparator();
+        comparator.setConstraint("ab");
+        assertThat(comparator.compare("ab", "xab") < 0, is(true));
+        assertThat(comparator.compare("zz", "xab") > 0, is(true));
+        assertThat(comparator.compare("cab", "xab"), is(0));
+    }
+
+}
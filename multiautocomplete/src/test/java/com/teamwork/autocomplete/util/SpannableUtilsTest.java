@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+
+import com.teamwork.autocomplete.filter.MatchRanges;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class SpannableUtilsTest {
+
+    @Test
+    public void setBoldSubText() throws Exception {
+        Spanned text = SpannableUtils.setBoldSubText("Mary Jane", "JA");
+        StyleSpan[] spans = text.getSpans(0, text.length(), StyleSpan.class);
+        assertThat(spans.length, is(1));
+        assertThat(text.getSpanStart(spans[0]), is(5));
+        assertThat(text.getSpanEnd(spans[0]), is(7));
+    }
+
+    @Test
+    public void setBoldRanges_reusesSpans() throws Exception {
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        List<StyleSpan> spanPool = new ArrayList<>();
+
+        Spanned text = SpannableUtils.setBoldRanges(builder, "Mary Jane Watson", MatchRanges.of(new int[]{0, 1, 5, 6, 10, 11}), spanPool);
+        assertThat(text.toString(), is("Mary Jane Watson"));
+        assertThat(text.getSpans(0, text.length(), StyleSpan.class).length, is(3));
+        assertThat(spanPool.size(), is(3));
+        assertThat(spanPool.get(0).getStyle(), is(Typeface.BOLD));
+
+        // the same builder and spans are reused, ranges beyond the text are clipped
+        StyleSpan firstSpan = spanPool.get(0);
+        text = SpannableUtils.setBoldRanges(builder, "Joe", MatchRanges.of(1, 10), spanPool);
+        assertThat(text, sameInstance((Spanned) builder));
+        assertThat(text.toString(), is("Joe"));
+        StyleSpan[] spans = text.getSpans(0, text.length(), StyleSpan.class);
+        assertThat(spans.length, is(1));
+        assertThat(spans[0], sameInstance(firstSpan));
+        assertThat(text.getSpanStart(spans[0]), is(1));
+        assertThat(text.getSpanEnd(spans[0]), is(3));
+        assertThat(spanPool.size(), is(3));
+    }
+
+}
@@ -0,0 +1,38 @@
+package com.teamwork.autocomplete.util;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Locale;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class TextNormalizerTest {
+
+    @Test
+    public void fold() throws Exception {
+        assertThat(TextNormalizer.fold(""), is(""));
+        assertThat(TextNormalizer.fold("Plain ASCII"), is("plain ascii"));
+        assertThat(TextNormalizer.fold("Z\u00FCrich"), is("zurich"));
+        assertThat(TextNormalizer.fold("Jos\u00E9"), is("jose"));
+        assertThat(TextNormalizer.fold("Stra\u00DFe"), is("strasse"));
+        assertThat(TextNormalizer.fold("\u0130stanbul"), is("istanbul"));
+        assertThat(TextNormalizer.fold("D\u0131YARBAKIR"), is("diyarbakir"));
+    }
+
+    @Test
+    public void fold_localeIndependent() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        try {
+            Locale.setDefault(new Locale("tr", "TR"));
+            assertThat(TextNormalizer.fold("IRELAND"), is("ireland"));
+            assertThat(TextNormalizer.fold("\u00C7ANKIRI"), is("cankiri"));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+}
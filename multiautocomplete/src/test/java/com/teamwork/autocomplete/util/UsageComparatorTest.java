@@ -0,0 +1,81 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import com.teamwork.autocomplete.filter.RankedList;
+import com.teamwork.autocomplete.filter.SimpleTokenFilter;
+import com.teamwork.autocomplete.filter.TokenFilter;
+import com.teamwork.autocomplete.test_util.ImmediateExecutor;
+
+import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+public class UsageComparatorTest {
+
+    private static final long HALF_LIFE = 1000;
+
+    @Test
+    public void sort_rankedListTiers() throws Exception {
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), null, HALF_LIFE, 0);
+        tracker.recordSelection("Italy", 0);
+        tracker.recordSelection("Ireland", 0);
+        tracker.recordSelection("Ireland", 0);
+        TokenFilter<String> tokenFilter = spy(new SimpleTokenFilter<>());
+        UsageComparator<String> comparator = new UsageComparator<>(tracker, tokenFilter);
+
+        RankedList<String> items = new RankedList<>();
+        items.add("Spain");
+        items.add("Italy");
+        items.endTier();
+        items.add("Ireland");
+        comparator.setConstraint("i");
+        comparator.sort(items);
+
+        // the tiers of the filter are the match quality: picks reorder the items within their tier only
+        assertThat(items, IsIterableContainingInOrder.contains("Italy", "Spain", "Ireland"));
+        verify(tokenFilter, never()).getMatchRanges(any(), any());
+    }
+
+    @Test
+    public void sort_closeWeights() throws Exception {
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), null, 1000000000000L, 0);
+        tracker.recordSelection("a", 0);
+        tracker.recordSelection("b", 1000);
+        // the weights are too close to tell apart as floats
+        assertThat((float) tracker.getWeight("a") == (float) tracker.getWeight("b"), is(true));
+
+        UsageComparator<String> comparator = new UsageComparator<>(tracker, new SimpleTokenFilter<>());
+        List<String> items = new ArrayList<>(Arrays.asList("a", "b"));
+        comparator.sort(items);
+        assertThat(items, IsIterableContainingInOrder.contains("b", "a"));
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.util;
+
+import com.teamwork.autocomplete.test_util.ImmediateExecutor;
+
+import org.hamcrest.collection.IsIterableContainingInOrder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class UsageTrackerTest {
+
+    private static final long HALF_LIFE = 1000;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void recordSelection_decay() throws Exception {
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), null, HALF_LIFE, 0);
+        assertThat(tracker.isEmpty(), is(true));
+
+        tracker.recordSelection("a", 0);
+        tracker.recordSelection("a", 0);
+        assertEquals(2, tracker.getScore("a", 0), 1e-9);
+        assertEquals(1, tracker.getScore("a", HALF_LIFE), 1e-9);
+        assertThat(tracker.getScore("b", HALF_LIFE), is(0.0));
+
+        // a recent pick outranks older ones once they have decayed enough
+        tracker.recordSelection("b", 2 * HALF_LIFE);
+        assertThat(tracker.getWeight("b") > tracker.getWeight("a"), is(true));
+        assertEquals(0.5, tracker.getScore("a", 2 * HALF_LIFE), 1e-9);
+        assertThat(tracker.isEmpty(), is(false));
+    }
+
+    @Test
+    public void recordSelection_rebase() throws Exception {
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), null, HALF_LIFE, 0);
+        tracker.recordSelection("a", 0);
+        long later = 100 * HALF_LIFE;
+        tracker.recordSelection("b", later);
+
+        assertEquals(1, tracker.getScore("b", later), 1e-9);
+        assertThat(tracker.getScore("a", later) < 1e-20, is(true));
+    }
+
+    @Test
+    public void getTopKeys() throws Exception {
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), null, HALF_LIFE, 0);
+        assertThat(tracker.getTopKeys(3).isEmpty(), is(true));
+
+        for (int i = 1; i <= 5; i++) {
+            for (int j = 0; j < i; j++) {
+                tracker.recordSelection("key" + i, 0);
+            }
+        }
+        assertThat(tracker.getTopKeys(3), IsIterableContainingInOrder.contains("key5", "key4", "key3"));
+        assertThat(tracker.getTopKeys(1), IsIterableContainingInOrder.contains("key5"));
+        assertThat(tracker.getTopKeys(10).size(), is(5));
+
+        // a pick updates the top keys
+        tracker.recordSelection("key1", 4 * HALF_LIFE);
+        assertThat(tracker.getTopKeys(2), IsIterableContainingInOrder.contains("key1", "key5"));
+    }
+
+    @Test
+    public void getVersion() throws Exception {
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), null, HALF_LIFE, 0);
+        long version = tracker.getVersion();
+        tracker.recordSelection("a", 0);
+        assertThat(tracker.getVersion() != version, is(true));
+    }
+
+    @Test
+    public void persistence() throws Exception {
+        File logFile = new File(temporaryFolder.getRoot(), "usage.log");
+        long now = System.currentTimeMillis();
+        long halfLife = 1000000;
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), logFile, halfLife, now);
+        tracker.recordSelection("a", now);
+        tracker.recordSelection("b", now);
+        tracker.recordSelection("b", now);
+
+        UsageTracker restored = new UsageTracker(new ImmediateExecutor(), logFile, halfLife, now);
+        assertEquals(1, restored.getScore("a", now), 1e-9);
+        assertEquals(2, restored.getScore("b", now), 1e-9);
+    }
+
+    @Test
+    public void persistence_compaction() throws Exception {
+        File logFile = new File(temporaryFolder.getRoot(), "usage.log");
+        long now = System.currentTimeMillis();
+        long halfLife = 1000000000;
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), logFile, halfLife, now);
+        for (int i = 0; i < 1000; i++) {
+            tracker.recordSelection(i % 2 == 0 ? "a" : "b", now);
+        }
+        // a record per pick would take 19KB, compaction keeps the log under a few hundred records
+        assertThat(logFile.length() < 6000, is(true));
+
+        UsageTracker restored = new UsageTracker(new ImmediateExecutor(), logFile, halfLife, now);
+        assertEquals(500, restored.getScore("a", now), 0.1);
+        assertEquals(500, restored.getScore("b", now), 0.1);
+    }
+
+    @Test
+    public void persistence_truncatedLog() throws Exception {
+        File logFile = new File(temporaryFolder.getRoot(), "usage.log");
+        long now = System.currentTimeMillis();
+        long halfLife = 1000000000;
+        UsageTracker tracker = new UsageTracker(new ImmediateExecutor(), logFile, halfLife, now);
+        tracker.recordSelection("a", now);
+        tracker.recordSelection("b", now);
+        try (RandomAccessFile file = new RandomAccessFile(logFile, "rw")) {
+            file.setLength(file.length() - 3); // a process death while appending
+        }
+
+        UsageTracker restored = new UsageTracker(new ImmediateExecutor(), logFile, halfLife, now);
+        assertEquals(1, restored.getScore("a", now), 1e-6);
+        assertThat(restored.getScore("b", now), is(0.0));
+        restored.recordSelection("b", now);
+
+        // the log was rewritten, so that new picks aren't appended after a truncated record
+        UsageTracker restoredAgain = new UsageTracker(new ImmediateExecutor(), logFile, halfLife, now);
+        assertEquals(1, restoredAgain.getScore("a", now), 1e-6);
+        assertEquals(1, restoredAgain.getScore("b", now), 1e-6);
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.view;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class ImageLoaderTest {
+
+    private static final int SIZE = 48;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<Runnable> queuedRequests = new ArrayList<>();
+    private final List<String> fetchedUrls = new ArrayList<>();
+
+    private ImageLoader imageLoader;
+    private ImageView imageView;
+
+    @Before
+    public void setUp() throws Exception {
+        Executor queueExecutor = queuedRequests::add;
+        ImageLoader.Fetcher fetcher = url -> { // local file stand-in for a network fetcher
+            fetchedUrls.add(url);
+            return ImageLoader.FILE_FETCHER.open(url);
+        };
+        imageLoader = new ImageLoader(queueExecutor, new Handler(Looper.getMainLooper()), fetcher, 1024 * 1024);
+        imageView = new ImageView(RuntimeEnvironment.application);
+        imageView.setLayoutParams(new ViewGroup.LayoutParams(SIZE, SIZE));
+    }
+
+    @Test
+    public void getInSampleSize() throws Exception {
+        assertThat(ImageLoader.getInSampleSize(48, 48, 48, 48), is(1));
+        assertThat(ImageLoader.getInSampleSize(200, 200, 48, 48), is(4));
+        assertThat(ImageLoader.getInSampleSize(400, 100, 48, 48), is(2)); // the smaller side is kept large enough
+        assertThat(ImageLoader.getInSampleSize(400, 400, 0, 48), is(1)); // unknown target size
+    }
+
+    @Test
+    public void load() throws Exception {
+        String url = newImageFile("image.png").getPath();
+
+        imageLoader.load(imageView, url);
+        assertThat(imageView.getVisibility(), is(View.VISIBLE));
+        assertThat(imageView.getDrawable(), nullValue());
+
+        runRequests();
+        assertThat(imageView.getDrawable(), notNullValue());
+        assertThat(imageLoader.getCachedBitmap(url, SIZE, SIZE), notNullValue());
+        assertThat(fetchedUrls.size(), is(1)); // the bounds and the bitmap are decoded from a single fetch
+
+        // a cached image is set without fetching it again
+        ImageView otherImageView = new ImageView(RuntimeEnvironment.application);
+        otherImageView.setLayoutParams(new ViewGroup.LayoutParams(SIZE, SIZE));
+        imageLoader.load(otherImageView, url);
+        assertThat(otherImageView.getDrawable(), notNullValue());
+        assertThat(queuedRequests.isEmpty(), is(true));
+    }
+
+    @Test
+    public void load_cancelledOnRebind() throws Exception {
+        String url1 = newImageFile("image1.png").getPath();
+        String url2 = newImageFile("image2.png").getPath();
+
+        imageLoader.load(imageView, url1);
+        imageLoader.load(imageView, url2); // the row is recycled before the first image is loaded
+        runRequests();
+
+        assertThat(fetchedUrls.contains(url1), is(false));
+        assertThat(imageLoader.getCachedBitmap(url2, SIZE, SIZE), notNullValue());
+        assertThat(imageView.getDrawable(), notNullValue());
+    }
+
+    @Test
+    public void load_nullUrl() throws Exception {
+        imageLoader.load(imageView, newImageFile("image.png").getPath());
+        imageLoader.load(imageView, null);
+        runRequests();
+
+        assertThat(imageView.getVisibility(), is(View.GONE));
+        assertThat(imageView.getDrawable(), nullValue());
+        assertThat(fetchedUrls.isEmpty(), is(true));
+    }
+
+    private void runRequests() {
+        List<Runnable> requests = new ArrayList<>(queuedRequests);
+        queuedRequests.clear();
+        for (Runnable request : requests) {
+            request.run();
+        }
+        ShadowLooper.runUiThreadTasksIncludingDelayedTasks();
+    }
+
+    private File newImageFile(String name) throws Exception {
+        File file = temporaryFolder.newFile(name);
+        Bitmap bitmap = Bitmap.createBitmap(200, 200, Bitmap.Config.ARGB_8888);
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+        }
+        return file;
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.teamwork.autocomplete.view;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.teamwork.autocomplete.R;
+import com.teamwork.autocomplete.filter.MatchRanges;
+import com.teamwork.autocomplete.model.SimpleItem;
+import com.teamwork.autocomplete.view.SimpleItemViewBinder.SimpleItemViewHolder;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+@RunWith(RobolectricTestRunner.class)
+public class SimpleItemViewBinderTest {
+
+    private SimpleItemViewBinder viewBinder;
+    private SimpleItemViewHolder viewHolder;
+
+    @Before
+    public void setUp() throws Exception {
+        Context context = RuntimeEnvironment.application;
+        FrameLayout row = new FrameLayout(context);
+        ImageView imageView = new ImageView(context);
+        imageView.setId(R.id.imageView);
+        row.addView(imageView);
+        TextView textView = new TextView(context);
+        textView.setId(R.id.textView);
+        row.addView(textView);
+
+        viewBinder = new SimpleItemViewBinder();
+        viewHolder = (SimpleItemViewHolder) viewBinder.getViewHolder(row);
+    }
+
+    @Test
+    public void bindData_matchRanges_setsHolderText() throws Exception {
+        viewBinder.bindData(viewHolder, new SimpleItem(null, "Ireland"), "ire", MatchRanges.of(0, 3));
+
+        // the text view holds the builder of the holder rather than a copy of it
+        CharSequence text = viewHolder.textView.getText();
+        assertThat(text, sameInstance(viewHolder.textBuilder));
+        assertBold((Spanned) text, 0, 3);
+
+        // binding the row again reuses the same builder
+        viewBinder.bindData(viewHolder, new SimpleItem(null, "Italy"), "ita", MatchRanges.of(0, 3));
+        assertThat(viewHolder.textView.getText(), sameInstance(viewHolder.textBuilder));
+        assertThat(viewHolder.textView.getText().toString(), is("Italy"));
+    }
+
+    @Test
+    public void bindData_matchRangesOfAnotherField() throws Exception {
+        // "jd" matched the second field of the item: its ranges don't refer to the text, which isn't highlighted
+        viewBinder.bindData(viewHolder, new SimpleItem(null, "Jane Doe"), "jd", MatchRanges.of(0, 2).inField(1));
+
+        CharSequence text = viewHolder.textView.getText();
+        assertThat(text.toString(), is("Jane Doe"));
+        assertThat(text instanceof Spanned, is(false));
+    }
+
+    @Test
+    public void bindData_noConstraint() throws Exception {
+        viewBinder.bindData(viewHolder, new SimpleItem(null, "Ireland"), null, null);
+        assertThat(viewHolder.textView.getText().toString(), is("Ireland"));
+    }
+
+    private static void assertBold(Spanned text, int start, int end) {
+        StyleSpan[] spans = text.getSpans(0, text.length(), StyleSpan.class);
+        assertThat(spans.length, is(1));
+        assertThat(spans[0].getStyle(), is(Typeface.BOLD));
+        assertThat(text.getSpanStart(spans[0]), is(start));
+        assertThat(text.getSpanEnd(spans[0]), is(end));
+    }
+
+}
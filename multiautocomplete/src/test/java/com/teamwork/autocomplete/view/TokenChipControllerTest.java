@@ -0,0 +1,182 @@
+/*
+ * Copyright 2017-present Teamwork.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.teamwork.autocomplete.view;
+
+import android.graphics.Color;
+import android.text.Editable;
+import android.widget.EditText;
+
+import com.teamwork.autocomplete.adapter.OnTokensChangedListener;
+import com.teamwork.autocomplete.filter.HandleTokenFilter;
+import com.teamwork.autocomplete.filter.TokenFilter;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+public class TokenChipControllerTest {
+
+    private static final TokenChipRenderer.Style STYLE = new TokenChipRenderer.Style(32, Color.WHITE, Color.BLUE, 8, 8);
+    private static final Pattern TOKEN_PATTERN = Pattern.compile("(^|\\s)[@#](United Kingdom|\\w+)");
+
+    @Mock OnTokensChangedListener<String> listener;
+
+    private TokenChipRenderer renderer;
+    private EditText editText;
+    private TokenChipController<String> controller;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+
+        renderer = new TokenChipRenderer(2);
+        editText = new EditText(RuntimeEnvironment.application);
+        TokenFilter<String> filter = new HandleTokenFilter<String>('@') {
+            @Override
+            public Pattern getValidTokenPattern() {
+                return TOKEN_PATTERN;
+            }
+        };
+        controller = new TokenChipController<>(filter, renderer, STYLE, listener);
+        controller.attach(editText);
+    }
+
+    @Test
+    public void onTokenAdded() throws Exception {
+        editText.setText("hi @john and @johnny, @john");
+        controller.onTokenAdded("@john", "John");
+
+        // the second occurrence is a different token
+        assertChips(editText, "@john:3-8", "@john:22-27");
+        verify(listener).onTokenAdded("@john", "John");
+    }
+
+    @Test
+    public void onTokenAdded_patternBoundaries() throws Exception {
+        editText.setText("#Ireland, #United Kingdom");
+        controller.onTokenAdded("#Ireland", "Ireland");
+        controller.onTokenAdded("#United Kingdom", "United Kingdom");
+
+        // the chips are delimited by the valid token pattern rather than by whitespace
+        assertChips(editText, "#Ireland:0-8", "#United Kingdom:10-25");
+
+        editText.getText().delete(24, 25);
+        assertChips(editText, "#Ireland:0-8");
+
+        editText.getText().append("m");
+        assertChips(editText, "#Ireland:0-8", "#United Kingdom:10-25");
+    }
+
+    @Test
+    public void onTokenRemoved() throws Exception {
+        editText.setText("@john @jane");
+        controller.onTokenAdded("@john", "John");
+        controller.onTokenAdded("@jane", "Jane");
+        controller.onTokenRemoved("@john", "John");
+
+        assertChips(editText, "@jane:6-11");
+        verify(listener).onTokenRemoved("@john", "John");
+    }
+
+    @Test
+    public void multipleViews() throws Exception {
+        EditText otherEditText = new EditText(RuntimeEnvironment.application);
+        controller.attach(otherEditText);
+        editText.setText("@john");
+        otherEditText.setText("hi @john");
+
+        // the type adapter notifies the token for each view it's typed in
+        controller.onTokenAdded("@john", "John");
+        controller.onTokenAdded("@john", "John");
+        assertChips(editText, "@john:0-5");
+        assertChips(otherEditText, "@john:3-8");
+
+        // the token is still active in the other view
+        editText.setText("");
+        controller.onTokenRemoved("@john", "John");
+        editText.getText().append("@john");
+        assertChips(editText, "@john:0-5");
+        assertChips(otherEditText, "@john:3-8");
+
+        controller.detach(otherEditText);
+        assertChips(otherEditText);
+        assertChips(editText, "@john:0-5");
+    }
+
+    @Test
+    public void afterTextChanged() throws Exception {
+        editText.setText("@john ");
+        controller.onTokenAdded("@john", "John");
+
+        // typing an active token again chips it right away
+        editText.getText().append("@john");
+        assertChips(editText, "@john:0-5", "@john:6-11");
+
+        // editing a chip text drops the chip
+        editText.getText().delete(4, 5);
+        assertChips(editText, "@john:5-10");
+
+        editText.getText().insert(4, "n");
+        assertChips(editText, "@john:0-5", "@john:6-11");
+    }
+
+    @Test
+    public void detach() throws Exception {
+        editText.setText("@john");
+        controller.onTokenAdded("@john", "John");
+        controller.detach(editText);
+        assertChips(editText);
+
+        editText.getText().append(" @john");
+        assertChips(editText);
+    }
+
+    @Test
+    public void getChip_cached() throws Exception {
+        assertThat(renderer.getChip("@john", STYLE), sameInstance(renderer.getChip("@john", STYLE)));
+        renderer.getChip("@john", new TokenChipRenderer.Style(32, Color.WHITE, Color.RED, 8, 8));
+        renderer.getChip("@jane", STYLE);
+
+        assertThat(renderer.getCachedChipsCount(), is(2)); // bounded
+    }
+
+    private static void assertChips(EditText editText, String... expected) {
+        Editable text = editText.getText();
+        TokenChipController.ChipSpan[] spans = text.getSpans(0, text.length(), TokenChipController.ChipSpan.class);
+        Arrays.sort(spans, (span1, span2) -> text.getSpanStart(span1) - text.getSpanStart(span2));
+        String[] actual = new String[spans.length];
+        for (int i = 0; i < spans.length; i++) {
+            actual[i] = spans[i].getToken() + ":" + text.getSpanStart(spans[i]) + "-" + text.getSpanEnd(spans[i]);
+        }
+        assertThat(Arrays.asList(actual), is(Arrays.asList(expected)));
+    }
+
+}